@@ -0,0 +1,115 @@
+package com.example.datamatrix;
+
+import static org.junit.Assert.*;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * scan_items için eski (ContentValues + db.insert) ve toplu (BulkInserter) yazma hızını ölçer.
+ *
+ * Canlı veritabanına dokunmaz: ölçüm aynı şemayla açılan ayrı bir dosyada yapılır ve sonunda silinir.
+ * Sonuç logcat'e yazılır (tag: ScanItemInsertBenchmark):
+ *   ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.example.datamatrix.ScanItemInsertBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScanItemInsertBenchmark {
+
+    private static final String TAG = "ScanItemInsertBenchmark";
+    private static final String DB_NAME = "scan_insert_benchmark.db";
+    private static final int ROWS = 10000;
+    private static final String CREATED_AT = "1970-01-01T00:00:00";
+
+    private Context context;
+    private ScanDatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new ScanDatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void legacyVsBulkInsert() {
+        List<String> codes = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            // 01 + 0 + 13 haneli GTIN + 21 + seri: extractGtinFromCode ile aynı yolu izler
+            codes.add("010" + (8690000000000L + (i % 500)) + "21BENCH" + i);
+        }
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        long legacyNanos;
+        db.beginTransaction();
+        try {
+            long sessionId = insertSession(db);
+            long t0 = System.nanoTime();
+            for (String code : codes) {
+                ScanItemCode item = ScanItemCode.of(code);
+                String gtin = ScanDatabaseHelper.extractGtinFromCode(code);
+                Long gtinNorm = ScanDatabaseHelper.normalizeGtin(gtin);
+                ContentValues cv = new ContentValues();
+                cv.put("session_id", sessionId);
+                cv.put("code", item.code);
+                cv.put("raw", item.raw);
+                cv.put("gtin", ScanDatabaseHelper.storedGtin(gtin, gtinNorm));
+                cv.put("gtin_norm", gtinNorm);
+                cv.put("lot", item.lot);
+                cv.put("expiry", item.expiry);
+                cv.put("scanned_at", CREATED_AT);
+                cv.put("scanned_ts", 0);
+                db.insertOrThrow("scan_items", null, cv);
+            }
+            legacyNanos = System.nanoTime() - t0;
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        long bulkNanos;
+        long written;
+        db.beginTransaction();
+        try {
+            long sessionId = insertSession(db);
+            long t0 = System.nanoTime();
+            written = ScanDatabaseHelper.writeScanItems(db, sessionId, codes, CREATED_AT);
+            bulkNanos = System.nanoTime() - t0;
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        assertEquals(ROWS, written);
+        double legacy = ROWS * 1e9 / Math.max(1, legacyNanos);
+        double bulk = ROWS * 1e9 / Math.max(1, bulkNanos);
+        Log.i(TAG, String.format("rows=%d legacy=%.0f/sn bulk=%.0f/sn speedup=%.2fx",
+                ROWS, legacy, bulk, bulk / legacy));
+    }
+
+    private static long insertSession(SQLiteDatabase db) {
+        ContentValues cv = new ContentValues();
+        cv.put("created_at", CREATED_AT);
+        cv.put("note", "benchmark");
+        cv.put("total_count", 0);
+        return db.insertOrThrow("scan_sessions", null, cv);
+    }
+}
@@ -30,6 +30,7 @@ import java.util.HashMap;
  * - codeStatusMap ile satılabilirlik durumu alınırsa:
  *   status =  1 → SELLABLE  → yeşil
  *   status = -1 → INVALID   → kırmızı
+ *   status =  2 → COUNTED_ELSEWHERE (geçmiş bir sayımda okunmuş) → turuncu
  *   status =  0 → UNKNOWN   → sarı
  */
 public class BarcodeOverlayView extends View {
@@ -37,6 +38,7 @@ public class BarcodeOverlayView extends View {
     private final Paint paintScanned = new Paint();   // yeşil çerçeve
     private final Paint paintDetected = new Paint();  // sarı çerçeve
     private final Paint paintError = new Paint();     // kırmızı çerçeve
+    private final Paint paintElsewhere = new Paint(); // turuncu çerçeve
     private final Paint paintCheck = new Paint();     // ✓ işareti
 
     private final List<Barcode> barcodes = new ArrayList<>();
@@ -78,6 +80,11 @@ public class BarcodeOverlayView extends View {
         paintError.setColor(Color.RED);
         paintError.setAntiAlias(true);
 
+        paintElsewhere.setStyle(Paint.Style.STROKE);
+        paintElsewhere.setStrokeWidth(6f);
+        paintElsewhere.setColor(Color.rgb(255, 140, 0));
+        paintElsewhere.setAntiAlias(true);
+
         paintCheck.setStyle(Paint.Style.FILL);
         paintCheck.setColor(Color.GREEN);
         paintCheck.setAntiAlias(true);
@@ -103,7 +110,7 @@ public class BarcodeOverlayView extends View {
      * Yeni imza: satılabilirlik/statü bilgisi de alır.
      * statusMap:
      *   key   : code (rawValue)
-     *   value : 1 → SELLABLE, -1 → INVALID, 0 → UNKNOWN
+     *   value : 1 → SELLABLE, -1 → INVALID, 2 → COUNTED_ELSEWHERE, 0 → UNKNOWN
      */
     public void setData(List<Barcode> newBarcodes,
                         Set<String> scannedCodesSet,
@@ -185,6 +192,9 @@ public class BarcodeOverlayView extends View {
                     } else if (status == -1) {
                         // Geçersiz / satılamaz
                         borderPaint = paintError;     // kırmızı
+                    } else if (status == 2) {
+                        // Geçmiş bir sayımda zaten okunmuş
+                        borderPaint = paintElsewhere; // turuncu
                     } else {
                         // UNKNOWN / henüz sorgulanmamış
                         borderPaint = paintDetected;  // sarı
@@ -0,0 +1,165 @@
+package com.example.datamatrix;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Tekrar kullanılan SQLiteStatement'larla toplu INSERT yazıcısı.
+ *
+ * Satır başına ContentValues + db.insert yerine:
+ * - Çok satırlı "INSERT ... VALUES (?,?),(?,?),..." ifadesi bir kez derlenir,
+ *   her dolu blokta bind → execute → clearBindings ile tekrar kullanılır.
+ * - Blok dolmadan kalan satırlar (kuyruk) tek satırlık derlenmiş ifade ile yazılır.
+ *
+ * Transaction yönetimi çağırana aittir; yazıcı sadece ifadeleri çalıştırır.
+ * flush() çağrılmadan close() edilirse tampondaki satırlar yazılmaz.
+ */
+final class BulkInserter implements Closeable {
+
+    // Eski Android SQLite sürümlerinde (API 26 → 3.18) SQLITE_MAX_VARIABLE_NUMBER = 999
+    private static final int MAX_VARIABLES = 999;
+    // Çok büyük blok, derleme ve bind maliyetini kazançtan fazla artırır
+    private static final int MAX_ROWS_PER_STATEMENT = 100;
+
+    private final SQLiteDatabase db;
+    private final String sqlPrefix;
+    private final String rowPlaceholder;
+    private final int columnCount;
+    private final int rowsPerStatement;
+
+    private final Object[] buffer;
+    private int bufferedRows = 0;
+    private long writtenRows = 0;
+
+    private SQLiteStatement multiRowStatement;
+    private SQLiteStatement singleRowStatement;
+
+    /**
+     * @param conflictClause null, "OR IGNORE" veya "OR REPLACE" gibi INSERT çakışma ifadesi
+     */
+    BulkInserter(SQLiteDatabase db, String table, String[] columns, @Nullable String conflictClause) {
+        this.db = db;
+        this.columnCount = columns.length;
+        this.rowsPerStatement = Math.max(1,
+                Math.min(MAX_ROWS_PER_STATEMENT, MAX_VARIABLES / columns.length));
+        this.buffer = new Object[rowsPerStatement * columnCount];
+
+        StringBuilder sb = new StringBuilder("INSERT ");
+        if (conflictClause != null) {
+            sb.append(conflictClause).append(' ');
+        }
+        sb.append("INTO ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(columns[i]);
+        }
+        sb.append(") VALUES ");
+        this.sqlPrefix = sb.toString();
+
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) row.append(',');
+            row.append('?');
+        }
+        row.append(')');
+        this.rowPlaceholder = row.toString();
+    }
+
+    /**
+     * Bir satırı tampona ekler; blok dolunca tek ifadede yazar.
+     * Değerler kolon sırasıyla verilmelidir (Long/Integer/String/Double/byte[]/null).
+     */
+    void add(Object... values) {
+        if (values.length != columnCount) {
+            throw new IllegalArgumentException(
+                    "Beklenen kolon sayısı " + columnCount + ", gelen " + values.length);
+        }
+        System.arraycopy(values, 0, buffer, bufferedRows * columnCount, columnCount);
+        bufferedRows++;
+        if (bufferedRows == rowsPerStatement) {
+            if (multiRowStatement == null) {
+                multiRowStatement = db.compileStatement(buildSql(rowsPerStatement));
+            }
+            bindAndExecute(multiRowStatement, 0, rowsPerStatement);
+            bufferedRows = 0;
+        }
+    }
+
+    /**
+     * Tamponda kalan satırları tek satırlık ifade ile yazar.
+     */
+    void flush() {
+        if (bufferedRows == 0) return;
+        if (singleRowStatement == null) {
+            singleRowStatement = db.compileStatement(buildSql(1));
+        }
+        for (int r = 0; r < bufferedRows; r++) {
+            bindAndExecute(singleRowStatement, r, 1);
+        }
+        bufferedRows = 0;
+    }
+
+    /**
+     * Şimdiye kadar veritabanına gönderilen satır sayısı (OR IGNORE ile atlananlar dahil).
+     */
+    long getWrittenRows() {
+        return writtenRows;
+    }
+
+    @Override
+    public void close() {
+        if (multiRowStatement != null) {
+            multiRowStatement.close();
+            multiRowStatement = null;
+        }
+        if (singleRowStatement != null) {
+            singleRowStatement.close();
+            singleRowStatement = null;
+        }
+    }
+
+    private String buildSql(int rows) {
+        StringBuilder sb = new StringBuilder(sqlPrefix.length() + rows * (rowPlaceholder.length() + 1));
+        sb.append(sqlPrefix);
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) sb.append(',');
+            sb.append(rowPlaceholder);
+        }
+        return sb.toString();
+    }
+
+    private void bindAndExecute(SQLiteStatement st, int firstRow, int rows) {
+        int from = firstRow * columnCount;
+        int count = rows * columnCount;
+        for (int i = 0; i < count; i++) {
+            bindValue(st, i + 1, buffer[from + i]);
+            buffer[from + i] = null;
+        }
+        st.executeInsert();
+        st.clearBindings();
+        writtenRows += rows;
+    }
+
+    /**
+     * Java değerini tipine göre bağlar (tek satırlık derlenmiş ifadeler için de kullanılır).
+     */
+    static void bindValue(SQLiteStatement st, int index, @Nullable Object v) {
+        if (v == null) {
+            st.bindNull(index);
+        } else if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            st.bindLong(index, ((Number) v).longValue());
+        } else if (v instanceof Boolean) {
+            st.bindLong(index, ((Boolean) v) ? 1 : 0);
+        } else if (v instanceof Double || v instanceof Float) {
+            st.bindDouble(index, ((Number) v).doubleValue());
+        } else if (v instanceof byte[]) {
+            st.bindBlob(index, (byte[]) v);
+        } else {
+            st.bindString(index, v.toString());
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.datamatrix;
+
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Büyük liste cevapları için kolon bazlı (columnar) kodlama.
+ *
+ * Satır başına bir JSObject yerine her alan için tek bir dizi gönderilir; böylece anahtarlar
+ * satır sayısı kadar tekrarlanmaz ve Capacitor köprüsünün serileştirdiği nesne sayısı düşer.
+ * JS tarafında src/plugins/columnar.ts (ColumnarTable) satırları ihtiyaç oldukça kurar.
+ *
+ * Çıktı: { length, columns: { [ad]: kolon } }, kolon biçimleri:
+ *   { type: "int", values: number[] }
+ *   { type: "i8" | "i16" | "i32" | "f64", data: base64, base?, delta? }  packInts ile; little-endian,
+ *      değer aralığına sığan en dar tip. delta: true ise değerler base + farkların kümülatif toplamıdır
+ *   { type: "str", values: (string | null)[] }
+ *   { type: "dict", dict: string[], index: int kolonu }  tekrar eden metinler (index -1 = null)
+ *   { type: "bool", values: (boolean | null)[] }
+ * Metin kolonu sözlükle mi düz mü gideceği tekil değer sayısına göre kendiliğinden seçilir.
+ */
+final class ColumnarRows {
+
+    // Tekil değerler satırların bu oranından azsa metin kolonu sözlükle kodlanır
+    private static final double DICT_MAX_RATIO = 0.5;
+
+    private final boolean packInts;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+
+    ColumnarRows(boolean packInts) {
+        this.packInts = packInts;
+    }
+
+    LongColumn longColumn(String name) {
+        LongColumn col = new LongColumn();
+        columns.put(name, col);
+        return col;
+    }
+
+    StringColumn stringColumn(String name) {
+        StringColumn col = new StringColumn();
+        columns.put(name, col);
+        return col;
+    }
+
+    BooleanColumn booleanColumn(String name) {
+        BooleanColumn col = new BooleanColumn();
+        columns.put(name, col);
+        return col;
+    }
+
+    /**
+     * Satır sayısı (kolonlar satır satır doldurulduğu için hepsi eşittir).
+     */
+    int length() {
+        for (Column col : columns.values()) {
+            return col.size();
+        }
+        return 0;
+    }
+
+    JSObject toJSObject() {
+        JSObject cols = new JSObject();
+        for (Map.Entry<String, Column> e : columns.entrySet()) {
+            cols.put(e.getKey(), e.getValue().encode(packInts));
+        }
+        JSObject result = new JSObject();
+        result.put("length", length());
+        result.put("columns", cols);
+        return result;
+    }
+
+    private abstract static class Column {
+        abstract int size();
+
+        abstract JSObject encode(boolean packInts);
+    }
+
+    static final class LongColumn extends Column {
+        private long[] values = new long[64];
+        private int size = 0;
+
+        void add(long v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        JSObject encode(boolean packInts) {
+            return encodeInts(values, size, packInts);
+        }
+    }
+
+    static final class StringColumn extends Column {
+        private final List<String> values = new ArrayList<>();
+        // Değer → sözlük sırası (ilk görülme sırası)
+        private final Map<String, Integer> dict = new HashMap<>();
+
+        void add(@Nullable String v) {
+            values.add(v);
+            if (v != null && !dict.containsKey(v)) {
+                dict.put(v, dict.size());
+            }
+        }
+
+        @Override
+        int size() {
+            return values.size();
+        }
+
+        @Override
+        JSObject encode(boolean packInts) {
+            JSObject out = new JSObject();
+            if (dict.size() > values.size() * DICT_MAX_RATIO) {
+                JSArray arr = new JSArray();
+                for (String v : values) {
+                    arr.put(v != null ? v : JSONObject.NULL);
+                }
+                out.put("type", "str");
+                out.put("values", arr);
+                return out;
+            }
+
+            String[] words = new String[dict.size()];
+            for (Map.Entry<String, Integer> e : dict.entrySet()) {
+                words[e.getValue()] = e.getKey();
+            }
+            JSArray dictArr = new JSArray();
+            for (String w : words) {
+                dictArr.put(w);
+            }
+            long[] index = new long[values.size()];
+            for (int i = 0; i < index.length; i++) {
+                String v = values.get(i);
+                index[i] = v != null ? dict.get(v) : -1;
+            }
+            out.put("type", "dict");
+            out.put("dict", dictArr);
+            out.put("index", encodeInts(index, index.length, packInts));
+            return out;
+        }
+    }
+
+    static final class BooleanColumn extends Column {
+        private final JSArray values = new JSArray();
+
+        void add(@Nullable Boolean v) {
+            values.put(v != null ? v : JSONObject.NULL);
+        }
+
+        @Override
+        int size() {
+            return values.length();
+        }
+
+        @Override
+        JSObject encode(boolean packInts) {
+            JSObject out = new JSObject();
+            out.put("type", "bool");
+            out.put("values", values);
+            return out;
+        }
+    }
+
+    private static JSObject encodeInts(long[] values, int size, boolean packInts) {
+        JSObject out = new JSObject();
+        if (!packInts) {
+            JSArray arr = new JSArray();
+            for (int i = 0; i < size; i++) {
+                arr.put(values[i]);
+            }
+            out.put("type", "int");
+            out.put("values", arr);
+            return out;
+        }
+
+        PackedInts p = pack(values, size);
+        if (p.delta) {
+            out.put("base", p.base);
+            out.put("delta", true);
+        }
+        out.put("type", p.type);
+        out.put("data", Base64.encodeToString(p.data, Base64.NO_WRAP));
+        return out;
+    }
+
+    /**
+     * packInts kolonunun ikili hali (base64'ten önce).
+     */
+    static final class PackedInts {
+        // "i8" | "i16" | "i32" | "f64"
+        final String type;
+        // little-endian, eleman başına type genişliğinde
+        final byte[] data;
+        // true ise data farklardır (ilki 0): değer[i] = base + fark[0..i] toplamı
+        final boolean delta;
+        final long base;
+
+        PackedInts(String type, byte[] data, boolean delta, long base) {
+            this.type = type;
+            this.data = data;
+            this.delta = delta;
+            this.base = base;
+        }
+    }
+
+    /**
+     * values[0..size) değerlerini aralığa sığan en dar tipe paketler.
+     */
+    static PackedInts pack(long[] values, int size) {
+        // Artan kolonlar (id) ilk değer + farklar olarak paketlenir; farklar çoğunlukla tek bayta sığar
+        boolean delta = size > 1;
+        for (int i = 1; i < size && delta; i++) {
+            delta = values[i] >= values[i - 1];
+        }
+        long[] packed = values;
+        if (delta) {
+            packed = new long[size];
+            for (int i = 1; i < size; i++) {
+                packed[i] = values[i] - values[i - 1];
+            }
+        }
+
+        long min = 0;
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, packed[i]);
+            max = Math.max(max, packed[i]);
+        }
+        int width;
+        String type;
+        if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE) {
+            width = 1;
+            type = "i8";
+        } else if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE) {
+            width = 2;
+            type = "i16";
+        } else if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE) {
+            width = 4;
+            type = "i32";
+        } else {
+            // Float64, JS Number ile 2^53'e kadar kayıpsızdır
+            width = 8;
+            type = "f64";
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size * width).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < size; i++) {
+            long v = packed[i];
+            switch (width) {
+                case 1: buf.put((byte) v); break;
+                case 2: buf.putShort((short) v); break;
+                case 4: buf.putInt((int) v); break;
+                default: buf.putDouble(v); break;
+            }
+        }
+        return new PackedInts(type, buf.array(), delta, delta ? values[0] : 0);
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.datamatrix;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * SQLite cursor'larını doğrudan sıkıştırılmış dosyaya yazan dışa aktarım yardımcısı.
+ *
+ * Satırlar cursor'dan okundukça gzip akışına yazılır; bellekte satır listesi tutulmaz.
+ * Dosyalar cache/exports/ altına yazılır (file_paths.xml → "exports"), paylaşım için
+ * FileProvider URI'si plugin tarafında üretilir.
+ *
+ * Desteklenen içerikler:
+ *   - scan_items   : ham datamatrix satırları (isteğe bağlı oturum seçimiyle)
+ *   - stock_report : getStockReport ile aynı GTIN bazlı özet
+ *   - easy_sales   : Easy satış başlıkları + kalemleri (düz satırlar)
+ *
+ * Formatlar: "csv" (UTF-8, başlık satırlı) ve "ndjson" (satır başına bir JSON nesnesi).
+ */
+public final class DataExporter {
+
+    public static final String KIND_SCAN_ITEMS = "scan_items";
+    public static final String KIND_STOCK_REPORT = "stock_report";
+    public static final String KIND_EASY_SALES = "easy_sales";
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    // file_paths.xml içindeki cache-path ile aynı klasör
+    private static final String EXPORT_DIR = "exports";
+
+    // gzip + writer tamponu (satır satır küçük yazımları toplamak için)
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Dışa aktarım sonucu.
+     */
+    public static final class Result {
+        public final File file;
+        public final long rows;
+
+        Result(File file, long rows) {
+            this.file = file;
+            this.rows = rows;
+        }
+    }
+
+    private DataExporter() {
+    }
+
+    /**
+     * İstenen içeriği gzip'li dosyaya yazar.
+     *
+     * scan_items ve stock_report, çağırandan önce temp.report_sessions'ın aynı bağlantıda
+     * doldurulmuş olmasını bekler (useSelection=true ise). easy_sales created_at aralığı ile süzülür.
+     *
+     * @param useSelection scan_items için: true ise sadece temp.report_sessions'taki oturumlar
+     * @param exact        stock_report için: oturumlar ortak kod içeriyorsa true
+     * @param from         easy_sales için dahil alt sınır (ISO 8601), null ise sınırsız
+     * @param to           easy_sales için hariç üst sınır (ISO 8601), null ise sınırsız
+     * @param signal       iptal edilirse okuma OperationCanceledException ile durur, yarım dosya silinir
+     */
+    public static Result export(Context context,
+                                SQLiteDatabase db,
+                                String kind,
+                                String format,
+                                boolean useSelection,
+                                boolean exact,
+                                @Nullable String from,
+                                @Nullable String to,
+                                @Nullable CancellationSignal signal) throws IOException {
+        boolean csv = !FORMAT_NDJSON.equals(format);
+
+        File file = newExportFile(context, kind, csv ? ".csv.gz" : ".ndjson.gz");
+
+        Cursor c = openCursor(db, kind, useSelection, exact, from, to, signal);
+        long rows;
+        try (Writer w = new BufferedWriter(
+                new OutputStreamWriter(
+                        new GZIPOutputStream(new FileOutputStream(file), BUFFER_SIZE),
+                        StandardCharsets.UTF_8),
+                BUFFER_SIZE)) {
+            rows = csv ? writeCsv(c, w) : writeNdjson(c, w);
+        } catch (IOException | RuntimeException e) {
+            // Yarım kalan dosya paylaşılmasın
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            throw e;
+        } finally {
+            c.close();
+        }
+
+        return new Result(file, rows);
+    }
+
+    /**
+     * cache/exports/ altında "{prefix}_{yyyyMMdd_HHmmss}{extension}" dosyası (FileProvider ile paylaşılabilir).
+     */
+    static File newExportFile(Context context, String prefix, String extension) throws IOException {
+        File dir = new File(context.getCacheDir(), EXPORT_DIR);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Export klasörü oluşturulamadı: " + dir);
+        }
+
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        return new File(dir, prefix + "_" + stamp + extension);
+    }
+
+    private static Cursor openCursor(SQLiteDatabase db,
+                                     String kind,
+                                     boolean useSelection,
+                                     boolean exact,
+                                     @Nullable String from,
+                                     @Nullable String to,
+                                     @Nullable CancellationSignal signal) {
+        switch (kind) {
+            case KIND_SCAN_ITEMS:
+                return db.rawQuery(
+                        "SELECT id, session_id, " + ScanItemCode.rawSql("scan_items") + " AS code, " +
+                                ScanDatabaseHelper.itemGtinSql("scan_items") + " AS gtin, " +
+                                ScanDatabaseHelper.itemScannedAtSql("scan_items") + " AS scanned_at " +
+                                "FROM scan_items " +
+                                (useSelection
+                                        ? "WHERE session_id IN (SELECT id FROM temp.report_sessions) "
+                                        : "") +
+                                "ORDER BY id ASC",
+                        null,
+                        signal
+                );
+
+            case KIND_STOCK_REPORT:
+                return ScanDatabaseHelper.queryStockReport(db, exact, signal);
+
+            case KIND_EASY_SALES: {
+                // rawQuery null bağlayamadığı için sadece verilen sınırları ekliyoruz
+                StringBuilder where = new StringBuilder();
+                List<String> args = new ArrayList<>();
+                if (from != null) {
+                    where.append(where.length() == 0 ? "WHERE " : "AND ").append("s.created_at >= ? ");
+                    args.add(from);
+                }
+                if (to != null) {
+                    where.append(where.length() == 0 ? "WHERE " : "AND ").append("s.created_at < ? ");
+                    args.add(to);
+                }
+                return db.rawQuery(
+                        "SELECT s.id AS sale_id, s.created_at, s.patient, s.citizen_id, " +
+                                "s.prescription_number, s.note AS sale_note, s.device_id, " +
+                                "i.barcode, i.brand, i.sn, i.status, i.description, i.note AS item_note, " +
+                                "i.unit_price, i.partial_amount, i.ndb_success, i.ndb_message " +
+                                "FROM easy_sales s " +
+                                "LEFT JOIN easy_sale_items i ON i.sale_id = s.id " +
+                                where +
+                                "ORDER BY s.id ASC, i.id ASC",
+                        args.toArray(new String[0]),
+                        signal
+                );
+            }
+
+            default:
+                throw new IllegalArgumentException("Bilinmeyen export türü: " + kind);
+        }
+    }
+
+    private static long writeCsv(Cursor c, Writer w) throws IOException {
+        String[] cols = c.getColumnNames();
+        for (int i = 0; i < cols.length; i++) {
+            if (i > 0) w.write(',');
+            writeCsvField(w, cols[i]);
+        }
+        w.write("\r\n");
+
+        long rows = 0;
+        while (c.moveToNext()) {
+            for (int i = 0; i < cols.length; i++) {
+                if (i > 0) w.write(',');
+                if (!c.isNull(i)) {
+                    writeCsvField(w, c.getString(i));
+                }
+            }
+            w.write("\r\n");
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * RFC 4180: virgül, tırnak veya satır sonu içeren alanlar tırnaklanır, iç tırnaklar ikilenir.
+     */
+    private static void writeCsvField(Writer w, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+
+    private static long writeNdjson(Cursor c, Writer w) throws IOException {
+        String[] cols = c.getColumnNames();
+        long rows = 0;
+        try {
+            while (c.moveToNext()) {
+                JSONObject o = new JSONObject();
+                for (int i = 0; i < cols.length; i++) {
+                    switch (c.getType(i)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            o.put(cols[i], JSONObject.NULL);
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            o.put(cols[i], c.getLong(i));
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            o.put(cols[i], c.getDouble(i));
+                            break;
+                        default:
+                            o.put(cols[i], c.getString(i));
+                            break;
+                    }
+                }
+                w.write(o.toString());
+                w.write('\n');
+                rows++;
+            }
+        } catch (org.json.JSONException e) {
+            throw new IOException("NDJSON satırı yazılamadı: " + e.getMessage(), e);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.datamatrix;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Arka planda parça parça çalışan bir veri geçişi (backfill).
+ *
+ * onUpgrade yalnızca şemayı değiştirir (kolon / tablo / index) ve geçişi
+ * ScanDatabaseHelper.enqueueDataMigration ile data_migrations'a kaydeder. Satırlar açılışı
+ * bekletmeden ScanDatabaseHelper.runDataMigrationBatch ile sabit boyutlu id aralıklarında,
+ * her aralık kendi kısa transaction'ında işlenir; kalınan id aynı transaction'da yazıldığı için
+ * uygulama kapansa da geçiş kaldığı yerden devam eder.
+ *
+ * Kurallar:
+ * - Geçiş kaydedildiği andaki en büyük id'ye kadar çalışır; sonradan yazılan satırları yeni
+ *   biçimde yazmak yazan metodların işidir.
+ * - Okuyan sorgular geçiş bitene kadar eski ve yeni biçimdeki satırları birlikte doğru okumalıdır;
+ *   işlenmemiş aralık ScanDatabaseHelper.pendingMigrationRange ile alınır.
+ * - migrateRange aynı aralık için tekrar çağrılabilir (son parça commit edilmeden kapanırsa);
+ *   işlenmiş satırları atlamalıdır.
+ */
+abstract class DataMigration {
+
+    // data_migrations.name
+    final String name;
+    // id (rowid) aralıklarının alındığı tablo
+    final String table;
+
+    DataMigration(String name, String table) {
+        this.name = name;
+        this.table = table;
+    }
+
+    /**
+     * (afterId, upToId] aralığındaki satırları işler. Açık yazma transaction'ı içinde çağrılır.
+     */
+    abstract void migrateRange(SQLiteDatabase db, long afterId, long upToId);
+
+    /**
+     * Bir parçanın id aralığı genişliği. Satır başına pahalı işleyen geçişler (ör. oturum başına
+     * yeniden sayım) parçayı kısa tutmak için küçültür.
+     */
+    int batchSize() {
+        return ScanDatabaseHelper.BACKFILL_BATCH_SIZE;
+    }
+
+    /**
+     * Son parça commit edildikten sonra, transaction dışında bir kez çağrılır.
+     */
+    void onFinished(ScanDatabaseHelper dbHelper) {
+    }
+
+    /**
+     * true ise geçiş bitince dosya VACUUM ile yeniden yazılır (satırları yerinde küçülten geçişler).
+     * VACUUM hemen değil, bekleyen tüm geçişler bitince ScanDatabaseHelper.reclaimFreePages'te
+     * (eski kurulumların auto_vacuum dönüşümüyle birlikte) bir kez çalışır.
+     */
+    boolean vacuumWhenDone() {
+        return false;
+    }
+
+    /**
+     * true ise her parçadan sonra stok raporu önbelleği (ScanDatabaseHelper.reportCache) boşaltılır;
+     * rapor sonucunu değiştiren (ön-toplam yeniden kuran) geçişler içindir.
+     */
+    boolean changesReports() {
+        return false;
+    }
+}
@@ -4,6 +4,7 @@ import android.Manifest;
 import android.content.pm.PackageManager;
 import android.media.Image;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.view.View;
 import android.widget.Button;
@@ -34,8 +35,6 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mlkit.vision.barcode.BarcodeScanner;
-import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
-import com.google.mlkit.vision.barcode.BarcodeScanning;
 import com.google.mlkit.vision.barcode.common.Barcode;
 import com.google.mlkit.vision.common.InputImage;
 
@@ -84,11 +83,23 @@ public class FastMultiScanActivity extends AppCompatActivity {
     private Button btnSave;
     private ImageButton btnClose;
 
+    // Süreç boyunca paylaşılan tarama motoru (ML Kit istemcisi, analiz / geçmiş thread'leri, CameraX)
+    private ScannerEngine engine;
+    // Motor bu ekran açılmadan önce hazır mıydı?
+    private boolean warmStart;
     private ExecutorService cameraExecutor;
     private BarcodeScanner barcodeScanner;
 
+    // Açılış süreleri (startMultiScan çağrısından itibaren, ms; -1: henüz yok) → ScannerEngine.recordSession
+    private long startedAt;
+    private long cameraReadyMs = -1;
+    private volatile long firstFrameMs = -1;
+    private volatile long firstDecodeMs = -1;
+
     // Kamera referansı (autofocus için)
     private Camera camera;
+    // Analiz executor'ı motorla paylaşılır; onDestroy'da analyzer bırakılmazsa bu activity'yi tutar
+    private ImageAnalysis imageAnalysis;
 
     // Tek seferde toplanan barkodları tutacağız (tekrarları filtrelemek için Set)
     private final Set<String> scannedCodes = new HashSet<>();
@@ -108,19 +119,30 @@ public class FastMultiScanActivity extends AppCompatActivity {
     private enum CodeStatus {
         UNKNOWN,
         SELLABLE,
-        INVALID
+        INVALID,
+        // Geçmiş bir sayım oturumunda zaten okunmuş (overlay'de turuncu)
+        COUNTED_ELSEWHERE
     }
 
     // Kod -> durum haritası
     private final Map<String, CodeStatus> codeStatusMap = new ConcurrentHashMap<>();
     // Doğrulama kuyruğu
     private final BlockingQueue<String> validationQueue = new LinkedBlockingQueue<>();
-    // Arka plan doğrulama thread'i
+    // Arka plan doğrulama thread'i (ilk enqueueForValidation'da başlar)
     private ExecutorService validationExecutor;
 
+    // ====== GEÇMİŞ SAYIM KONTROLÜ ======
+
+    // Bloom filtresini kurar/günceller, sonra filtre pozitiflerini index'ten doğrular.
+    // Tek thread (motorla paylaşılır): kontroller filtre hazır olduktan sonra sırayla çalışır; kamera karesi
+    // başına SQLite sorgusu yapılmaz, her yeni kod için en fazla bir doğrulama sorgusu atılır.
+    private ExecutorService historyExecutor;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // startMultiScan zamanı; yoksa (ör. süreç yeniden başladıysa) ekranın açılışı
+        startedAt = getIntent().getLongExtra("requestedAt", SystemClock.elapsedRealtime());
         setContentView(R.layout.activity_fast_multi_scan);
         skipNote = getIntent().getBooleanExtra("skipNote", false);
 
@@ -131,22 +153,15 @@ public class FastMultiScanActivity extends AppCompatActivity {
         btnSave = findViewById(R.id.btnSave);
         btnClose = findViewById(R.id.btnClose);
 
-        cameraExecutor = Executors.newSingleThreadExecutor();
-
-        // Sadece DataMatrix + QR okutalım
-        BarcodeScannerOptions options =
-                new BarcodeScannerOptions.Builder()
-                        .setBarcodeFormats(
-                                Barcode.FORMAT_DATA_MATRIX,
-                                Barcode.FORMAT_QR_CODE
-                        )
-                        .build();
-
-        barcodeScanner = BarcodeScanning.getClient(options);
+        // Hazırsa (startMultiScan / prewarmScanner) yalnız referanslar alınır
+        engine = ScannerEngine.getInstance(this);
+        warmStart = engine.acquire();
+        cameraExecutor = engine.analysisExecutor();
+        barcodeScanner = engine.scanner();
+        historyExecutor = engine.historyExecutor();
 
-        // Kod doğrulama için arka plan thread'i başlat
-        validationExecutor = Executors.newSingleThreadExecutor();
-        validationExecutor.submit(this::validationLoop);
+        // Geçmiş sayımların kod filtresine son sayımdan sonra eklenen kodlar (ilk kurulum warmUp'ta)
+        historyExecutor.execute(engine::refreshScanHistory);
 
         // X: sadece sonucu JS tarafına gönderir, KAYDETMEZ
         btnClose.setOnClickListener(v -> {
@@ -184,8 +199,7 @@ public class FastMultiScanActivity extends AppCompatActivity {
     }
 
     private void startCamera() {
-        ListenableFuture<ProcessCameraProvider> cameraProviderFuture =
-                ProcessCameraProvider.getInstance(this);
+        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = engine.cameraProvider();
 
         cameraProviderFuture.addListener(() -> {
             try {
@@ -203,7 +217,7 @@ public class FastMultiScanActivity extends AppCompatActivity {
                 CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
 
                 // Daha yüksek çözünürlükte ImageAnalysis
-                ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                imageAnalysis = new ImageAnalysis.Builder()
                         .setTargetResolution(new Size(1280, 720))
                         .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                         .build();
@@ -217,6 +231,7 @@ public class FastMultiScanActivity extends AppCompatActivity {
                         preview,
                         imageAnalysis
                 );
+                cameraReadyMs = SystemClock.elapsedRealtime() - startedAt;
 
                 // Kamera açılır açılmaz merkezde agresif bir autofocus denemesi yap
                 triggerCenterAutoFocus();
@@ -254,6 +269,9 @@ public class FastMultiScanActivity extends AppCompatActivity {
 
     @ExperimentalGetImage
     private void analyzeImage(@NonNull ImageProxy imageProxy) {
+        if (firstFrameMs < 0) {
+            firstFrameMs = SystemClock.elapsedRealtime() - startedAt;
+        }
         Image mediaImage = imageProxy.getImage();
         if (mediaImage == null) {
             imageProxy.close();
@@ -271,6 +289,9 @@ public class FastMultiScanActivity extends AppCompatActivity {
                     for (Barcode barcode : barcodes) {
                         String rawValue = barcode.getRawValue();
                         if (rawValue != null && !rawValue.isEmpty()) {
+                            if (firstDecodeMs < 0) {
+                                firstDecodeMs = SystemClock.elapsedRealtime() - startedAt;
+                            }
                             // İlk kez görüyorsak sete ekle
                             if (scannedCodes.add(rawValue)) {
                                 changed = true;
@@ -280,6 +301,9 @@ public class FastMultiScanActivity extends AppCompatActivity {
 
                                 // doğrulama kuyruğuna göndermiyoruz
                                 // enqueueForValidation(rawValue);
+
+                                // Başka bir oturumda sayılmış mı? (bellekteki filtre, gerekirse tek sorgu)
+                                checkScanHistory(rawValue);
                             }
 
                         }
@@ -317,7 +341,7 @@ public class FastMultiScanActivity extends AppCompatActivity {
                     // Overlay'i güncelle (hangi barkod nerede, hangisi okundu? + status map)
                     if (overlayView != null) {
                         runOnUiThread(() -> {
-                            // CodeStatus -> int map (1: SELLABLE, -1: INVALID, 0: UNKNOWN)
+                            // CodeStatus -> int map (1: SELLABLE, -1: INVALID, 2: COUNTED_ELSEWHERE, 0: UNKNOWN)
                             Map<String, Integer> statusMap = new HashMap<>();
                             for (Map.Entry<String, CodeStatus> e : codeStatusMap.entrySet()) {
                                 int v;
@@ -325,6 +349,8 @@ public class FastMultiScanActivity extends AppCompatActivity {
                                     v = 1;
                                 } else if (e.getValue() == CodeStatus.INVALID) {
                                     v = -1;
+                                } else if (e.getValue() == CodeStatus.COUNTED_ELSEWHERE) {
+                                    v = 2;
                                 } else {
                                     v = 0;
                                 }
@@ -502,6 +528,46 @@ public class FastMultiScanActivity extends AppCompatActivity {
         });
     }
 
+    // ====== GEÇMİŞ SAYIM KONTROLÜ ======
+
+    /**
+     * Yeni okunan kodu geçmiş sayımlara karşı kontrol eder (kod başına bir kez).
+     * Filtre "yok" derse DB'ye gidilmez; "olabilir" derse index üzerinden doğrulanır ve
+     * kod COUNTED_ELSEWHERE olarak işaretlenir (bir sonraki karede overlay turuncu çizer).
+     */
+    private void checkScanHistory(String code) {
+        if (historyExecutor == null || historyExecutor.isShutdown()) return;
+
+        historyExecutor.execute(() -> {
+            // Executor motorla paylaşılır; ekran kapandıysa sıradaki kontroller atlanır
+            if (isDestroyed()) return;
+            // scan_items okunan metni değil, kanonik kodu saklar
+            String storedCode = ScanItemCode.of(code).code;
+            if (!ScanHistoryFilter.getInstance().mightContain(storedCode)) return;
+
+            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(this);
+            SQLiteDatabase db = null;
+            long sessionId;
+            try {
+                db = dbHelper.acquireReader();
+                sessionId = ScanHistoryFilter.findSessionWithCode(db, storedCode);
+            } catch (Exception e) {
+                return;
+            } finally {
+                dbHelper.releaseReader(db);
+            }
+            if (sessionId <= 0) return;
+
+            codeStatusMap.put(code, CodeStatus.COUNTED_ELSEWHERE);
+            updateDistanceHint("Bu kutu daha önce #" + sessionId + " numaralı sayımda okunmuş.");
+            runOnUiThread(() -> {
+                if (overlayView != null) {
+                    overlayView.invalidate();
+                }
+            });
+        });
+    }
+
     // ====== DOĞRULAMA KUYRUĞU & API BAĞLANTISI ALTYAPISI ======
 
     /**
@@ -511,6 +577,10 @@ public class FastMultiScanActivity extends AppCompatActivity {
     private void enqueueForValidation(String code) {
         if (!codeStatusMap.containsKey(code)) {
             codeStatusMap.put(code, CodeStatus.UNKNOWN);
+            if (validationExecutor == null) {
+                validationExecutor = Executors.newSingleThreadExecutor();
+                validationExecutor.submit(this::validationLoop);
+            }
             validationQueue.offer(code);
         }
     }
@@ -641,11 +711,14 @@ public class FastMultiScanActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (cameraExecutor != null) {
-            cameraExecutor.shutdown();
+        // Kuyruktaki kareler artık bu activity'ye gelmesin (executor motorda yaşamaya devam eder)
+        if (imageAnalysis != null) {
+            imageAnalysis.clearAnalyzer();
         }
-        if (barcodeScanner != null) {
-            barcodeScanner.close();
+        // ML Kit istemcisi ve thread'ler motorundur; kapatılmaz, bellek baskısında motor bırakır
+        if (engine != null) {
+            engine.recordSession(warmStart, cameraReadyMs, firstFrameMs, firstDecodeMs);
+            engine.release();
         }
         if (tvDistanceHint != null && hideDistanceHintRunnable != null) {
             tvDistanceHint.removeCallbacks(hideDistanceHintRunnable);
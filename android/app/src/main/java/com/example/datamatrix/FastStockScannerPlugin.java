@@ -1,9 +1,18 @@
 package com.example.datamatrix;
 
 import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Base64;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.content.ContentValues;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.FileProvider;
 
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
@@ -15,8 +24,25 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @CapacitorPlugin(name = "FastStockScannerPlugin")
 public class FastStockScannerPlugin extends Plugin {
@@ -24,6 +50,58 @@ public class FastStockScannerPlugin extends Plugin {
     // Şu anda devam eden tek bir FAST isteğini tutmak için
     private static PluginCall pendingCall;
 
+    // Sayfalı okuma varsayılanları (getScanSessions / getScanSessionItems / getAllScanItems)
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 5000;
+
+    // stream: true çağrılarında her sayfa bu event ile JS'e gönderilir
+    private static final String STREAM_PAGE_EVENT = "streamPage";
+
+    // Arka plan veri geçişlerinin her parçasından sonra gönderilir
+    private static final String DATA_MIGRATION_EVENT = "dataMigrationProgress";
+
+    // SQLite işleri plugin çağrı thread'inde değil bu şeritlerde çalışır (yazma: sıralı, okuma: paralel)
+    private PluginTaskScheduler tasks;
+
+    @Override
+    public void load() {
+        super.load();
+        tasks = new PluginTaskScheduler(this::notifyListeners, ScanDatabaseHelper.READER_POOL_SIZE);
+        // onUpgrade'in kaydettiği veri geçişleri (varsa, kaldığı yerden); bitince eski kurulumların
+        // auto_vacuum dönüşümü ve önceki oturumlardan kalan boş sayfalar (scheduleReclaimFreePages)
+        scheduleDataMigrations();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (tasks != null) {
+            tasks.shutdown();
+        }
+        super.handleOnDestroy();
+    }
+
+    // ================== GÖREV YÖNETİMİ ==================
+
+    // Sırada bekleyen veya çalışan bir görevi iptal eder.
+    // { taskId } → çağrıda verilen taskId ya da (verilmediyse) streamPage/taskProgress event'lerindeki id
+    @PluginMethod
+    public void cancelTask(PluginCall call) {
+        String taskId = call.getString("taskId");
+        if (taskId == null || taskId.isEmpty()) {
+            call.reject("taskId parametresi zorunlu");
+            return;
+        }
+        JSObject result = new JSObject();
+        result.put("cancelled", tasks.cancel(taskId));
+        call.resolve(result);
+    }
+
+    // Metod bazında çalışma/bekleme süreleri
+    @PluginMethod
+    public void getTaskStats(PluginCall call) {
+        call.resolve(tasks.getStats());
+    }
+
     @PluginMethod
     public void startMultiScan(PluginCall call) {
         // Aynı anda ikinci bir isteğe izin vermeyelim; varsa reddet
@@ -34,7 +112,13 @@ public class FastStockScannerPlugin extends Plugin {
 
         pendingCall = call;
 
+        // Motor hazır değilse (prewarmScanner çağrılmadıysa / bellek baskısında bırakıldıysa)
+        // model ve CameraX, activity açılırken paralel hazırlanır
+        ScannerEngine.getInstance(getContext()).warmUp();
+
         Intent intent = new Intent(getContext(), FastMultiScanActivity.class);
+        // İlk okumaya kadar geçen süre bu andan ölçülür
+        intent.putExtra("requestedAt", SystemClock.elapsedRealtime());
         // Süre parametresi (ms cinsinden)
         long durationMs = call.getLong("durationMs", 3000L);
         intent.putExtra("durationMs", durationMs);
@@ -46,6 +130,20 @@ public class FastStockScannerPlugin extends Plugin {
         getActivity().startActivity(intent);
     }
 
+    // Tarama motorunu (ML Kit modeli, CameraX, geçmiş filtresi) önceden hazırlar; tarama ekranı
+    // açılmadan (ör. FAST / Easy sayfası yüklenirken) çağrılır. Hazırsa bir şey yapmaz.
+    @PluginMethod
+    public void prewarmScanner(PluginCall call) {
+        ScannerEngine.getInstance(getContext()).warmUp();
+        call.resolve();
+    }
+
+    // Tarama açılış süreleri: sıcak / soğuk başlangıç ortalamaları ve son oturum
+    @PluginMethod
+    public void getScannerStats(PluginCall call) {
+        call.resolve(ScannerEngine.getInstance(getContext()).getStats());
+    }
+
     /**
      * FastMultiScanActivity tamamlandığında çağrılır.
      */
@@ -77,6 +175,10 @@ public class FastStockScannerPlugin extends Plugin {
     // =========================================================
     @PluginMethod
     public void importInitialProducts(PluginCall call) {
+        tasks.write(call, "importInitialProducts", task -> runImportInitialProducts(call, task));
+    }
+
+    private void runImportInitialProducts(PluginCall call, PluginTaskScheduler.Task task) {
         try {
             JSArray itemsArr = call.getArray("items");
             if (itemsArr == null || itemsArr.length() == 0) {
@@ -91,10 +193,15 @@ public class FastStockScannerPlugin extends Plugin {
             SQLiteDatabase db = dbHelper.getWritableDatabase();
 
             int count = 0;
+            boolean catalogChanged = false;
 
             db.beginTransaction();
-            try {
+            try (ScanDatabaseHelper.ProductWriter writer = new ScanDatabaseHelper.ProductWriter(db)) {
                 for (int i = 0; i < itemsArr.length(); i++) {
+                    // İptal edilirse transaction geri alınır, katalog yarım kalmaz
+                    task.throwIfCancelled();
+                    task.progress(i + 1, itemsArr.length());
+
                     JSONObject o = itemsArr.optJSONObject(i);
                     if (o == null) continue;
 
@@ -116,18 +223,21 @@ public class FastStockScannerPlugin extends Plugin {
                     if (brandName == null) brandName = "";
                     brandName = brandName.trim();
 
-                    ContentValues cv = new ContentValues();
-                    cv.put("gtin", gtin);
-                    cv.put("brand_name", brandName);
-
-                    db.insertWithOnConflict("products_local", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+                    writer.write(gtin, brandName);
                     count++;
                 }
 
+                catalogChanged = writer.hasChanges();
                 db.setTransactionSuccessful();
             } finally {
                 db.endTransaction();
             }
+            if (catalogChanged) {
+                dbHelper.reportCache.invalidateCatalog();
+            }
+
+            // Binlerce satırlık katalog yazımı sonrası WAL'ı kırp
+            dbHelper.checkpointIfNeeded();
 
             JSObject r = new JSObject();
             r.put("success", true);
@@ -135,7 +245,7 @@ public class FastStockScannerPlugin extends Plugin {
             call.resolve(r);
 
         } catch (Exception e) {
-            call.reject("importInitialProducts hata: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "importInitialProducts hata", e);
         }
     }
 
@@ -147,6 +257,10 @@ public class FastStockScannerPlugin extends Plugin {
     // =========================================================
     @PluginMethod
     public void syncProducts(PluginCall call) {
+        tasks.write(call, "syncProducts", task -> runSyncProducts(call, task));
+    }
+
+    private void runSyncProducts(PluginCall call, PluginTaskScheduler.Task task) {
         try {
             JSArray itemsArr = call.getArray("items");
             if (itemsArr == null || itemsArr.length() == 0) {
@@ -162,10 +276,15 @@ public class FastStockScannerPlugin extends Plugin {
 
             int added = 0;
             int updated = 0;
+            boolean catalogChanged = false;
 
             db.beginTransaction();
-            try {
+            try (ScanDatabaseHelper.ProductWriter writer = new ScanDatabaseHelper.ProductWriter(db)) {
                 for (int i = 0; i < itemsArr.length(); i++) {
+                    // İptal edilirse transaction geri alınır, katalog yarım kalmaz
+                    task.throwIfCancelled();
+                    task.progress(i + 1, itemsArr.length());
+
                     JSONObject o = itemsArr.optJSONObject(i);
                     if (o == null) continue;
 
@@ -187,34 +306,22 @@ public class FastStockScannerPlugin extends Plugin {
                     if (brandName == null) brandName = "";
                     brandName = brandName.trim();
 
-                    // var mı? -> added/updated say
-                    boolean exists = false;
-                    Cursor check = null;
-                    try {
-                        check = db.rawQuery(
-                                "SELECT 1 FROM products_local WHERE gtin = ? LIMIT 1",
-                                new String[]{gtin}
-                        );
-                        exists = (check != null && check.moveToFirst());
-                    } finally {
-                        if (check != null) check.close();
-                    }
-
-                    ContentValues cv = new ContentValues();
-                    cv.put("gtin", gtin);
-                    cv.put("brand_name", brandName);
-
-                    // UPSERT
-                    db.insertWithOnConflict("products_local", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
-
-                    if (exists) updated++;
-                    else added++;
+                    // UPSERT; yeni mi? -> added/updated say
+                    if (writer.write(gtin, brandName)) added++;
+                    else updated++;
                 }
 
+                catalogChanged = writer.hasChanges();
                 db.setTransactionSuccessful();
             } finally {
                 db.endTransaction();
             }
+            if (catalogChanged) {
+                dbHelper.reportCache.invalidateCatalog();
+            }
+
+            // Binlerce satırlık katalog yazımı sonrası WAL'ı kırp
+            dbHelper.checkpointIfNeeded();
 
             JSObject r = new JSObject();
             r.put("added", added);
@@ -222,32 +329,359 @@ public class FastStockScannerPlugin extends Plugin {
             call.resolve(r);
 
         } catch (Exception e) {
-            call.reject("syncProducts hata: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "syncProducts hata", e);
         }
     }
 
-    // Kayıtlı sayım oturumlarını SQLite'ten okuyup JS'e döndürür
+    // Ürün adı araması: { query: string, limit?: number } → { items: [{ gtin, brand_name }] }
+    // Her kelime önek olarak aranır ("par 500" → adında "par..." ve "500..." geçen ürünler);
+    // büyük/küçük harf, Türkçe karakter ve aksan farkı gözetilmez.
     @PluginMethod
-    public void getScanSessions(PluginCall call) {
+    public void searchProducts(PluginCall call) {
+        tasks.read(call, "searchProducts", task -> runSearchProducts(call, task));
+    }
+
+    private void runSearchProducts(PluginCall call, PluginTaskScheduler.Task task) {
+        String query = call.getString("query");
+        int limit = searchLimitOf(call);
+
+        JSArray items = new JSArray();
+        String matchQuery = query != null ? ScanDatabaseHelper.ftsPrefixQuery(query) : null;
+        if (matchQuery == null) {
+            JSObject empty = new JSObject();
+            empty.put("items", items);
+            call.resolve(empty);
+            return;
+        }
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            Cursor c = ScanDatabaseHelper.searchProducts(db, matchQuery, limit, task.signal);
+            try {
+                while (c.moveToNext()) {
+                    JSObject row = new JSObject();
+                    row.put("gtin", c.getString(0));
+                    row.put("brand_name", c.getString(1));
+                    items.put(row);
+                }
+            } finally {
+                c.close();
+            }
+
+            JSObject result = new JSObject();
+            result.put("items", items);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Ürün araması yapılırken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    private static int searchLimitOf(PluginCall call) {
+        return Math.max(1, Math.min(
+                call.getInt("limit", ScanDatabaseHelper.SEARCH_DEFAULT_LIMIT),
+                ScanDatabaseHelper.SEARCH_MAX_LIMIT));
+    }
+
+    // ================== PAYDAŞ DİZİNİ ==================
+    // stakeholders.json WebView'e yüklenmez; native tabloya akışla alınır, sorgular buradan yapılır.
+    // Kayıt: { id, code, name, type, city, district, parentCode } — code tekil değildir.
+
+    // Dizini yükler (mevcut dizinin yerine, tek transaction):
+    //   {} → uygulamayla gelen public/stakeholders.json
+    //   { ifChanged: true } → aynısı; dizin bu paket sürümüyle zaten yüklendiyse atlanır
+    //   { uri } | { path } → indirilen dosya (.json veya .json.gz); path yalnızca uygulamanın
+    //   files / cache klasörlerinden biri altında olabilir (Filesystem Directory.Data / Cache)
+    // Sürüm: yükleme anındaki versionCode + paketin kurulma zamanı (app_meta'da saklanır). Uygulama
+    // güncellenince (gelen dosya değişmiş olabilir) ifChanged yeniden yükler; indirilen bir dosya da
+    // böylece bir sonraki güncellemeye kadar korunur.
+    // Döner: { rows, skipped }
+    @PluginMethod
+    public void importStakeholders(PluginCall call) {
+        tasks.write(call, "importStakeholders", task -> runImportStakeholders(call, task));
+    }
+
+    private void runImportStakeholders(PluginCall call, PluginTaskScheduler.Task task) {
+        String uri = call.getString("uri");
+        String path = call.getString("path");
+        boolean ifChanged = Boolean.TRUE.equals(call.getBoolean("ifChanged", false));
+
         try {
             ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            String assetVersion = stakeholdersAssetVersion();
+            if (ifChanged && uri == null && path == null
+                    && assetVersion.equals(dbHelper.getStakeholdersAssetVersion())) {
+                JSObject result = new JSObject();
+                result.put("rows", 0);
+                result.put("skipped", true);
+                call.resolve(result);
+                return;
+            }
 
-            Cursor c = db.rawQuery(
-                    "SELECT id, created_at, note, total_count, device_id " +
-                            "FROM scan_sessions ORDER BY created_at DESC",
-                    null
+            InputStream in;
+            if (uri != null) {
+                in = getContext().getContentResolver().openInputStream(Uri.parse(uri));
+                if (in == null) {
+                    call.reject("Dosya açılamadı: " + uri);
+                    return;
+                }
+            } else if (path != null) {
+                File file = appStorageFile(path);
+                if (file == null) {
+                    call.reject("Dosya uygulama klasörü dışında: " + path);
+                    return;
+                }
+                in = new FileInputStream(file);
+            } else {
+                in = getContext().getAssets().open(StakeholderDirectory.DEFAULT_ASSET);
+            }
+
+            long rows;
+            try {
+                rows = dbHelper.replaceStakeholders(in, assetVersion, task.signal);
+            } finally {
+                in.close();
+            }
+            dbHelper.checkpointIfNeeded();
+
+            JSObject result = new JSObject();
+            result.put("rows", rows);
+            result.put("skipped", false);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Paydaş dizini yüklenirken hata", e);
+        }
+    }
+
+    // path'i (.. ve sembolik bağlantılar çözülerek) files / cache klasörü altındaysa döner, değilse null
+    @Nullable
+    private File appStorageFile(String path) throws IOException {
+        File file = new File(path).getCanonicalFile();
+        for (File dir : new File[] { getContext().getFilesDir(), getContext().getCacheDir() }) {
+            String root = dir.getCanonicalPath() + File.separator;
+            if (file.getPath().startsWith(root)) return file;
+        }
+        return null;
+    }
+
+    // versionCode her sürümde artırılmayabilir; lastUpdateTime her APK kurulumunda değişir
+    private String stakeholdersAssetVersion() throws PackageManager.NameNotFoundException {
+        PackageInfo info = getContext().getPackageManager().getPackageInfo(getContext().getPackageName(), 0);
+        long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? info.getLongVersionCode()
+                : info.versionCode;
+        return versionCode + ":" + info.lastUpdateTime;
+    }
+
+    // code ile arama: { codes: number[] } → { items } (code, id sırasıyla; bulunamayan code dönmez)
+    @PluginMethod
+    public void lookupStakeholders(PluginCall call) {
+        tasks.read(call, "lookupStakeholders", task -> runLookupStakeholders(call, task));
+    }
+
+    private void runLookupStakeholders(PluginCall call, PluginTaskScheduler.Task task) {
+        List<Long> codes = parseStakeholderCodes(call.getArray("codes"));
+        if (codes == null) {
+            call.reject("codes yalnızca tam sayı içermeli.");
+            return;
+        }
+        if (codes.isEmpty()) {
+            call.reject("codes parametresi zorunlu ve en az bir code içermeli.");
+            return;
+        }
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            JSArray items = new JSArray();
+            for (int from = 0; from < codes.size(); from += ScanDatabaseHelper.STAKEHOLDER_LOOKUP_CHUNK) {
+                Cursor c = ScanDatabaseHelper.queryStakeholdersByCode(db, codes, from, task.signal);
+                try {
+                    while (c.moveToNext()) {
+                        readStakeholder(c, items);
+                    }
+                } finally {
+                    c.close();
+                }
+            }
+
+            JSObject result = new JSObject();
+            result.put("items", items);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Paydaş araması yapılırken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    // Ad araması: { query, limit?, type? } → { items } (searchProducts ile aynı önek kuralları)
+    @PluginMethod
+    public void searchStakeholders(PluginCall call) {
+        tasks.read(call, "searchStakeholders", task -> runSearchStakeholders(call, task));
+    }
+
+    private void runSearchStakeholders(PluginCall call, PluginTaskScheduler.Task task) {
+        String query = call.getString("query");
+        Long type = call.getLong("type");
+        int limit = searchLimitOf(call);
+
+        JSArray items = new JSArray();
+        String matchQuery = query != null ? ScanDatabaseHelper.ftsPrefixQuery(query) : null;
+        if (matchQuery == null) {
+            JSObject empty = new JSObject();
+            empty.put("items", items);
+            call.resolve(empty);
+            return;
+        }
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            Cursor c = ScanDatabaseHelper.searchStakeholders(db, matchQuery, type, limit, task.signal);
+            try {
+                while (c.moveToNext()) {
+                    readStakeholder(c, items);
+                }
+            } finally {
+                c.close();
+            }
+
+            JSObject result = new JSObject();
+            result.put("items", items);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Paydaş araması yapılırken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    // Sayfalı liste: { limit?, afterId?, stream?, type?, parentCode? } → id ASC keyset ({ items, lastId, hasMore })
+    @PluginMethod
+    public void getStakeholders(PluginCall call) {
+        tasks.read(call, "getStakeholders", task -> runGetStakeholders(call, task));
+    }
+
+    private void runGetStakeholders(PluginCall call, PluginTaskScheduler.Task task) {
+        Long type = call.getLong("type");
+        Long parentCode = call.getLong("parentCode");
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(ScanDatabaseHelper.STAKEHOLDER_COLUMNS_SQL)
+                .append(" FROM stakeholders s WHERE ");
+        List<String> args = new ArrayList<>();
+        if (type != null) {
+            sql.append("s.type = ? AND ");
+            args.add(String.valueOf(type));
+        }
+        if (parentCode != null) {
+            sql.append("s.parent_code = ? AND ");
+            args.add(String.valueOf(parentCode));
+        }
+        sql.append("s.id > ? ORDER BY s.id ASC LIMIT ?");
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+            readKeysetPages(
+                    call,
+                    db,
+                    sql.toString(),
+                    args.toArray(new String[0]),
+                    0L,
+                    "items",
+                    FastStockScannerPlugin::readStakeholder,
+                    task
             );
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Paydaş listesi okunurken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
 
-            JSArray sessions = new JSArray();
-            while (c.moveToNext()) {
+    /**
+     * STAKEHOLDER_COLUMNS_SQL sırasındaki satırı out'a ekler; keyset anahtarı (id) döner.
+     */
+    private static long readStakeholder(Cursor c, JSArray out) {
+        JSObject o = new JSObject();
+        o.put("id", c.getLong(0));
+        o.put("code", c.getLong(1));
+        o.put("name", c.getString(2));
+        o.put("type", c.isNull(3) ? null : c.getLong(3));
+        o.put("city", c.isNull(4) ? null : c.getString(4));
+        o.put("district", c.isNull(5) ? null : c.getString(5));
+        o.put("parentCode", c.isNull(6) ? null : c.getLong(6));
+        out.put(o);
+        return c.getLong(0);
+    }
+
+    // Kayıtlı sayım oturumlarını SQLite'ten okuyup JS'e döndürür.
+    // Sıra her iki yolda da created_at DESC, id DESC (içe aktarılan oturumlar kaynak created_at'ini taşır).
+    // Parametresiz çağrı eski davranıştır (tüm liste).
+    // { limit, afterId } → (created_at, id) keyset sayfası; afterId son satırın id'sidir, created_at'i
+    // sorguda o satırdan okunur. { stream: true } → sayfalar "streamPage" event'iyle gelir.
+    @PluginMethod
+    public void getScanSessions(PluginCall call) {
+        tasks.read(call, "getScanSessions", task -> runGetScanSessions(call, task));
+    }
+
+    private void runGetScanSessions(PluginCall call, PluginTaskScheduler.Task task) {
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            RowReader reader = (c, out) -> {
                 JSObject o = new JSObject();
                 o.put("id", c.getLong(0));
                 o.put("created_at", c.getString(1));
                 o.put("note", c.isNull(2) ? null : c.getString(2));
                 o.put("total_count", c.getInt(3));
                 o.put("device_id", c.isNull(4) ? null : c.getString(4));
-                sessions.put(o);
+                out.put(o);
+                return c.getLong(0);
+            };
+
+            if (isPagedCall(call)) {
+                // Yeniden eskiye: afterId verilmezse (veya o oturum silinmişse) en yeni oturumdan başla.
+                // Aralık idx_scan_sessions_created_at'ten okunur; aynı created_at'li satırlar id ile sıralanır.
+                readKeysetPages(
+                        call,
+                        db,
+                        "WITH k(id) AS (SELECT CAST(? AS INTEGER)) " +
+                                "SELECT s.id, s.created_at, s.note, s.total_count, s.device_id FROM scan_sessions s " +
+                                "WHERE (s.created_at, s.id) < (SELECT IFNULL((SELECT created_at FROM scan_sessions " +
+                                "  WHERE id = k.id), char(1114111)), k.id FROM k) " +
+                                "ORDER BY s.created_at DESC, s.id DESC LIMIT ?",
+                        new String[0],
+                        Long.MAX_VALUE,
+                        "sessions",
+                        reader,
+                        task
+                );
+                return;
+            }
+
+            Cursor c = db.rawQuery(
+                    "SELECT id, created_at, note, total_count, device_id " +
+                            "FROM scan_sessions ORDER BY created_at DESC, id DESC",
+                    null
+            );
+
+            JSArray sessions = new JSArray();
+            while (c.moveToNext()) {
+                reader.read(c, sessions);
             }
             c.close();
 
@@ -255,66 +689,145 @@ public class FastStockScannerPlugin extends Plugin {
             result.put("sessions", sessions);
             call.resolve(result);
         } catch (Exception e) {
-            call.reject("Scan sessions okunurken hata: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "Scan sessions okunurken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
         }
     }
 
-    // Belirli bir oturumun (scan_sessions.id) altındaki kodları döndürür
+    // Belirli bir oturumun (scan_sessions.id) altındaki kodları döndürür.
+    // { limit, afterId } → id ASC keyset sayfası; { stream: true } → "streamPage" event'leri.
+    // { columnar: true, packInts? } → sayfasız çağrıda items kolon bazlı (ColumnarRows)
     @PluginMethod
     public void getScanSessionItems(PluginCall call) {
+        tasks.read(call, "getScanSessionItems", task -> runGetScanSessionItems(call, task));
+    }
+
+    private void runGetScanSessionItems(PluginCall call, PluginTaskScheduler.Task task) {
         Long sessionId = call.getLong("sessionId");
         if (sessionId == null) {
             call.reject("sessionId parametresi zorunlu");
             return;
         }
 
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
         try {
-            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            db = dbHelper.acquireReader();
+
+            RowReader reader = (c, out) -> {
+                JSObject o = new JSObject();
+                o.put("id", c.getLong(0));
+                o.put("code", c.getString(1));
+                o.put("scanned_at", c.getString(2));
+                o.put("gtin", c.isNull(3) ? null : c.getString(3));
+                out.put(o);
+                return c.getLong(0);
+            };
+            // Kompakt düzen (v15): okunan metin ve GTIN saklanan kolonlardan geri kurulur
+            String columns = "SELECT id, " + ScanItemCode.rawSql("scan_items") + ", " +
+                    ScanDatabaseHelper.itemScannedAtSql("scan_items") + ", " +
+                    ScanDatabaseHelper.itemGtinSql("scan_items") + " ";
+
+            if (isPagedCall(call)) {
+                readKeysetPages(
+                        call,
+                        db,
+                        columns +
+                                "FROM scan_items WHERE session_id = ? AND id > ? ORDER BY id ASC LIMIT ?",
+                        new String[]{String.valueOf(sessionId)},
+                        0L,
+                        "items",
+                        reader,
+                        task
+                );
+                return;
+            }
 
             Cursor c = db.rawQuery(
-                    "SELECT id, code, scanned_at, gtin " +
-                            "FROM scan_items WHERE session_id = ? ORDER BY id ASC",
+                    columns + "FROM scan_items WHERE session_id = ? ORDER BY id ASC",
                     new String[]{String.valueOf(sessionId)}
             );
 
+            JSObject result = new JSObject();
+            if (isColumnarCall(call)) {
+                ColumnarRows rows = new ColumnarRows(packIntsOf(call));
+                ColumnarRows.LongColumn ids = rows.longColumn("id");
+                ColumnarRows.StringColumn codes = rows.stringColumn("code");
+                ColumnarRows.StringColumn scannedAt = rows.stringColumn("scanned_at");
+                ColumnarRows.StringColumn gtins = rows.stringColumn("gtin");
+                while (c.moveToNext()) {
+                    ids.add(c.getLong(0));
+                    codes.add(c.getString(1));
+                    scannedAt.add(c.getString(2));
+                    gtins.add(c.isNull(3) ? null : c.getString(3));
+                }
+                c.close();
+                result.put("items", rows.toJSObject());
+                call.resolve(result);
+                return;
+            }
+
             JSArray items = new JSArray();
             while (c.moveToNext()) {
-                JSObject o = new JSObject();
-                o.put("id", c.getLong(0));
-                o.put("code", c.getString(1));
-                o.put("scanned_at", c.getString(2));
-                o.put("gtin", c.isNull(3) ? null : c.getString(3));
-                items.put(o);
+                reader.read(c, items);
             }
             c.close();
 
-            JSObject result = new JSObject();
             result.put("items", items);
             call.resolve(result);
         } catch (Exception e) {
-            call.reject("Scan session items okunurken hata: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "Scan session items okunurken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
         }
     }
 
-    // Tüm scan_items içindeki datamatrix code alanını döndürür
+    // Tüm scan_items içindeki datamatrix code alanını döndürür.
+    // { limit, afterId } → id ASC keyset sayfası; { stream: true } → "streamPage" event'leri.
     @PluginMethod
     public void getAllScanItems(PluginCall call) {
+        tasks.read(call, "getAllScanItems", task -> runGetAllScanItems(call, task));
+    }
+
+    private void runGetAllScanItems(PluginCall call, PluginTaskScheduler.Task task) {
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
         try {
-            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            db = dbHelper.acquireReader();
+
+            RowReader reader = (c, out) -> {
+                String code = c.getString(1);
+                if (code != null && !code.trim().isEmpty()) {
+                    out.put(code);
+                }
+                return c.getLong(0);
+            };
+
+            if (isPagedCall(call)) {
+                readKeysetPages(
+                        call,
+                        db,
+                        "SELECT id, " + ScanItemCode.rawSql("scan_items") + " FROM scan_items " +
+                                "WHERE id > ? AND code IS NOT NULL AND TRIM(code) <> '' ORDER BY id ASC LIMIT ?",
+                        new String[0],
+                        0L,
+                        "codes",
+                        reader,
+                        task
+                );
+                return;
+            }
 
             Cursor c = db.rawQuery(
-                    "SELECT code FROM scan_items WHERE code IS NOT NULL AND TRIM(code) <> '' ORDER BY id ASC",
+                    "SELECT id, " + ScanItemCode.rawSql("scan_items") + " FROM scan_items " +
+                            "WHERE code IS NOT NULL AND TRIM(code) <> '' ORDER BY id ASC",
                     null
             );
 
             JSArray arr = new JSArray();
             while (c.moveToNext()) {
-                String code = c.getString(0);
-                if (code != null && !code.trim().isEmpty()) {
-                    arr.put(code);
-                }
+                reader.read(c, arr);
             }
             c.close();
 
@@ -322,14 +835,139 @@ public class FastStockScannerPlugin extends Plugin {
             result.put("codes", arr);
             call.resolve(result);
         } catch (Exception e) {
-            call.reject("getAllScanItems hata: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "getAllScanItems hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
         }
     }
 
+    // ================== SAYFALAMA / STREAM ALTYAPISI ==================
+
+    /**
+     * Cursor'daki mevcut satırı out dizisine ekler ve satırın keyset anahtarını (id) döner.
+     */
+    private interface RowReader {
+        long read(Cursor c, JSArray out);
+    }
+
+    private static boolean isPagedCall(PluginCall call) {
+        return call.getLong("afterId") != null
+                || call.getInt("limit") != null
+                || Boolean.TRUE.equals(call.getBoolean("stream", false));
+    }
+
+    private static int pageSizeOf(PluginCall call) {
+        int limit = call.getInt("limit", DEFAULT_PAGE_SIZE);
+        if (limit <= 0) return DEFAULT_PAGE_SIZE;
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * { columnar: true }: liste satır nesneleri yerine ColumnarRows biçiminde döner.
+     * Sayfalı / stream çağrılarda yok sayılır (sayfalar zaten MAX_PAGE_SIZE ile sınırlı).
+     */
+    private static boolean isColumnarCall(PluginCall call) {
+        return Boolean.TRUE.equals(call.getBoolean("columnar", false));
+    }
+
+    /**
+     * { packInts: true }: columnar cevapta sayı kolonları base64 Int32 / Float64 olarak paketlenir.
+     */
+    private static boolean packIntsOf(PluginCall call) {
+        return Boolean.TRUE.equals(call.getBoolean("packInts", false));
+    }
+
+    /**
+     * Keyset sayfalama: sql'in son iki parametresi "id ? afterId" ve "LIMIT ?" olmalıdır.
+     * Her sayfa limit+1 satır ister; fazladan satır varsa hasMore=true olur.
+     *
+     * - stream=false: tek sayfa döner → { [listKey], lastId, hasMore }
+     * - stream=true : sayfalar okundukça STREAM_PAGE_EVENT ile gönderilir,
+     *                 en sonda { streamId, count, lastId } ile resolve edilir.
+     *   Bellekte hiçbir zaman birden fazla sayfa tutulmaz.
+     *
+     * streamId JS'in ilk event gelmeden bildiği bir değer olmalıdır: çağrıdaki "streamId",
+     * yoksa görevin taskId'si. (callbackId Promise resolve olana kadar JS'e görünmez.)
+     */
+    private void readKeysetPages(PluginCall call,
+                                 SQLiteDatabase db,
+                                 String sql,
+                                 String[] fixedArgs,
+                                 long firstKey,
+                                 String listKey,
+                                 RowReader reader,
+                                 PluginTaskScheduler.Task task) {
+        boolean stream = Boolean.TRUE.equals(call.getBoolean("stream", false));
+        int pageSize = pageSizeOf(call);
+        Long afterId = call.getLong("afterId");
+        long key = afterId != null ? afterId : firstKey;
+
+        String[] args = new String[fixedArgs.length + 2];
+        System.arraycopy(fixedArgs, 0, args, 0, fixedArgs.length);
+        args[fixedArgs.length + 1] = String.valueOf(pageSize + 1);
+
+        String streamId = call.getString("streamId", task.id);
+        long count = 0;
+        // Hiç satır okunmazsa JS'e gelen afterId aynen geri döner
+        Long lastId = afterId;
+
+        while (true) {
+            task.throwIfCancelled();
+            args[fixedArgs.length] = String.valueOf(key);
+
+            JSArray page = new JSArray();
+            int rows = 0;
+            boolean hasMore = false;
+            Cursor c = db.rawQuery(sql, args);
+            try {
+                while (c.moveToNext()) {
+                    if (rows == pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    key = reader.read(c, page);
+                    lastId = key;
+                    rows++;
+                }
+            } finally {
+                c.close();
+            }
+            count += page.length();
+
+            if (!stream) {
+                JSObject result = new JSObject();
+                result.put(listKey, page);
+                result.put("lastId", lastId);
+                result.put("hasMore", hasMore);
+                call.resolve(result);
+                return;
+            }
+
+            JSObject event = new JSObject();
+            event.put("streamId", streamId);
+            event.put(listKey, page);
+            event.put("lastId", lastId);
+            event.put("done", !hasMore);
+            notifyListeners(STREAM_PAGE_EVENT, event);
+            task.progress(count, -1);
+
+            if (!hasMore) break;
+        }
+
+        JSObject result = new JSObject();
+        result.put("streamId", streamId);
+        result.put("count", count);
+        result.put("lastId", lastId);
+        call.resolve(result);
+    }
 
     // Oturum ve bağlı scan_items kayıtlarını siler
     @PluginMethod
     public void deleteScanSession(PluginCall call) {
+        tasks.write(call, "deleteScanSession", task -> runDeleteScanSession(call, task));
+    }
+
+    private void runDeleteScanSession(PluginCall call, PluginTaskScheduler.Task task) {
         Long sessionId = call.getLong("sessionId");
         if (sessionId == null) {
             sessionId = call.getLong("id"); // ✅ FE uyumu
@@ -345,139 +983,958 @@ public class FastStockScannerPlugin extends Plugin {
             JSObject result = new JSObject();
             result.put("deleted", deleted);
             call.resolve(result);
+            scheduleReclaimFreePages();
         } catch (Exception e) {
-            call.reject("Scan session silinirken hata: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "Scan session silinirken hata", e);
         }
     }
 
-    // ================== STOK RAPORU ==================
+    // Birden çok oturumu tek transaction'da siler: { sessionIds: number[] } → { deleted }
     @PluginMethod
-    public void getStockReport(PluginCall call) {
-        try {
-            // JS’ten gelen sessionIds array’ini al
-            JSArray sessionIdsArr = call.getArray("sessionIds");
-            if (sessionIdsArr == null || sessionIdsArr.length() == 0) {
-                call.reject("sessionIds parametresi zorunlu ve en az bir id içermeli.");
-                return;
-            }
-
-            List<Long> sessionIds = new ArrayList<>();
-            for (int i = 0; i < sessionIdsArr.length(); i++) {
-                try {
-                    long id = sessionIdsArr.getLong(i);
-                    if (id > 0) {
-                        sessionIds.add(id);
-                    }
-                } catch (Exception ignored) {
-                }
-            }
+    public void deleteSessions(PluginCall call) {
+        tasks.write(call, "deleteSessions", task -> runDeleteSessions(call, task));
+    }
 
-            if (sessionIds.isEmpty()) {
-                call.reject("Geçerli sessionIds bulunamadı.");
-                return;
-            }
+    private void runDeleteSessions(PluginCall call, PluginTaskScheduler.Task task) {
+        List<Long> sessionIds = parseSessionIds(call.getArray("sessionIds"));
+        if (sessionIds.isEmpty()) {
+            call.reject("sessionIds parametresi zorunlu ve en az bir id içermeli.");
+            return;
+        }
 
+        try {
             ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-            // Dinamik IN (?) listesi
-            StringBuilder sb = new StringBuilder();
-            sb.append("SELECT s.gtin, p.brand_name, ");
-            sb.append("COUNT(DISTINCT s.code) AS distinctCount, ");
-            sb.append("COUNT(s.code) AS totalScans ");
-            sb.append("FROM scan_items s ");
-            sb.append("LEFT JOIN (");
-            sb.append("  SELECT ");
-            sb.append("    CASE ");
-            sb.append("      WHEN LENGTH(TRIM(CAST(gtin AS TEXT))) = 14 AND SUBSTR(TRIM(CAST(gtin AS TEXT)),1,1)='0' ");
-            sb.append("        THEN SUBSTR(TRIM(CAST(gtin AS TEXT)),2) ");
-            sb.append("      ELSE TRIM(CAST(gtin AS TEXT)) ");
-            sb.append("    END AS gtin_norm, ");
-            sb.append("    brand_name ");
-            sb.append("  FROM products_local ");
-            sb.append(") p ON p.gtin_norm = (");
-            sb.append("  CASE ");
-            sb.append("    WHEN s.gtin IS NULL THEN NULL ");
-            sb.append("    WHEN LENGTH(TRIM(CAST(s.gtin AS TEXT))) = 14 AND SUBSTR(TRIM(CAST(s.gtin AS TEXT)),1,1)='0' ");
-            sb.append("      THEN SUBSTR(TRIM(CAST(s.gtin AS TEXT)),2) ");
-            sb.append("    ELSE TRIM(CAST(s.gtin AS TEXT)) ");
-            sb.append("  END ");
-            sb.append(") ");
-
-            sb.append("WHERE s.session_id IN (");
-
-            String[] args = new String[sessionIds.size()];
-            for (int i = 0; i < sessionIds.size(); i++) {
-                if (i > 0) sb.append(",");
-                sb.append("?");
-                args[i] = String.valueOf(sessionIds.get(i));
-            }
-            sb.append(") ");
-            sb.append("GROUP BY s.gtin, p.brand_name ");
-            sb.append("ORDER BY p.brand_name IS NULL, p.brand_name ASC;");
-
-            Cursor c = db.rawQuery(sb.toString(), args);
-
-            JSArray items = new JSArray();
-            int totalDistinct = 0;
-            int totalScans = 0;
+            int deleted = dbHelper.deleteSessions(sessionIds);
+            dbHelper.checkpointIfNeeded();
 
-            while (c.moveToNext()) {
-                String gtin = c.isNull(0) ? null : c.getString(0);
-                String brandName = c.isNull(1) ? null : c.getString(1);
-                int distinctCount = c.getInt(2);
-                int scans = c.getInt(3);
+            JSObject result = new JSObject();
+            result.put("deleted", deleted);
+            call.resolve(result);
+            scheduleReclaimFreePages();
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Oturumlar silinirken hata", e);
+        }
+    }
+
+    /**
+     * Bekleyen veri geçişlerinin bir sonraki parçasını yazma şeridine ekler; parça bitince kendini
+     * yeniden ekler, bekleyen geçiş kalmayınca durur. Her parça ayrı görev olduğu için araya giren
+     * JS yazmaları geçişin sonunu beklemez. Görev iptal edilirse geçiş bir sonraki açılışta sürer.
+     * Her parçadan sonra taskProgress ve dataMigrationProgress gönderilir.
+     * Geçişler bitince reclaimFreePages eklenir; gerekiyorsa dosyayı tek VACUUM ile yeniden yazar.
+     */
+    private void scheduleDataMigrations() {
+        tasks.background("dataMigration", task -> {
+            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+            ScanDatabaseHelper.DataMigrationStatus status = dbHelper.runDataMigrationBatch();
+            if (status == null) {
+                scheduleReclaimFreePages();
+                return;
+            }
+            task.progress(status.lastId, status.targetId);
+            notifyListeners(DATA_MIGRATION_EVENT, dataMigrationToJson(status));
+            scheduleDataMigrations();
+        });
+    }
+
+    private static JSObject dataMigrationToJson(ScanDatabaseHelper.DataMigrationStatus status) {
+        JSObject o = new JSObject();
+        o.put("name", status.name);
+        o.put("lastId", status.lastId);
+        o.put("targetId", status.targetId);
+        o.put("done", status.done);
+        return o;
+    }
+
+    // Veri geçişlerinin durumu: { migrations: [{ name, lastId, targetId, done }] }
+    // Açılışta devam eden geçişi göstermek için; ilerleme dataMigrationProgress event'iyle gelir.
+    @PluginMethod
+    public void getDataMigrations(PluginCall call) {
+        tasks.read(call, "getDataMigrations", task -> runGetDataMigrations(call));
+    }
+
+    private void runGetDataMigrations(PluginCall call) {
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+            JSArray migrations = new JSArray();
+            for (ScanDatabaseHelper.DataMigrationStatus status : ScanDatabaseHelper.queryDataMigrations(db)) {
+                migrations.put(dataMigrationToJson(status));
+            }
+            JSObject result = new JSObject();
+            result.put("migrations", migrations);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Veri geçişleri okunurken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    /**
+     * Silmelerden boşalan sayfaları yazma şeridinde, sıradaki işlerden sonra dosyadan atar.
+     */
+    private void scheduleReclaimFreePages() {
+        tasks.background("reclaimFreePages",
+                task -> ScanDatabaseHelper.getInstance(getContext()).reclaimFreePages());
+    }
+
+    // ================== OTURUM FARKI ==================
+    // İki sayımı karşılaştırır (a: önceki, b: sonraki).
+    //   { a, b }                          → { a, b, distinctA, distinctB, addedCount, removedCount, commonCount,
+    //                                         gtins: [{ gtin, brand_name, countA, countB, delta }] }
+    //   { a, b, list: "added" | "removed" | "common", limit?, afterId?, stream? }
+    //                                     → kod listesi, getScanSessionItems gibi keyset sayfalı ({ items, lastId, hasMore })
+    // added: b'de olup a'da olmayan, removed: a'da olup b'de olmayan, common: ikisinde de olan kodlar.
+    @PluginMethod
+    public void diffSessions(PluginCall call) {
+        tasks.read(call, "diffSessions", task -> runDiffSessions(call, task));
+    }
+
+    private void runDiffSessions(PluginCall call, PluginTaskScheduler.Task task) {
+        Long a = call.getLong("a");
+        Long b = call.getLong("b");
+        if (a == null || b == null) {
+            call.reject("a ve b parametreleri zorunlu");
+            return;
+        }
+
+        String list = call.getString("list");
+        String[] listArgs;
+        if (list == null) {
+            listArgs = null;
+        } else if (list.equals("added")) {
+            listArgs = new String[]{ String.valueOf(b), String.valueOf(a) };
+        } else if (list.equals("removed") || list.equals("common")) {
+            listArgs = new String[]{ String.valueOf(a), String.valueOf(b) };
+        } else {
+            call.reject("list parametresi added, removed veya common olmalı");
+            return;
+        }
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            if (listArgs != null) {
+                readKeysetPages(
+                        call,
+                        db,
+                        ScanDatabaseHelper.sessionDiffPageSql(list.equals("common")),
+                        listArgs,
+                        0L,
+                        "items",
+                        (c, out) -> {
+                            JSObject o = new JSObject();
+                            o.put("id", c.getLong(0));
+                            o.put("code", c.getString(1));
+                            o.put("gtin", c.isNull(2) ? null : c.getString(2));
+                            out.put(o);
+                            return c.getLong(0);
+                        },
+                        task
+                );
+                return;
+            }
+
+            long[] counts = ScanDatabaseHelper.querySessionDiffCounts(db, a, b, task.signal);
+            long common = counts[2];
+
+            JSArray gtins = new JSArray();
+            Cursor c = ScanDatabaseHelper.querySessionGtinDeltas(db, a, b, task.signal);
+            try {
+                while (c.moveToNext()) {
+                    int countA = c.getInt(2);
+                    int countB = c.getInt(3);
+
+                    JSObject row = new JSObject();
+                    row.put("gtin", c.isNull(0) ? null : c.getString(0));
+                    row.put("brand_name", c.isNull(1) ? null : c.getString(1));
+                    row.put("countA", countA);
+                    row.put("countB", countB);
+                    row.put("delta", countB - countA);
+                    gtins.put(row);
+                }
+            } finally {
+                c.close();
+            }
+
+            JSObject result = new JSObject();
+            result.put("a", a);
+            result.put("b", b);
+            result.put("distinctA", counts[0]);
+            result.put("distinctB", counts[1]);
+            result.put("addedCount", counts[1] - common);
+            result.put("removedCount", counts[0] - common);
+            result.put("commonCount", common);
+            result.put("gtins", gtins);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Oturum farkı hesaplanırken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    // ================== OTURUM BİRLEŞTİRME ==================
+    // Aynı sayımın parçalarını (farklı cihaz / oturum) tek oturumda toplar; kodlar SQL tarafında tekilleşir.
+    //   { sessionIds: number[], note?: string, retireSources?: boolean }
+    // Döner: { sessionId, totalCount, sourceCount, retired }
+    // retireSources: true ise kaynak oturumlar aynı transaction'da silinir.
+    @PluginMethod
+    public void mergeSessions(PluginCall call) {
+        tasks.write(call, "mergeSessions", task -> runMergeSessions(call, task));
+    }
+
+    private void runMergeSessions(PluginCall call, PluginTaskScheduler.Task task) {
+        List<Long> sessionIds = parseSessionIds(call.getArray("sessionIds"));
+        if (sessionIds.isEmpty()) {
+            call.reject("sessionIds parametresi zorunlu ve en az bir id içermeli.");
+            return;
+        }
 
-                totalDistinct += distinctCount;
-                totalScans += scans;
+        String note = call.getString("note");
+        if (note != null && note.trim().isEmpty()) {
+            note = null;
+        }
+        boolean retireSources = Boolean.TRUE.equals(call.getBoolean("retireSources", false));
 
-                JSObject row = new JSObject();
-                row.put("gtin", gtin);
-                row.put("brand_name", brandName);
-                row.put("distinctCount", distinctCount);
-                row.put("totalScans", scans);
+        // FastMultiScanActivity ile aynı biçim
+        String createdAt = new java.text.SimpleDateFormat(
+                ScanDatabaseHelper.TIMESTAMP_PATTERN,
+                java.util.Locale.getDefault()
+        ).format(new java.util.Date());
 
-                items.put(row);
+        try {
+            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+            long[] merged = dbHelper.mergeSessions(sessionIds, note, createdAt, retireSources);
+            if (merged == null) {
+                call.reject("Birleştirilecek oturum bulunamadı.");
+                return;
             }
+            dbHelper.checkpointIfNeeded();
+
+            JSObject result = new JSObject();
+            result.put("sessionId", merged[0]);
+            result.put("totalCount", merged[1]);
+            result.put("sourceCount", merged[2]);
+            result.put("retired", retireSources);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Oturumlar birleştirilirken hata", e);
+        }
+    }
+
+    // ================== STOK RAPORU ==================
+    // Oturum seçimi iki şekilde gelebilir:
+    //   { sessionIds: number[] }                      → seçili oturumlar
+    //   { from?: string, to?: string, deviceId?: string } → tarih aralığı / cihaz (ay sonu raporu)
+    // { columnar: true, packInts? } → items kolon bazlı (ColumnarRows)
+    @PluginMethod
+    public void getStockReport(PluginCall call) {
+        tasks.read(call, "getStockReport", task -> runGetStockReport(call, task));
+    }
+
+    private void runGetStockReport(PluginCall call, PluginTaskScheduler.Task task) {
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            int selected = loadReportSelection(call, db);
+            if (selected < 0) return;
+
+            // Aynı oturum kümesi + katalog için hesaplanmış rapor varsa sorgu çalışmaz
+            long[] sessionIds = ScanDatabaseHelper.readReportSessionIds(db);
+            StockReportCache cache = dbHelper.reportCache;
+            StockReportCache.Report report = cache.get(sessionIds);
+            if (report == null) {
+                long stamp = cache.begin();
+                report = readStockReport(db, selected, task);
+                cache.put(sessionIds, stamp, report);
+            }
+
+            JSObject result = new JSObject();
+            if (isColumnarCall(call)) {
+                ColumnarRows rows = new ColumnarRows(packIntsOf(call));
+                ColumnarRows.StringColumn gtins = rows.stringColumn("gtin");
+                ColumnarRows.StringColumn brandNames = rows.stringColumn("brand_name");
+                ColumnarRows.LongColumn distinctCounts = rows.longColumn("distinctCount");
+                ColumnarRows.LongColumn totalScans = rows.longColumn("totalScans");
+                for (int i = 0; i < report.size(); i++) {
+                    gtins.add(report.gtins[i]);
+                    brandNames.add(report.brandNames[i]);
+                    distinctCounts.add(report.distinctCounts[i]);
+                    totalScans.add(report.totalScans[i]);
+                }
+                result.put("items", rows.toJSObject());
+            } else {
+                JSArray items = new JSArray();
+                for (int i = 0; i < report.size(); i++) {
+                    JSObject row = new JSObject();
+                    row.put("gtin", report.gtins[i]);
+                    row.put("brand_name", report.brandNames[i]);
+                    row.put("distinctCount", report.distinctCounts[i]);
+                    row.put("totalScans", report.totalScans[i]);
+
+                    items.put(row);
+                }
+                result.put("items", items);
+            }
+            result.put("totalDistinct", report.totalDistinct);
+            result.put("totalScans", report.totalScanCount);
+            result.put("duplicateCount", report.totalScanCount - report.totalDistinct);
+            result.put("sessionCount", report.sessionCount);
+
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Stok raporu oluşturulurken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    /**
+     * temp.report_sessions'taki oturumların stok raporunu hesaplar (önbelleğe alınabilir biçimde).
+     */
+    private static StockReportCache.Report readStockReport(SQLiteDatabase db,
+                                                           int selected,
+                                                           PluginTaskScheduler.Task task) {
+        // Seçili oturumlar ortak kod içermiyorsa (session_overlaps) session_gtin_stats
+        // ön-toplamlarının toplamı kesin sonuçtur; ortak kod varsa DISTINCT için scan_items'a inilir.
+        boolean exact = selected > 1 && ScanDatabaseHelper.reportSessionsShareCodes(db);
+
+        Cursor c = ScanDatabaseHelper.queryStockReport(db, exact, task.signal);
+        try {
+            int n = c.getCount();
+            String[] gtins = new String[n];
+            String[] brandNames = new String[n];
+            int[] distinctCounts = new int[n];
+            int[] totalScans = new int[n];
+
+            for (int i = 0; c.moveToNext(); i++) {
+                gtins[i] = c.isNull(0) ? null : c.getString(0);
+                brandNames[i] = c.isNull(1) ? null : c.getString(1);
+                distinctCounts[i] = c.getInt(2);
+                totalScans[i] = c.getInt(3);
+            }
+            return new StockReportCache.Report(gtins, brandNames, distinctCounts, totalScans, selected);
+        } finally {
             c.close();
+        }
+    }
+
+    /**
+     * Çağrıda oturum seçimi (sessionIds veya from/to/deviceId) var mı?
+     */
+    private static boolean hasReportSelection(PluginCall call) {
+        JSArray sessionIdsArr = call.getArray("sessionIds");
+        return (sessionIdsArr != null && sessionIdsArr.length() > 0)
+                || call.getString("from") != null
+                || call.getString("to") != null
+                || call.getString("deviceId") != null;
+    }
+
+    /**
+     * Çağrıdaki oturum seçimini (sessionIds veya from/to/deviceId) temp.report_sessions'a yükler.
+     * Geçerli seçim yoksa call reject edilir ve -1 döner.
+     *
+     * @return seçilen oturum sayısı, reject edildiyse -1
+     */
+    private static int loadReportSelection(PluginCall call, SQLiteDatabase db) {
+        // JS’ten gelen sessionIds array’ini al
+        JSArray sessionIdsArr = call.getArray("sessionIds");
+        String from = call.getString("from");
+        String to = call.getString("to");
+        String deviceId = call.getString("deviceId");
+
+        // Seçimi temp.report_sessions tablosuna yükle; sorgu metni id sayısından bağımsız kalır
+        if (from != null || to != null || deviceId != null) {
+            return ScanDatabaseHelper.loadReportSessions(db, from, to, deviceId);
+        }
+
+        if (sessionIdsArr == null || sessionIdsArr.length() == 0) {
+            call.reject("sessionIds parametresi zorunlu ve en az bir id içermeli.");
+            return -1;
+        }
+
+        List<Long> sessionIds = parseSessionIds(sessionIdsArr);
+        if (sessionIds.isEmpty()) {
+            call.reject("Geçerli sessionIds bulunamadı.");
+            return -1;
+        }
+        // Tekrarlayan id'ler PRIMARY KEY + OR IGNORE ile tekilleşir
+        return ScanDatabaseHelper.loadReportSessions(db, sessionIds);
+    }
+
+    /**
+     * JS id dizisinden geçerli (pozitif) oturum id'lerini okur; hatalı elemanlar atlanır.
+     */
+    private static List<Long> parseSessionIds(@Nullable JSArray arr) {
+        List<Long> ids = new ArrayList<>();
+        if (arr == null) return ids;
+        for (int i = 0; i < arr.length(); i++) {
+            try {
+                long id = arr.getLong(i);
+                if (id > 0) {
+                    ids.add(id);
+                }
+            } catch (Exception ignored) {
+            }
+        }
+        return ids;
+    }
+
+    // Paydaş code'ları: oturum id'lerinin aksine 0 ve negatif de geçerli bir anahtardır.
+    // Tam sayı olmayan bir eleman varsa null döner (çağrı reddedilir).
+    @Nullable
+    private static List<Long> parseStakeholderCodes(@Nullable JSArray arr) {
+        List<Long> codes = new ArrayList<>();
+        if (arr == null) return codes;
+        for (int i = 0; i < arr.length(); i++) {
+            Object v = arr.opt(i);
+            if (!(v instanceof Integer || v instanceof Long)) return null;
+            codes.add(((Number) v).longValue());
+        }
+        return codes;
+    }
+
+    // ================== SON KULLANMA RAPORU / GERİ ÇAĞIRMA ==================
+    // getExpiryReport: { withinDays: number, sessionIds? | from? / to? / deviceId? }
+    //   Bugünden withinDays gün sonrasına kadar SKT'si dolan (veya dolmuş) kutular; seçim verilmezse tüm sayımlar.
+    // findRecall: { gtin: string, lot: string } → bu partiden kutu içeren tüm sayımlar
+    @PluginMethod
+    public void getExpiryReport(PluginCall call) {
+        tasks.read(call, "getExpiryReport", task -> runGetExpiryReport(call, task));
+    }
+
+    private void runGetExpiryReport(PluginCall call, PluginTaskScheduler.Task task) {
+        Integer withinDays = call.getInt("withinDays");
+        if (withinDays == null || withinDays < 0) {
+            call.reject("withinDays parametresi zorunlu ve 0 veya pozitif olmalı.");
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        LocalDate limit = today.plusDays(withinDays);
+        // expiry iki haneli yıl tutar; 2099 sonrası sınır hepsini kapsar
+        if (limit.getYear() > 2099) {
+            limit = LocalDate.of(2099, 12, 31);
+        }
+        int maxExpiry = ScanItemCode.expiryCode(limit);
+        // "YYAA00" = ayın son günü; sınır ayın son günü değilse o ayın 00 kodu sınırı aşar
+        int excludeExpiry = limit.getDayOfMonth() == limit.lengthOfMonth()
+                ? -1
+                : maxExpiry - limit.getDayOfMonth();
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            int selected = hasReportSelection(call)
+                    ? loadReportSelection(call, db)
+                    : ScanDatabaseHelper.loadReportSessions(db, null, null, null);
+            if (selected < 0) return;
+
+            Cursor c = ScanDatabaseHelper.queryExpiringItems(db, maxExpiry, excludeExpiry, task.signal);
+
+            JSArray items = new JSArray();
+            int totalCount = 0;
+            int expiredCount = 0;
+
+            try {
+                while (c.moveToNext()) {
+                    int expiryCode = c.getInt(3);
+                    int count = c.getInt(4);
+                    LocalDate expiry = ScanItemCode.expiryDate(expiryCode);
+                    boolean expired = expiry != null && expiry.isBefore(today);
+
+                    totalCount += count;
+                    if (expired) expiredCount += count;
+
+                    JSObject row = new JSObject();
+                    row.put("gtin", c.isNull(0) ? null : c.getString(0));
+                    row.put("brand_name", c.isNull(1) ? null : c.getString(1));
+                    row.put("lot", c.isNull(2) ? null : c.getString(2));
+                    row.put("expiryCode", expiryCode);
+                    row.put("expiry", expiry != null ? expiry.toString() : null);
+                    row.put("daysLeft", expiry != null ? ChronoUnit.DAYS.between(today, expiry) : null);
+                    row.put("expired", expired);
+                    row.put("count", count);
+
+                    items.put(row);
+                }
+            } finally {
+                c.close();
+            }
 
             JSObject result = new JSObject();
             result.put("items", items);
-            result.put("totalDistinct", totalDistinct);
-            result.put("totalScans", totalScans);
-            result.put("duplicateCount", totalScans - totalDistinct);
+            result.put("totalCount", totalCount);
+            result.put("expiredCount", expiredCount);
+            result.put("sessionCount", selected);
+            result.put("until", limit.toString());
 
             call.resolve(result);
         } catch (Exception e) {
-            call.reject("Stok raporu oluşturulurken hata: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "SKT raporu oluşturulurken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
         }
     }
 
-    // EASY satış kayıtlarını özet olarak döner
     @PluginMethod
-    public void getEasySales(PluginCall call) {
+    public void findRecall(PluginCall call) {
+        tasks.read(call, "findRecall", task -> runFindRecall(call, task));
+    }
+
+    private void runFindRecall(PluginCall call, PluginTaskScheduler.Task task) {
+        Long gtinNorm = ScanDatabaseHelper.normalizeGtin(call.getString("gtin"));
+        String lot = call.getString("lot");
+        lot = lot != null ? lot.trim() : "";
+        if (gtinNorm == null || lot.isEmpty()) {
+            call.reject("gtin ve lot parametreleri zorunlu.");
+            return;
+        }
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            Cursor c = ScanDatabaseHelper.queryRecallSessions(db, gtinNorm, lot, task.signal);
+
+            JSArray sessions = new JSArray();
+            int totalCount = 0;
+
+            try {
+                while (c.moveToNext()) {
+                    int count = c.getInt(4);
+                    totalCount += count;
+
+                    JSObject row = new JSObject();
+                    row.put("id", c.getLong(0));
+                    row.put("created_at", c.getString(1));
+                    row.put("note", c.isNull(2) ? null : c.getString(2));
+                    row.put("device_id", c.isNull(3) ? null : c.getString(3));
+                    row.put("count", count);
+                    if (!c.isNull(5)) {
+                        LocalDate expiry = ScanItemCode.expiryDate(c.getInt(5));
+                        row.put("expiry", expiry != null ? expiry.toString() : null);
+                    }
+
+                    sessions.put(row);
+                }
+            } finally {
+                c.close();
+            }
+
+            JSObject result = new JSObject();
+            result.put("sessions", sessions);
+            result.put("sessionCount", sessions.length());
+            result.put("totalCount", totalCount);
+
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Geri çağırma araması yapılırken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    // ================== NATIVE EXPORT ==================
+    // Veriyi JS köprüsünden geçirmeden cursor → gzip dosyaya yazar, paylaşılabilir URI döner.
+    //   { kind: "scan_items" | "stock_report" | "easy_sales", format?: "csv" | "ndjson",
+    //     sessionIds? | from? / to? / deviceId? }
+    // Döner: { uri, path, fileName, rows, bytes }
+    @PluginMethod
+    public void exportData(PluginCall call) {
+        tasks.read(call, "exportData", task -> runExportData(call, task));
+    }
+
+    private void runExportData(PluginCall call, PluginTaskScheduler.Task task) {
+        String kind = call.getString("kind", DataExporter.KIND_SCAN_ITEMS);
+        String format = call.getString("format", DataExporter.FORMAT_CSV);
+
+        if (!DataExporter.KIND_SCAN_ITEMS.equals(kind)
+                && !DataExporter.KIND_STOCK_REPORT.equals(kind)
+                && !DataExporter.KIND_EASY_SALES.equals(kind)) {
+            call.reject("Geçersiz kind: " + kind);
+            return;
+        }
+        if (!DataExporter.FORMAT_CSV.equals(format) && !DataExporter.FORMAT_NDJSON.equals(format)) {
+            call.reject("Geçersiz format: " + format);
+            return;
+        }
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
         try {
+            db = dbHelper.acquireReader();
+
+            boolean useSelection = false;
+            boolean exact = false;
+            if (DataExporter.KIND_STOCK_REPORT.equals(kind)
+                    || (DataExporter.KIND_SCAN_ITEMS.equals(kind) && hasReportSelection(call))) {
+                // Stok raporu seçim ister; scan_items seçim yoksa tüm kodları yazar
+                int selected = loadReportSelection(call, db);
+                if (selected < 0) return;
+                useSelection = true;
+                exact = selected > 1 && ScanDatabaseHelper.reportSessionsShareCodes(db);
+            }
+
+            DataExporter.Result res = DataExporter.export(
+                    getContext(),
+                    db,
+                    kind,
+                    format,
+                    useSelection,
+                    exact,
+                    call.getString("from"),
+                    call.getString("to"),
+                    task.signal
+            );
+
+            Uri uri = FileProvider.getUriForFile(
+                    getContext(),
+                    getContext().getPackageName() + ".fileprovider",
+                    res.file
+            );
+
+            JSObject result = new JSObject();
+            result.put("uri", uri.toString());
+            result.put("path", res.file.getAbsolutePath());
+            result.put("fileName", res.file.getName());
+            result.put("rows", res.rows);
+            result.put("bytes", res.file.length());
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Export sırasında hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    // ================== CİHAZLAR ARASI OTURUM TAŞIMA ==================
+    // Seçili oturumları SessionArchive (.fssx) dosyasına yazar.
+    //   { sessionIds? | from? / to? / deviceId? }
+    // Döner: { uri, path, fileName, sessions, rows, bytes }
+    @PluginMethod
+    public void exportSessions(PluginCall call) {
+        tasks.read(call, "exportSessions", task -> runExportSessions(call, task));
+    }
+
+    private void runExportSessions(PluginCall call, PluginTaskScheduler.Task task) {
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        File file = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            int selected = loadReportSelection(call, db);
+            if (selected < 0) return;
+
+            file = DataExporter.newExportFile(getContext(), "sessions", SessionArchive.FILE_EXTENSION);
+            long[] written;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                written = SessionArchive.write(db, out, task.signal);
+            }
+
+            Uri uri = FileProvider.getUriForFile(
+                    getContext(),
+                    getContext().getPackageName() + ".fileprovider",
+                    file
+            );
+
+            JSObject result = new JSObject();
+            result.put("uri", uri.toString());
+            result.put("path", file.getAbsolutePath());
+            result.put("fileName", file.getName());
+            result.put("sessions", written[0]);
+            result.put("rows", written[1]);
+            result.put("bytes", file.length());
+            file = null;
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Oturum export sırasında hata", e);
+        } finally {
+            // Yarım kalan dosya paylaşılmasın
+            if (file != null) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    // exportSessions dosyasını içe aktarır (tek transaction, code + device_id tekilleştirmeli).
+    //   { uri: "content://..." | "file://..." } veya { path } veya { data: base64 }
+    // Döner: { sourceSessions, sessions, rows, skipped }
+    @PluginMethod
+    public void importSessions(PluginCall call) {
+        tasks.write(call, "importSessions", task -> runImportSessions(call, task));
+    }
+
+    private void runImportSessions(PluginCall call, PluginTaskScheduler.Task task) {
+        String uri = call.getString("uri");
+        String path = call.getString("path");
+        String data = call.getString("data");
+
+        try {
+            InputStream in;
+            if (uri != null) {
+                in = getContext().getContentResolver().openInputStream(Uri.parse(uri));
+            } else if (path != null) {
+                in = new FileInputStream(path);
+            } else if (data != null) {
+                in = new ByteArrayInputStream(Base64.decode(data, Base64.DEFAULT));
+            } else {
+                call.reject("uri, path veya data parametrelerinden biri zorunlu");
+                return;
+            }
+            if (in == null) {
+                call.reject("Dosya açılamadı: " + uri);
+                return;
+            }
+
+            List<SessionArchive.Session> sessions;
+            try (InputStream bin = new BufferedInputStream(in)) {
+                sessions = SessionArchive.read(bin);
+            }
+            task.throwIfCancelled();
+
             ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            long[] imported = dbHelper.importSessions(sessions);
+            dbHelper.checkpointIfNeeded();
+
+            JSObject result = new JSObject();
+            result.put("sourceSessions", sessions.size());
+            result.put("sessions", imported[0]);
+            result.put("rows", imported[1]);
+            result.put("skipped", imported[2]);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Oturum import sırasında hata", e);
+        }
+    }
+
+    // ================== SAKLAMA POLİTİKASI / ARŞİV ==================
+    // { maxAgeDays?, maxItems? } → maxAgeDays günden eski oturumlar ve (maxItems verildiyse) toplam kod
+    // satırını bu sınırın altına indirecek kadar en eski oturum session_archives'a sıkıştırılıp silinir.
+    // Seçim okunabilir boyutta birden çok arşive bölünebilir; her arşiv geri okunup doğrulandıktan sonra
+    // oturumları silinir. Tek başına okuma sınırını aşan oturumlar silinmez (skipped).
+    // Döner: { archives (yazılan arşiv sayısı), sessions, rows, bytes, skipped }
+    @PluginMethod
+    public void applyRetention(PluginCall call) {
+        tasks.write(call, "applyRetention", task -> runApplyRetention(call, task));
+    }
+
+    private void runApplyRetention(PluginCall call, PluginTaskScheduler.Task task) {
+        Integer maxAgeDays = call.getInt("maxAgeDays");
+        Long maxItems = call.getLong("maxItems");
+        if (maxAgeDays == null && maxItems == null) {
+            call.reject("maxAgeDays veya maxItems parametrelerinden en az biri zorunlu");
+            return;
+        }
+        if ((maxAgeDays != null && maxAgeDays < 0) || (maxItems != null && maxItems <= 0)) {
+            call.reject("maxAgeDays negatif, maxItems sıfır veya negatif olamaz");
+            return;
+        }
+
+        String olderThan = null;
+        if (maxAgeDays != null) {
+            // created_at ile aynı biçim
+            olderThan = new java.text.SimpleDateFormat(
+                    ScanDatabaseHelper.TIMESTAMP_PATTERN,
+                    java.util.Locale.getDefault()
+            ).format(new java.util.Date(System.currentTimeMillis() - maxAgeDays * 86_400_000L));
+        }
+
+        try {
+            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+            long[] archived = dbHelper.archiveOldSessions(olderThan, maxItems == null ? 0 : maxItems);
+            dbHelper.checkpointIfNeeded();
+
+            JSObject result = new JSObject();
+            result.put("archives", archived[0]);
+            result.put("sessions", archived[1]);
+            result.put("rows", archived[2]);
+            result.put("bytes", archived[3]);
+            result.put("skipped", archived[4]);
+            call.resolve(result);
+            if (archived[1] > 0) {
+                scheduleReclaimFreePages();
+            }
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Saklama politikası uygulanırken hata", e);
+        }
+    }
+
+    // Arşiv listesi (veri hariç): { archives: [{ id, created_at, session_count, item_count,
+    //                                            first_session_at, last_session_at, bytes }] }
+    @PluginMethod
+    public void getSessionArchives(PluginCall call) {
+        tasks.read(call, "getSessionArchives", task -> runGetSessionArchives(call, task));
+    }
+
+    private void runGetSessionArchives(PluginCall call, PluginTaskScheduler.Task task) {
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
 
             Cursor c = db.rawQuery(
-                    "SELECT s.id, s.created_at, " +
-                            " (SELECT COUNT(*) FROM easy_sale_items ei WHERE ei.sale_id = s.id) AS item_count, " +
-                            " s.note " +
-                            "FROM easy_sales s " +
-                            "ORDER BY s.id DESC",
+                    "SELECT id, created_at, session_count, item_count, first_session_at, last_session_at, " +
+                            "length(data) FROM session_archives ORDER BY id DESC",
                     null
             );
+            JSArray archives = new JSArray();
+            try {
+                while (c.moveToNext()) {
+                    JSObject o = new JSObject();
+                    o.put("id", c.getLong(0));
+                    o.put("created_at", c.getString(1));
+                    o.put("session_count", c.getLong(2));
+                    o.put("item_count", c.getLong(3));
+                    o.put("first_session_at", c.isNull(4) ? null : c.getString(4));
+                    o.put("last_session_at", c.isNull(5) ? null : c.getString(5));
+                    o.put("bytes", c.getLong(6));
+                    archives.put(o);
+                }
+            } finally {
+                c.close();
+            }
 
-            JSArray arr = new JSArray();
+            JSObject result = new JSObject();
+            result.put("archives", archives);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Arşivler okunurken hata", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
 
-            while (c.moveToNext()) {
+    // Arşivdeki oturumları geri yükler (importSessions ile aynı kurallar; arşiv silinmez).
+    // { id } → { sourceSessions, sessions, rows, skipped }
+    @PluginMethod
+    public void restoreSessionArchive(PluginCall call) {
+        tasks.write(call, "restoreSessionArchive", task -> runRestoreSessionArchive(call, task));
+    }
+
+    private void runRestoreSessionArchive(PluginCall call, PluginTaskScheduler.Task task) {
+        Long archiveId = call.getLong("id");
+        if (archiveId == null) {
+            call.reject("id parametresi zorunlu");
+            return;
+        }
+
+        try {
+            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+            byte[] data = ScanDatabaseHelper.readSessionArchive(dbHelper.getWritableDatabase(), archiveId);
+            if (data == null) {
+                call.reject("Arşiv bulunamadı: " + archiveId);
+                return;
+            }
+
+            List<SessionArchive.Session> sessions = SessionArchive.read(new ByteArrayInputStream(data));
+            task.throwIfCancelled();
+
+            long[] imported = dbHelper.importSessions(sessions);
+            dbHelper.checkpointIfNeeded();
+
+            JSObject result = new JSObject();
+            result.put("sourceSessions", sessions.size());
+            result.put("sessions", imported[0]);
+            result.put("rows", imported[1]);
+            result.put("skipped", imported[2]);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Arşiv geri yüklenirken hata", e);
+        }
+    }
+
+    // { id } → { deleted }
+    @PluginMethod
+    public void deleteSessionArchive(PluginCall call) {
+        tasks.write(call, "deleteSessionArchive", task -> runDeleteSessionArchive(call, task));
+    }
+
+    private void runDeleteSessionArchive(PluginCall call, PluginTaskScheduler.Task task) {
+        Long archiveId = call.getLong("id");
+        if (archiveId == null) {
+            call.reject("id parametresi zorunlu");
+            return;
+        }
+
+        try {
+            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+            int deleted = dbHelper.deleteSessionArchive(archiveId);
+
+            JSObject result = new JSObject();
+            result.put("deleted", deleted);
+            call.resolve(result);
+            scheduleReclaimFreePages();
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Arşiv silinirken hata", e);
+        }
+    }
+
+    // EASY satış kayıtlarını özet olarak döner
+    // { limit, afterId } → id DESC keyset sayfası; { stream: true } → "streamPage" event'leri.
+    @PluginMethod
+    public void getEasySales(PluginCall call) {
+        tasks.read(call, "getEasySales", task -> runGetEasySales(call, task));
+    }
+
+    private void runGetEasySales(PluginCall call, PluginTaskScheduler.Task task) {
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+            String itemCount = ScanDatabaseHelper.easySaleItemCountSql(db, "easy_sales");
+
+            RowReader reader = (c, out) -> {
                 JSObject o = new JSObject();
                 o.put("id", c.getInt(0));
                 o.put("created_at", c.getString(1));
                 o.put("item_count", c.getInt(2));
                 o.put("note", c.isNull(3) ? "" : c.getString(3));
-                arr.put(o);
+                out.put(o);
+                return c.getLong(0);
+            };
+
+            if (isPagedCall(call)) {
+                // Yeniden eskiye: afterId verilmezse en yeni satıştan başla
+                readKeysetPages(
+                        call,
+                        db,
+                        "SELECT id, created_at, " + itemCount + ", note " +
+                                "FROM easy_sales WHERE id < ? ORDER BY id DESC LIMIT ?",
+                        new String[0],
+                        Long.MAX_VALUE,
+                        "sales",
+                        reader,
+                        task
+                );
+                return;
+            }
+
+            // item_count yazarken tutulur; kalem tablosuna satış başına sorgu atılmaz
+            // (yalnızca easy_item_counts geçişi sürerken işlenmemiş satışlar için)
+            Cursor c = db.rawQuery(
+                    "SELECT id, created_at, " + itemCount + ", note " +
+                            "FROM easy_sales " +
+                            "ORDER BY id DESC",
+                    null
+            );
+
+            JSArray arr = new JSArray();
+            while (c.moveToNext()) {
+                reader.read(c, arr);
             }
             c.close();
 
@@ -486,13 +1943,305 @@ public class FastStockScannerPlugin extends Plugin {
 
             call.resolve(result);
         } catch (Exception e) {
-            call.reject("Easy satış kayıtları okunamadı: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "Easy satış kayıtları okunamadı", e);
+        } finally {
+            dbHelper.releaseReader(db);
         }
     }
 
+    // EASY satış özeti: tarih aralığında gün veya marka bazında toplamlar (SQL'de hesaplanır)
+    // { from?, to?, groupBy?: "day" | "brand" | "none" }  (from dahil, to hariç; varsayılan "day")
+    // Döner: { groups: [{ key, saleCount, itemCount, pricedCount, totalMinor, partialCount }], totals: {...} }
+    // created_at UTC ISO saklanır (toISOString); gün grupları cihazın yerel saatine göredir. Sınırlar da
+    // aynı günlere denk gelsin diye "YYYY-MM-DD" verilirse yerel günün başı (UTC'ye çevrilerek) kullanılır;
+    // diğer değerler toISOString biçiminde UTC an olarak karşılaştırılır. Tutarlar kuruş cinsindendir.
+    @PluginMethod
+    public void getEasySalesSummary(PluginCall call) {
+        tasks.read(call, "getEasySalesSummary", task -> runGetEasySalesSummary(call, task));
+    }
+
+    // easy_sales.created_at ile aynı biçim (JS Date.toISOString)
+    private static final DateTimeFormatter EASY_CREATED_AT_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    // "YYYY-MM-DD" → o yerel günün başlangıcı (UTC ISO); diğer değerler aynen
+    @Nullable
+    private static String easySalesBound(@Nullable String bound) {
+        if (bound == null || !bound.matches("\\d{4}-\\d{2}-\\d{2}")) return bound;
+        return EASY_CREATED_AT_FORMAT.format(
+                LocalDate.parse(bound).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private void runGetEasySalesSummary(PluginCall call, PluginTaskScheduler.Task task) {
+        String groupBy = call.getString("groupBy", "day");
+        String keyExpr;
+        switch (groupBy) {
+            case "day":
+                keyExpr = "date(s.created_at, 'localtime')";
+                break;
+            case "brand":
+                keyExpr = "IFNULL(i.brand, '')";
+                break;
+            case "none":
+                keyExpr = "''";
+                break;
+            default:
+                call.reject("Geçersiz groupBy: " + groupBy);
+                return;
+        }
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+
+            // rawQuery null bağlayamadığı için sadece verilen sınırları ekliyoruz
+            StringBuilder where = new StringBuilder();
+            List<String> args = new ArrayList<>();
+            String from = easySalesBound(call.getString("from"));
+            String to = easySalesBound(call.getString("to"));
+            if (from != null) {
+                where.append(where.length() == 0 ? "WHERE " : "AND ").append("s.created_at >= ? ");
+                args.add(from);
+            }
+            if (to != null) {
+                where.append(where.length() == 0 ? "WHERE " : "AND ").append("s.created_at < ? ");
+                args.add(to);
+            }
+
+            // Satışlar created_at index'inden seçilir, kalemler sale_id index'inden gelir
+            Cursor c = db.rawQuery(
+                    "SELECT " + keyExpr + " AS k, " +
+                            "COUNT(DISTINCT s.id), COUNT(i.id), COUNT(i.unit_price_minor), " +
+                            "IFNULL(SUM(i.unit_price_minor), 0), COUNT(i.partial_amount_num) " +
+                            "FROM easy_sales s " +
+                            "JOIN easy_sale_items i ON i.sale_id = s.id " +
+                            where +
+                            "GROUP BY k ORDER BY k",
+                    args.toArray(new String[0]),
+                    task.signal
+            );
+
+            // key → { saleCount, itemCount, pricedCount, totalMinor, partialCount } (ORDER BY k sırasıyla)
+            Map<String, long[]> sums = new LinkedHashMap<>();
+            try {
+                while (c.moveToNext()) {
+                    sums.put(c.getString(0), new long[]{
+                            c.getLong(1), c.getLong(2), c.getLong(3), c.getLong(4), c.getLong(5)
+                    });
+                }
+            } finally {
+                c.close();
+            }
+
+            // easy_prices geçişi sürerken işlenmemiş kalemlerin fiyatları TEXT'ten burada ayrıştırılır
+            long[] pending = ScanDatabaseHelper.pendingMigrationRange(db, ScanDatabaseHelper.MIGRATION_EASY_PRICES);
+            if (pending != null) {
+                List<String> pendingArgs = new ArrayList<>(args);
+                pendingArgs.add(String.valueOf(pending[0]));
+                pendingArgs.add(String.valueOf(pending[1]));
+                Cursor pc = db.rawQuery(
+                        "SELECT " + keyExpr + " AS k, i.unit_price, i.partial_amount " +
+                                "FROM easy_sales s " +
+                                "JOIN easy_sale_items i ON i.sale_id = s.id " +
+                                where + (where.length() == 0 ? "WHERE " : "AND ") +
+                                "i.id > ? AND i.id <= ? " +
+                                "AND i.unit_price_minor IS NULL AND i.partial_amount_num IS NULL " +
+                                "AND (i.unit_price IS NOT NULL OR i.partial_amount IS NOT NULL)",
+                        pendingArgs.toArray(new String[0]),
+                        task.signal
+                );
+                try {
+                    while (pc.moveToNext()) {
+                        long[] g = sums.get(pc.getString(0));
+                        if (g == null) continue;
+                        Long price = ScanDatabaseHelper.parsePriceMinor(pc.isNull(1) ? null : pc.getString(1));
+                        Long partial = ScanDatabaseHelper.parsePartialAmount(pc.isNull(2) ? null : pc.getString(2));
+                        if (price != null) {
+                            g[2]++;
+                            g[3] += price;
+                        }
+                        if (partial != null) g[4]++;
+                    }
+                } finally {
+                    pc.close();
+                }
+            }
+
+            JSArray groups = new JSArray();
+            long saleCount = 0;
+            long itemCount = 0;
+            long pricedCount = 0;
+            long totalMinor = 0;
+            long partialCount = 0;
+            for (Map.Entry<String, long[]> e : sums.entrySet()) {
+                long[] g = e.getValue();
+                JSObject o = new JSObject();
+                o.put("key", e.getKey());
+                o.put("saleCount", g[0]);
+                o.put("itemCount", g[1]);
+                o.put("pricedCount", g[2]);
+                o.put("totalMinor", g[3]);
+                o.put("partialCount", g[4]);
+                groups.put(o);
+
+                // Marka gruplamasında bir satış birden fazla grupta olabilir; o durumda aşağıda ayrıca sayılır
+                saleCount += g[0];
+                itemCount += g[1];
+                pricedCount += g[2];
+                totalMinor += g[3];
+                partialCount += g[4];
+            }
+
+            if ("brand".equals(groupBy)) {
+                Cursor sc = db.rawQuery(
+                        "SELECT COUNT(DISTINCT s.id) FROM easy_sales s " +
+                                "JOIN easy_sale_items i ON i.sale_id = s.id " + where,
+                        args.toArray(new String[0]),
+                        task.signal
+                );
+                try {
+                    saleCount = sc.moveToFirst() ? sc.getLong(0) : 0;
+                } finally {
+                    sc.close();
+                }
+            }
+
+            JSObject totals = new JSObject();
+            totals.put("saleCount", saleCount);
+            totals.put("itemCount", itemCount);
+            totals.put("pricedCount", pricedCount);
+            totals.put("totalMinor", totalMinor);
+            totals.put("partialCount", partialCount);
+
+            JSObject result = new JSObject();
+            result.put("groupBy", groupBy);
+            result.put("groups", groups);
+            result.put("totals", totals);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Easy satış özeti oluşturulamadı", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    // Karekodların daha önce bir Easy satışında kaydedilip kaydedilmediğini kontrol eder.
+    // { codes: string[] } → { results: [{ code, dispensed, saleId?, createdAt? }], dispensedCount }
+    // Kodlar GS1 kanonik biçimine (01 GTIN + 21 seri) çevrilir; her kod için tek index araması yapılır.
+    @PluginMethod
+    public void isAlreadyDispensed(PluginCall call) {
+        tasks.read(call, "isAlreadyDispensed", task -> runIsAlreadyDispensed(call, task));
+    }
+
+    private void runIsAlreadyDispensed(PluginCall call, PluginTaskScheduler.Task task) {
+        JSArray codes = call.getArray("codes");
+        if (codes == null) {
+            call.reject("codes parametresi zorunlu");
+            return;
+        }
+
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+            Map<String, Object[]> unmigrated = loadUnmigratedCanonicalCodes(db, task);
+
+            JSArray results = new JSArray();
+            int dispensedCount = 0;
+            String[] args = new String[1];
+            for (int i = 0; i < codes.length(); i++) {
+                String code = codes.optString(i, null);
+                String canonical = Gs1Code.canonicalize(code);
+
+                JSObject r = new JSObject();
+                r.put("code", code);
+                boolean dispensed = false;
+                if (canonical != null) {
+                    args[0] = canonical;
+                    // SQL metni sabit → derlenmiş ifade bağlantı önbelleğinden gelir
+                    Cursor c = db.rawQuery(
+                            "SELECT i.sale_id, s.created_at FROM easy_sale_items i " +
+                                    "JOIN easy_sales s ON s.id = i.sale_id " +
+                                    "WHERE i.code_canonical = ? ORDER BY i.sale_id ASC LIMIT 1",
+                            args
+                    );
+                    long saleId = 0;
+                    try {
+                        if (c.moveToFirst()) {
+                            dispensed = true;
+                            saleId = c.getLong(0);
+                            r.put("saleId", saleId);
+                            r.put("createdAt", c.getString(1));
+                        }
+                    } finally {
+                        c.close();
+                    }
+
+                    // Geçişi bekleyen kalemlerde code_canonical henüz boş; onlar barcode'dan eşleşir
+                    Object[] earlier = unmigrated.get(canonical);
+                    if (earlier != null && (!dispensed || (long) earlier[0] < saleId)) {
+                        dispensed = true;
+                        r.put("saleId", earlier[0]);
+                        r.put("createdAt", earlier[1]);
+                    }
+                }
+                r.put("dispensed", dispensed);
+                if (dispensed) dispensedCount++;
+                results.put(r);
+            }
+
+            JSObject result = new JSObject();
+            result.put("results", results);
+            result.put("dispensedCount", dispensedCount);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "Satış kontrolü yapılamadı", e);
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    /**
+     * easy_canonical_codes geçişi sürerken işlenmemiş aralıktaki kalemlerin kanonik kodları:
+     * kanonik kod → { saleId, createdAt } (en eski satış). Geçiş bittiyse boş.
+     */
+    private static Map<String, Object[]> loadUnmigratedCanonicalCodes(SQLiteDatabase db,
+                                                                      PluginTaskScheduler.Task task) {
+        Map<String, Object[]> map = new HashMap<>();
+        long[] pending = ScanDatabaseHelper.pendingMigrationRange(
+                db, ScanDatabaseHelper.MIGRATION_EASY_CANONICAL_CODES);
+        if (pending == null) return map;
+
+        Cursor c = db.rawQuery(
+                "SELECT i.barcode, i.sale_id, s.created_at FROM easy_sale_items i " +
+                        "JOIN easy_sales s ON s.id = i.sale_id " +
+                        "WHERE i.id > ? AND i.id <= ? AND i.code_canonical IS NULL " +
+                        "ORDER BY i.sale_id ASC",
+                new String[]{ String.valueOf(pending[0]), String.valueOf(pending[1]) },
+                task.signal
+        );
+        try {
+            while (c.moveToNext()) {
+                String canonical = Gs1Code.canonicalize(c.isNull(0) ? null : c.getString(0));
+                if (canonical != null && !map.containsKey(canonical)) {
+                    map.put(canonical, new Object[]{ c.getLong(1), c.getString(2) });
+                }
+            }
+        } finally {
+            c.close();
+        }
+        return map;
+    }
+
     // Belirli bir EASY satış kaydının detayını döner (başlık + kalemler)
+    // { columnar: true, packInts? } → items kolon bazlı (ColumnarRows)
     @PluginMethod
     public void getEasySaleDetail(PluginCall call) {
+        tasks.read(call, "getEasySaleDetail", task -> runGetEasySaleDetail(call, task));
+    }
+
+    private void runGetEasySaleDetail(PluginCall call, PluginTaskScheduler.Task task) {
         JSObject data = call.getData();
 
         Long id = call.getLong("id");
@@ -515,9 +2264,10 @@ public class FastStockScannerPlugin extends Plugin {
             return;
         }
 
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+        SQLiteDatabase db = null;
         try {
-            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            db = dbHelper.acquireReader();
 
             Cursor h = db.rawQuery(
                     "SELECT id, created_at, patient, citizen_id, prescription_number, note, device_id " +
@@ -547,6 +2297,32 @@ public class FastStockScannerPlugin extends Plugin {
                     new String[]{String.valueOf(id)}
             );
 
+            if (isColumnarCall(call)) {
+                ColumnarRows rows = new ColumnarRows(packIntsOf(call));
+                ColumnarRows.LongColumn ids = rows.longColumn("id");
+                String[] names = { "barcode", "brand", "sn", "status", "description", "note",
+                        "unitPrice", "partialAmount" };
+                ColumnarRows.StringColumn[] texts = new ColumnarRows.StringColumn[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    texts[i] = rows.stringColumn(names[i]);
+                }
+                ColumnarRows.BooleanColumn ndbSuccess = rows.booleanColumn("ndbSuccess");
+                ColumnarRows.StringColumn ndbMessage = rows.stringColumn("ndbMessage");
+                while (c.moveToNext()) {
+                    ids.add(c.getLong(0));
+                    // Kolon 1..8: barcode .. partial_amount
+                    for (int i = 0; i < texts.length; i++) {
+                        texts[i].add(c.isNull(i + 1) ? null : c.getString(i + 1));
+                    }
+                    ndbSuccess.add(c.isNull(9) ? null : c.getInt(9) == 1);
+                    ndbMessage.add(c.isNull(10) ? null : c.getString(10));
+                }
+                c.close();
+                result.put("items", rows.toJSObject());
+                call.resolve(result);
+                return;
+            }
+
             JSArray itemsArr = new JSArray();
             while (c.moveToNext()) {
                 JSObject item = new JSObject();
@@ -575,12 +2351,18 @@ public class FastStockScannerPlugin extends Plugin {
 
             call.resolve(result);
         } catch (Exception e) {
-            call.reject("Easy satış detayı okunamadı: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "Easy satış detayı okunamadı", e);
+        } finally {
+            dbHelper.releaseReader(db);
         }
     }
 
     @PluginMethod
     public void saveEasySale(PluginCall call) {
+        tasks.write(call, "saveEasySale", task -> runSaveEasySale(call, task));
+    }
+
+    private void runSaveEasySale(PluginCall call, PluginTaskScheduler.Task task) {
         try {
             JSObject data = call.getData();
             if (data == null) {
@@ -588,101 +2370,175 @@ public class FastStockScannerPlugin extends Plugin {
                 return;
             }
 
-            String createdAt = data.optString("createdAt", null);
-            if (createdAt == null || createdAt.isEmpty()) {
-                call.reject("createdAt eksik");
+            String error = validateEasySale(data);
+            if (error != null) {
+                call.reject(error);
                 return;
             }
 
-            org.json.JSONArray items;
-            try {
-                items = data.getJSONArray("items");
-            } catch (Exception e) {
-                call.reject("items alanı JSON array değil veya yok: " + e.getMessage());
-                return;
-            }
-
-            if (items == null || items.length() == 0) {
-                call.reject("En az bir item olmalı");
-                return;
-            }
+            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
 
-            String patient = data.optString("patient", null);
-            String citizenId = data.optString("citizenId", null);
-            String prescriptionNumber = data.optString("prescriptionNumber", null);
-            String note = data.optString("note", null);
+            // Başlık + kalemler tek transaction: yarıda kalırsa başlıksız / boş satış kalmaz
+            long saleId;
+            db.beginTransaction();
+            try (SQLiteStatement header = db.compileStatement(ScanDatabaseHelper.INSERT_EASY_SALE_SQL);
+                 BulkInserter items = new BulkInserter(
+                         db, "easy_sale_items", ScanDatabaseHelper.EASY_ITEM_COLUMNS, null)) {
+                saleId = writeEasySale(header, items, data);
+                items.flush();
 
-            String deviceId = data.optString("deviceId", null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
 
-            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
-            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            JSObject result = new JSObject();
+            result.put("saleId", saleId);
+            call.resolve(result);
+        } catch (Exception e) {
+            PluginTaskScheduler.fail(call, "EasySale sırasında hata", e);
+        }
+    }
 
-            long saleId = dbHelper.insertEasySale(
-                    createdAt,
-                    patient,
-                    citizenId,
-                    prescriptionNumber,
-                    note,
-                    deviceId
-            );
+    // Çevrimdışı biriken satışları tek çağrıda kaydeder.
+    // { sales: [ saveEasySale ile aynı nesne, ... ] } → { saleIds: number[] } (aynı sırada)
+    // Hepsi tek transaction'dadır: biri geçersizse veya hata olursa hiçbiri yazılmaz.
+    @PluginMethod
+    public void saveEasySalesBatch(PluginCall call) {
+        tasks.write(call, "saveEasySalesBatch", task -> runSaveEasySalesBatch(call, task));
+    }
 
-            if (saleId <= 0) {
-                call.reject("easy_sales kaydı oluşturulamadı");
+    private void runSaveEasySalesBatch(PluginCall call, PluginTaskScheduler.Task task) {
+        try {
+            JSArray sales = call.getArray("sales");
+            if (sales == null || sales.length() == 0) {
+                call.reject("En az bir satış olmalı");
                 return;
             }
 
-            db.beginTransaction();
-            try {
-                for (int i = 0; i < items.length(); i++) {
-                    org.json.JSONObject o = items.getJSONObject(i);
-                    String barcode = o.optString("barcode", null);
-                    if (barcode == null || barcode.isEmpty()) {
-                        continue;
-                    }
+            // Önce hepsini doğrula; geçersiz satış varsa hiçbir şey yazmadan reddet
+            for (int i = 0; i < sales.length(); i++) {
+                JSONObject sale = sales.optJSONObject(i);
+                String error = sale == null ? "satış nesnesi değil" : validateEasySale(sale);
+                if (error != null) {
+                    call.reject("sales[" + i + "]: " + error);
+                    return;
+                }
+            }
 
-                    String brand = o.optString("brand", null);
-                    String sn = o.optString("sn", null);
-                    String status = o.optString("status", null);
-                    String description = o.optString("description", null);
-                    String itemNote = o.optString("note", null);
-                    String unitPrice = o.optString("unitPrice", null);
-                    String partialAmount = o.optString("partialAmount", null);
-
-                    boolean hasNdbSuccess = o.has("ndbSuccess");
-                    boolean ndbSuccess = o.optBoolean("ndbSuccess", false);
-                    String ndbMessage = o.optString("ndbMessage", null);
-
-                    ContentValues cv = new ContentValues();
-                    cv.put("sale_id", saleId);
-                    cv.put("barcode", barcode);
-                    if (brand != null) cv.put("brand", brand);
-                    if (sn != null) cv.put("sn", sn);
-                    if (status != null) cv.put("status", status);
-                    if (description != null) cv.put("description", description);
-                    if (itemNote != null) cv.put("note", itemNote);
-                    if (unitPrice != null && !unitPrice.isEmpty()) cv.put("unit_price", unitPrice);
-                    if (partialAmount != null && !partialAmount.isEmpty()) cv.put("partial_amount", partialAmount);
-
-                    if (hasNdbSuccess) {
-                        cv.put("ndb_success", ndbSuccess ? 1 : 0);
-                    }
-                    if (ndbMessage != null && !ndbMessage.isEmpty()) {
-                        cv.put("ndb_message", ndbMessage);
-                    }
+            ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(getContext());
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
 
-                    db.insert("easy_sale_items", null, cv);
+            JSArray saleIds = new JSArray();
+            db.beginTransaction();
+            try (SQLiteStatement header = db.compileStatement(ScanDatabaseHelper.INSERT_EASY_SALE_SQL);
+                 BulkInserter items = new BulkInserter(
+                         db, "easy_sale_items", ScanDatabaseHelper.EASY_ITEM_COLUMNS, null)) {
+                for (int i = 0; i < sales.length(); i++) {
+                    task.throwIfCancelled();
+                    task.progress(i + 1, sales.length());
+
+                    saleIds.put(writeEasySale(header, items, sales.getJSONObject(i)));
                 }
+                items.flush();
 
                 db.setTransactionSuccessful();
             } finally {
                 db.endTransaction();
             }
 
+            dbHelper.checkpointIfNeeded();
+
             JSObject result = new JSObject();
-            result.put("saleId", saleId);
+            result.put("saleIds", saleIds);
             call.resolve(result);
         } catch (Exception e) {
-            call.reject("EasySale sırasında hata: " + e.getMessage());
+            PluginTaskScheduler.fail(call, "EasySale toplu kayıt sırasında hata", e);
+        }
+    }
+
+    /**
+     * saveEasySale verisini kontrol eder.
+     *
+     * @return hata mesajı, geçerliyse null
+     */
+    private static String validateEasySale(JSONObject data) {
+        String createdAt = data.optString("createdAt", null);
+        if (createdAt == null || createdAt.isEmpty()) {
+            return "createdAt eksik";
+        }
+
+        JSONArray items = data.optJSONArray("items");
+        if (items == null) {
+            return "items alanı JSON array değil veya yok";
+        }
+        if (items.length() == 0) {
+            return "En az bir item olmalı";
+        }
+        return null;
+    }
+
+    /**
+     * Bir satışın başlığını derlenmiş ifadeyle yazar, kalemlerini inserter'a ekler.
+     * Transaction ve items.flush() çağırana aittir.
+     * item_count başlıkla birlikte yazılır (barkodu boş kalemler sayılmaz).
+     *
+     * @return yeni easy_sales.id
+     */
+    private static long writeEasySale(SQLiteStatement header,
+                                      BulkInserter items,
+                                      JSONObject data) throws org.json.JSONException {
+        JSONArray arr = data.getJSONArray("items");
+        int itemCount = 0;
+        for (int i = 0; i < arr.length(); i++) {
+            String barcode = arr.getJSONObject(i).optString("barcode", null);
+            if (barcode != null && !barcode.isEmpty()) itemCount++;
+        }
+
+        BulkInserter.bindValue(header, 1, data.optString("createdAt", null));
+        BulkInserter.bindValue(header, 2, data.optString("patient", null));
+        BulkInserter.bindValue(header, 3, data.optString("citizenId", null));
+        BulkInserter.bindValue(header, 4, data.optString("prescriptionNumber", null));
+        BulkInserter.bindValue(header, 5, data.optString("note", null));
+        BulkInserter.bindValue(header, 6, data.optString("deviceId", null));
+        BulkInserter.bindValue(header, 7, itemCount);
+        long saleId = header.executeInsert();
+        header.clearBindings();
+
+        if (saleId <= 0) {
+            throw new IllegalStateException("easy_sales kaydı oluşturulamadı");
+        }
+
+        for (int i = 0; i < arr.length(); i++) {
+            JSONObject o = arr.getJSONObject(i);
+            String barcode = o.optString("barcode", null);
+            if (barcode == null || barcode.isEmpty()) {
+                continue;
+            }
+
+            String unitPrice = o.optString("unitPrice", null);
+            String partialAmount = o.optString("partialAmount", null);
+            String ndbMessage = o.optString("ndbMessage", null);
+
+            // Boş fiyat / mesaj alanları eskisi gibi NULL kalır
+            items.add(
+                    saleId,
+                    barcode,
+                    o.optString("brand", null),
+                    o.optString("sn", null),
+                    o.optString("status", null),
+                    o.optString("description", null),
+                    o.optString("note", null),
+                    (unitPrice != null && !unitPrice.isEmpty()) ? unitPrice : null,
+                    (partialAmount != null && !partialAmount.isEmpty()) ? partialAmount : null,
+                    o.has("ndbSuccess") ? (o.optBoolean("ndbSuccess", false) ? 1 : 0) : null,
+                    (ndbMessage != null && !ndbMessage.isEmpty()) ? ndbMessage : null,
+                    ScanDatabaseHelper.parsePriceMinor(unitPrice),
+                    ScanDatabaseHelper.parsePartialAmount(partialAmount),
+                    Gs1Code.canonicalize(barcode)
+            );
         }
+        return saleId;
     }
 }
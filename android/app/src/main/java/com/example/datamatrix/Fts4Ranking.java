@@ -0,0 +1,59 @@
+package com.example.datamatrix;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * FTS4 tabloları için BM25 puanı (FTS5'in bm25() fonksiyonunun karşılığı).
+ *
+ * Android'in kendi SQLite'ı FTS5 içermediği için ad araması çoğu cihazda FTS4'e düşer; FTS4'te
+ * sıralama fonksiyonu yoktur ama matchinfo() her eşleşen satır için gereken sayıları verir.
+ * Puan Java'da hesaplanır (SQLiteDatabase'e özel SQL fonksiyonu eklenemiyor).
+ *
+ * matchinfo(tablo, MATCHINFO_FORMAT) çıktısı, yerel bayt sırasında 32 bit tamsayılar:
+ *   p (sorgudaki ifade sayısı), c (kolon sayısı), n (tablodaki satır sayısı),
+ *   a[c] (kolon başına ortalama token), l[c] (bu satırda kolon uzunluğu),
+ *   x[p * c * 3] (ifade/kolon başına: bu satırdaki eşleşme, tüm satırlardaki eşleşme, eşleşen satır sayısı)
+ */
+final class Fts4Ranking {
+
+    static final String MATCHINFO_FORMAT = "pcnalx";
+
+    // FTS5 bm25() ile aynı sabitler
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private Fts4Ranking() {
+    }
+
+    /**
+     * Satırın BM25 puanı; büyük olan daha iyi eşleşmedir (FTS5 bm25()'in tersine pozitif).
+     * idf negatif olmasın diye log(1 + (n - df + 0.5) / (df + 0.5)) kullanılır: çok yaygın önekler
+     * de puana az da olsa katkı verir.
+     */
+    static double bm25(byte[] matchinfo) {
+        IntBuffer info = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int cols = info.get(1);
+        long rows = info.get(2);
+        int avgAt = 3;
+        int lenAt = avgAt + cols;
+        int hitsAt = lenAt + cols;
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int col = 0; col < cols; col++) {
+                int x = hitsAt + 3 * (p * cols + col);
+                int tf = info.get(x);
+                if (tf == 0) continue;
+                int df = info.get(x + 2);
+                double idf = Math.log(1 + (rows - df + 0.5) / (df + 0.5));
+                double avg = Math.max(1, info.get(avgAt + col));
+                double norm = 1 - B + B * info.get(lenAt + col) / avg;
+                score += idf * (tf * (K1 + 1)) / (tf + K1 * norm);
+            }
+        }
+        return score;
+    }
+}
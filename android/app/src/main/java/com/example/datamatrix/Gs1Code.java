@@ -0,0 +1,189 @@
+package com.example.datamatrix;
+
+import androidx.annotation.Nullable;
+
+/**
+ * İlaç karekodu (GS1 DataMatrix) ayrıştırıcı.
+ *
+ * Desteklenen uygulama tanımlayıcıları (AI):
+ *   01 GTIN (14 hane), 17 son kullanma (YYAAGG), 11 üretim tarihi, 15 tavsiye edilen son tarih,
+ *   21 seri no, 10 parti/lot (değişken uzunluk, en fazla 20, GS ile biter), 71x ulusal kodlar.
+ *
+ * Okuyucudan gelen ham metin farklı biçimlerde olabilir:
+ *   - "]d2" gibi sembol ön eki, baştaki FNC1 (GS, \u001d)
+ *   - "(01)...(21)..." okunabilir biçim (elle giriş)
+ *   - GS ayraçları düşürülmüş metin: 21/10 alanının sonu bilinemez; bu durumda
+ *     alanın içinde "17YYAAGG" (+ isteğe bağlı "10...") deseni aranır (Türkiye karekodlarındaki yaygın sıra).
+ *
+ * canonical(): aynı kutunun farklı okunuşlarını aynı değere indirger → "01" + GTIN + "21" + seri.
+ */
+final class Gs1Code {
+
+    static final char GS = '\u001d';
+
+    // Değişken uzunluklu alanların GS1 üst sınırı
+    private static final int MAX_VARIABLE_LENGTH = 20;
+
+    @Nullable final String gtin;    // 14 hane (okunduğu gibi)
+    @Nullable final String serial;  // AI 21
+    @Nullable final String lot;     // AI 10
+    @Nullable final String expiry;  // AI 17, YYAAGG
+
+    private Gs1Code(@Nullable String gtin,
+                    @Nullable String serial,
+                    @Nullable String lot,
+                    @Nullable String expiry) {
+        this.gtin = gtin;
+        this.serial = serial;
+        this.lot = lot;
+        this.expiry = expiry;
+    }
+
+    /**
+     * Ham karekodu ayrıştırır. Tanınmayan bir AI'ya gelinirse ayrıştırma orada durur;
+     * o ana kadar okunan alanlar döner (hiçbiri okunamadıysa tüm alanlar null).
+     */
+    static Gs1Code parse(@Nullable String raw) {
+        String gtin = null;
+        String serial = null;
+        String lot = null;
+        String expiry = null;
+
+        String s = normalize(raw);
+        int pos = 0;
+        while (pos + 2 <= s.length()) {
+            if (s.charAt(pos) == GS) {
+                pos++;
+                continue;
+            }
+            String ai = s.substring(pos, pos + 2);
+            switch (ai) {
+                case "01": {
+                    String v = fixed(s, pos + 2, 14);
+                    if (v == null) return new Gs1Code(gtin, serial, lot, expiry);
+                    gtin = v;
+                    pos += 16;
+                    break;
+                }
+                case "11":
+                case "15":
+                case "17": {
+                    String v = fixed(s, pos + 2, 6);
+                    if (v == null) return new Gs1Code(gtin, serial, lot, expiry);
+                    if ("17".equals(ai)) expiry = v;
+                    pos += 8;
+                    break;
+                }
+                case "10":
+                case "21": {
+                    int end = variableEnd(s, pos + 2);
+                    String v = s.substring(pos + 2, end);
+                    if (v.isEmpty()) return new Gs1Code(gtin, serial, lot, expiry);
+                    if ("21".equals(ai)) serial = v;
+                    else lot = v;
+                    pos = end;
+                    break;
+                }
+                default: {
+                    // 710-714: ulusal sağlık kodları (değişken uzunluk); atlanır
+                    if (ai.equals("71") && pos + 3 <= s.length()) {
+                        pos = variableEnd(s, pos + 3);
+                        break;
+                    }
+                    return new Gs1Code(gtin, serial, lot, expiry);
+                }
+            }
+        }
+        return new Gs1Code(gtin, serial, lot, expiry);
+    }
+
+    /**
+     * Kutunun kimliği: "01" + GTIN + "21" + seri; ikisi birden okunamadıysa null.
+     */
+    @Nullable
+    String canonical() {
+        if (gtin == null || serial == null) return null;
+        return "01" + gtin + "21" + serial;
+    }
+
+    /**
+     * Ham karekodun karşılaştırma anahtarı: GTIN + seri çözülebiliyorsa canonical(),
+     * çözülemiyorsa ön ek / GS ayraçları temizlenmiş ham metin.
+     */
+    @Nullable
+    static String canonicalize(@Nullable String raw) {
+        if (raw == null) return null;
+        String canonical = parse(raw).canonical();
+        if (canonical != null) return canonical;
+        String s = normalize(raw).replace(String.valueOf(GS), "");
+        return s.isEmpty() ? null : s;
+    }
+
+    /**
+     * Sembol ön ekini ve boşlukları atar, "(AI)" biçimini GS ayraçlı biçime çevirir.
+     */
+    private static String normalize(@Nullable String raw) {
+        if (raw == null) return "";
+        String s = raw.trim();
+        if (s.length() >= 3 && s.charAt(0) == ']') {
+            // ]d2 (DataMatrix), ]C1 (GS1-128), ]Q3 (QR)
+            s = s.substring(3);
+        }
+        if (s.startsWith("(")) {
+            StringBuilder sb = new StringBuilder(s.length());
+            int i = 0;
+            while (i < s.length()) {
+                char ch = s.charAt(i);
+                int close = ch == '(' ? s.indexOf(')', i) : -1;
+                if (close > i) {
+                    if (sb.length() > 0) sb.append(GS);
+                    sb.append(s, i + 1, close);
+                    i = close + 1;
+                } else {
+                    sb.append(ch);
+                    i++;
+                }
+            }
+            s = sb.toString();
+        }
+        return s;
+    }
+
+    @Nullable
+    private static String fixed(String s, int start, int length) {
+        if (start + length > s.length()) return null;
+        for (int i = start; i < start + length; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return null;
+        }
+        return s.substring(start, start + length);
+    }
+
+    /**
+     * Değişken uzunluklu alanın bitiş indeksi (GS'nin kendisi hariç).
+     * GS yoksa alanın içinde "17YYAAGG" ile başlayan bir kuyruk aranır.
+     */
+    private static int variableEnd(String s, int start) {
+        int gs = s.indexOf(GS, start);
+        if (gs >= 0) return Math.min(gs, start + MAX_VARIABLE_LENGTH);
+
+        for (int i = start + 1; i + 8 <= s.length(); i++) {
+            if (s.charAt(i) != '1' || s.charAt(i + 1) != '7') continue;
+            if (!isExpiryDate(s, i + 2)) continue;
+            int after = i + 8;
+            // Kuyruk ya tam 17YYAAGG ile biter ya da ardından 10 (lot) gelir
+            if (after == s.length() || (after + 2 < s.length() && s.startsWith("10", after))) {
+                return i;
+            }
+        }
+        return Math.min(s.length(), start + MAX_VARIABLE_LENGTH);
+    }
+
+    private static boolean isExpiryDate(String s, int start) {
+        if (fixed(s, start, 6) == null) return false;
+        int month = (s.charAt(start + 2) - '0') * 10 + (s.charAt(start + 3) - '0');
+        int day = (s.charAt(start + 4) - '0') * 10 + (s.charAt(start + 5) - '0');
+        // GS1: gün 00 olabilir (ayın son günü)
+        return month >= 1 && month <= 12 && day <= 31;
+    }
+}
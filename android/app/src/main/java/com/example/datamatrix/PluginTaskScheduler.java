@@ -0,0 +1,307 @@
+package com.example.datamatrix;
+
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FastStockScannerPlugin metodlarını plugin çağrı thread'i dışında çalıştıran zamanlayıcı.
+ *
+ * İki şerit vardır:
+ * - writer : tek thread. Yazan metodlar (import/sync, kaydet, sil) geliş sırasıyla, tek tek çalışır.
+ * - readers: ScanDatabaseHelper okuma havuzu kadar thread. Liste/rapor/export okumaları paralel çalışır.
+ *
+ * Okumalar yazma şeridini beklemez (WAL). JS tarafı bir yazmanın sonucunu görmek istiyorsa
+ * yazma çağrısının Promise'ini bekledikten sonra okuma yapmalıdır.
+ *
+ * Her görev bir taskId taşır (çağrıdaki "taskId" veya Capacitor callbackId). Aynı anda çalışan
+ * veya sırada bekleyen bir görevin taskId'si tekrar verilirse çağrı DUPLICATE_TASK_ID ile reject edilir:
+ * - cancel(taskId) görevi iptal eder; henüz başlamadıysa hiç çalışmaz, çalışıyorsa
+ *   Task.throwIfCancelled / CancellationSignal noktalarında durur. Çağrı "CANCELLED" koduyla reject edilir.
+ * - Task.progress(done, total) → "taskProgress" event'i (throttle'lı).
+ * - Metod bazında süre istatistikleri getStats() ile okunur.
+ *
+ * Metodların genel catch bloğu fail() ile reject eder; iptal hataları böylece zamanlayıcıya
+ * geri fırlatılır ve çağrı CANCELLED koduyla reject edilir.
+ *
+ * background() ile JS çağrısına bağlı olmayan bakım işleri (ör. incremental vacuum) yazma şeridine
+ * eklenir; sonuçları yalnızca istatistiklere yansır.
+ */
+final class PluginTaskScheduler {
+
+    static final String PROGRESS_EVENT = "taskProgress";
+    static final String CANCELLED_CODE = "CANCELLED";
+    static final String DUPLICATE_TASK_ID_CODE = "DUPLICATE_TASK_ID";
+
+    // Aynı görev için iki progress event'i arasında en az bu kadar süre geçer (son event hariç)
+    private static final long PROGRESS_INTERVAL_MS = 200;
+
+    /**
+     * Şeritte çalışacak iş. Sonucu çağrının kendisi resolve/reject eder.
+     */
+    interface Work {
+        void run(Task task) throws Exception;
+    }
+
+    /**
+     * Plugin'in notifyListeners metoduna köprü.
+     */
+    interface EventSink {
+        void emit(String eventName, JSObject data);
+    }
+
+    /**
+     * Çalışan (veya sırada bekleyen) tek bir görev.
+     */
+    final class Task {
+        final String id;
+        final String method;
+        final boolean write;
+        // Uzun SQLite sorgularını (rapor, export) yarıda kesmek için rawQuery'e verilir
+        final CancellationSignal signal = new CancellationSignal();
+
+        private volatile boolean cancelled = false;
+        // Şeritte çalışmaya başladı mı (getStats: running / queued)
+        private volatile boolean started = false;
+        private long lastProgressAt = 0;
+
+        Task(String id, String method, boolean write) {
+            this.id = id;
+            this.method = method;
+            this.write = write;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Döngülerde çağrılır; görev iptal edildiyse CancellationException fırlatır
+         * (açık transaction varsa endTransaction ile geri alınır).
+         */
+        void throwIfCancelled() {
+            if (cancelled) {
+                throw new CancellationException(method + " iptal edildi");
+            }
+        }
+
+        /**
+         * İlerleme bildirir. total bilinmiyorsa -1 verilir.
+         */
+        void progress(long done, long total) {
+            long now = SystemClock.elapsedRealtime();
+            if (done != total && now - lastProgressAt < PROGRESS_INTERVAL_MS) return;
+            lastProgressAt = now;
+
+            JSObject event = new JSObject();
+            event.put("taskId", id);
+            event.put("method", method);
+            event.put("done", done);
+            event.put("total", total);
+            sink.emit(PROGRESS_EVENT, event);
+        }
+
+        void cancel() {
+            cancelled = true;
+            signal.cancel();
+        }
+    }
+
+    /**
+     * Metod bazında süre sayaçları (ms).
+     */
+    private static final class MethodStats {
+        long count;
+        long failed;
+        long cancelled;
+        long totalRunMs;
+        long maxRunMs;
+        long lastRunMs;
+        long totalWaitMs;
+    }
+
+    private final EventSink sink;
+    private final ExecutorService writer;
+    private final ExecutorService readers;
+    private final Map<String, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<String, MethodStats> stats = new LinkedHashMap<>();
+    private final AtomicInteger backgroundSeq = new AtomicInteger();
+
+    PluginTaskScheduler(EventSink sink, int readerThreads) {
+        this.sink = sink;
+        this.writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "fss-writer"));
+        AtomicInteger n = new AtomicInteger();
+        this.readers = Executors.newFixedThreadPool(
+                readerThreads,
+                r -> new Thread(r, "fss-reader-" + n.incrementAndGet())
+        );
+    }
+
+    /**
+     * Okuma şeridine gönderir (paralel).
+     */
+    void read(PluginCall call, String method, Work work) {
+        submit(readers, false, call, method, work);
+    }
+
+    /**
+     * Yazma şeridine gönderir (sıralı, tek tek).
+     */
+    void write(PluginCall call, String method, Work work) {
+        submit(writer, true, call, method, work);
+    }
+
+    /**
+     * Çağrıya bağlı olmayan bir bakım işini yazma şeridine gönderir.
+     * taskId "bg-{method}-{n}" olur; cancel ile iptal edilebilir. Plugin kapanıyorsa sessizce atlanır.
+     */
+    void background(String method, Work work) {
+        Task task = new Task("bg-" + method + "-" + backgroundSeq.incrementAndGet(), method, true);
+        tasks.put(task.id, task);
+        long queuedAt = SystemClock.elapsedRealtime();
+
+        try {
+            writer.execute(() -> run(task, null, work, queuedAt));
+        } catch (RejectedExecutionException e) {
+            tasks.remove(task.id, task);
+        }
+    }
+
+    /**
+     * @return görev bulunduysa (sırada veya çalışıyor) true
+     */
+    boolean cancel(String taskId) {
+        Task task = tasks.get(taskId);
+        if (task == null) return false;
+        task.cancel();
+        return true;
+    }
+
+    /**
+     * Metodların genel catch bloğu için: iptal (CancellationException / OperationCanceledException)
+     * run()'a geri fırlatılır ve çağrı CANCELLED koduyla reject edilir; diğer hatalarda
+     * çağrı "message: hata" ile reject edilir.
+     */
+    static void fail(PluginCall call, String message, Exception e) {
+        if (e instanceof CancellationException) throw (CancellationException) e;
+        if (e instanceof OperationCanceledException) throw (OperationCanceledException) e;
+        call.reject(message + ": " + e.getMessage());
+    }
+
+    /**
+     * { methods: [{ method, count, failed, cancelled, avgRunMs, maxRunMs, lastRunMs, avgWaitMs }], running, queued }
+     */
+    JSObject getStats() {
+        JSArray methods = new JSArray();
+        synchronized (stats) {
+            for (Map.Entry<String, MethodStats> e : stats.entrySet()) {
+                MethodStats s = e.getValue();
+                JSObject o = new JSObject();
+                o.put("method", e.getKey());
+                o.put("count", s.count);
+                o.put("failed", s.failed);
+                o.put("cancelled", s.cancelled);
+                o.put("avgRunMs", s.count == 0 ? 0 : s.totalRunMs / s.count);
+                o.put("maxRunMs", s.maxRunMs);
+                o.put("lastRunMs", s.lastRunMs);
+                o.put("avgWaitMs", s.count == 0 ? 0 : s.totalWaitMs / s.count);
+                methods.put(o);
+            }
+        }
+        int running = 0;
+        int queued = 0;
+        for (Task task : tasks.values()) {
+            if (task.started) running++;
+            else queued++;
+        }
+
+        JSObject result = new JSObject();
+        result.put("methods", methods);
+        result.put("running", running);
+        result.put("queued", queued);
+        return result;
+    }
+
+    /**
+     * Sıradaki ve çalışan okumaları iptal eder (çağrıları CANCELLED ile reject edilir);
+     * yazma şeridindeki işler tamamlanır (kayıt/silme yarıda bırakılmasın).
+     * Yeni görev kabul edilmez.
+     */
+    void shutdown() {
+        for (Task task : tasks.values()) {
+            if (!task.write) task.cancel();
+        }
+        readers.shutdown();
+        writer.shutdown();
+    }
+
+    private void submit(ExecutorService lane, boolean write, PluginCall call, String method, Work work) {
+        String taskId = call.getString("taskId", call.getCallbackId());
+        Task task = new Task(taskId, method, write);
+        if (tasks.putIfAbsent(taskId, task) != null) {
+            call.reject(method + ": taskId zaten kullanımda: " + taskId, DUPLICATE_TASK_ID_CODE);
+            return;
+        }
+        long queuedAt = SystemClock.elapsedRealtime();
+
+        try {
+            lane.execute(() -> run(task, call, work, queuedAt));
+        } catch (RejectedExecutionException e) {
+            tasks.remove(taskId, task);
+            call.reject(method + " çalıştırılamadı: plugin kapatılıyor");
+        }
+    }
+
+    private void run(Task task, @Nullable PluginCall call, Work work, long queuedAt) {
+        long startedAt = SystemClock.elapsedRealtime();
+        task.started = true;
+        boolean failed = false;
+        boolean cancelled = false;
+        try {
+            task.throwIfCancelled();
+            work.run(task);
+        } catch (CancellationException | OperationCanceledException e) {
+            cancelled = true;
+            if (call != null) call.reject(task.method + " iptal edildi", CANCELLED_CODE);
+        } catch (Exception e) {
+            failed = true;
+            if (call != null) call.reject(task.method + " hata: " + e.getMessage());
+            else e.printStackTrace();
+        } finally {
+            tasks.remove(task.id, task);
+            record(task.method, startedAt - queuedAt, SystemClock.elapsedRealtime() - startedAt, failed, cancelled);
+        }
+    }
+
+    private void record(String method, long waitMs, long runMs, boolean failed, boolean cancelled) {
+        synchronized (stats) {
+            MethodStats s = stats.get(method);
+            if (s == null) {
+                s = new MethodStats();
+                stats.put(method, s);
+            }
+            s.count++;
+            if (failed) s.failed++;
+            if (cancelled) s.cancelled++;
+            s.totalRunMs += runMs;
+            s.totalWaitMs += waitMs;
+            s.lastRunMs = runMs;
+            if (runMs > s.maxRunMs) s.maxRunMs = runMs;
+        }
+    }
+}
@@ -2,13 +2,37 @@ package com.example.datamatrix;
 
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.CancellationSignal;
 
 import androidx.annotation.Nullable;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Cihaz içi sayım veritabanı:
@@ -23,22 +47,175 @@ import java.util.List;
  * 2) scan_items: Her okunan barkod için 1 satır
  *    - id INTEGER PRIMARY KEY AUTOINCREMENT
  *    - session_id INTEGER (scan_sessions.id ile ilişkili)
- *    - code TEXT (datamatrix string'i)
- *    - gtin TEXT (üründen çözülmüş GTIN, stok raporu için)
- *    - scanned_at TEXT
+ *    - code TEXT (kutunun kimliği: "01" + GTIN + "21" + seri; çözülemeyen kodlarda okunan metin)
+ *    - gtin TEXT (üründen çözülmüş GTIN; gtin_norm'dan geri kurulabiliyorsa null)
+ *    - scanned_at TEXT (yalnızca scanned_ts'e çevrilemeyen zaman metni; diğer satırlarda boş)
+ *    - gtin_norm INTEGER (normalize GTIN, indexli rapor join'i için)
+ *    - raw TEXT (okunan metin, yalnızca code/expiry/lot'tan geri kurulamıyorsa; bkz. ScanItemCode)
+ *    - lot TEXT (AI 10), expiry INTEGER (AI 17, YYAAGG); v16'dan itibaren indexli:
+ *      (session_id, expiry) SKT raporu, (gtin_norm, lot) geri çağırma araması için
+ *    - scanned_ts INTEGER (epoch saniye; okurken yerel saat metnine çevrilir, bkz. itemScannedAtSql)
  *
  * 3) products_local: Ürün kataloğu (GTIN -> BrandName)
- *    - gtin TEXT PRIMARY KEY
+ *    - id INTEGER PRIMARY KEY (v20; products_fts'in anahtarı, VACUUM'da değişmez)
+ *    - gtin TEXT UNIQUE
  *    - brand_name TEXT NOT NULL
+ *    - gtin_norm INTEGER (normalize GTIN)
  *
  * 4) easy_sales / easy_sale_items:
  *    - Easy satış başlıkları ve kalemleri
+ *    - easy_sales.item_count: kalem sayısı (kalem yazan metodlar tarafından güncel tutulur)
+ *    - easy_sale_items.unit_price_minor INTEGER (kuruş), partial_amount_num INTEGER:
+ *      TEXT fiyat/kısmi miktarın sayısal kopyaları, SQL'de toplanabilsin diye
+ *    - easy_sale_items.code_canonical TEXT (indexli): Gs1Code.canonicalize(barcode),
+ *      aynı kutunun ikinci kez satılmasını yakalamak için
+ *
+ * 5) session_gtin_stats: Oturum x GTIN ön-toplamları (stok raporu için)
+ *    - session_id INTEGER, gtin_norm INTEGER, gtin TEXT
+ *    - distinct_count INTEGER (COUNT(DISTINCT code)), total_scans INTEGER (COUNT(code))
+ *    - scan_items'a yazan/silen metodlar tarafından güncel tutulur
+ *
+ * 6) session_overlaps: Ortak kod içeren oturum çiftleri (iki yönlü)
+ *    - ön-toplamların toplanıp toplanamayacağına rapor anında karar vermek için
+ *
+ * 7) session_archives: Saklama politikasıyla silinen oturumların sıkıştırılmış SessionArchive kopyaları
+ *    - created_at, session_count, item_count, first_session_at, last_session_at, data BLOB
+ *
+ * 8) products_fts: products_local.brand_name üzerinde tam metin index'i (rowid = products_local.id)
+ *    - FTS5, yoksa FTS4 (Android'in kendi SQLite'ında FTS5 derli değil); unicode61 tokenizer
+ *    - products_local trigger'larıyla güncel tutulur; bkz. createProductSearch
+ *
+ * 9) stakeholders: paydaş dizini (stakeholders.json), code / parent_code indexli
+ *    - id, code, name, type, city, district, parent_code; code tekil değildir
+ *    - stakeholders_fts: ad araması (products_fts ile aynı yapı), importStakeholders'ta yeniden kurulur
+ *
+ * 10) app_meta: anahtar / değer satırları (ör. stakeholders_asset_version); bkz. getMeta / putMeta
+ *
+ * temp.report_sessions (bağlantıya özel TEMP tablo): stok raporuna dahil oturumlar.
+ *    Dinamik IN (?,?,...) yerine rapor sorguları buna join olur.
+ * temp.import_items: importSessions sırasında gelen kodların ara tablosu.
+ *
+ * reportCache (StockReportCache): stok raporu sonuçlarının bellekteki LRU önbelleği. scan_items'a
+ *    yazan / silen metodlar ilgili oturumları, products_local'a yazanlar katalogu commit'ten sonra
+ *    geçersiz kılar.
+ *
+ * data_migrations: arka planda parça parça çalışan veri geçişlerinin (DataMigration) kaldığı ve
+ *    hedeflediği id (ör. compact_scan_items). onUpgrade yalnızca şemayı değiştirir; satır doldurma
+ *    runDataMigrationBatch ile yazma şeridinde kısa transaction'larla yapılır.
+ *
+ * Bağlantılar: veritabanı WAL modunda çalışır. Yazmalar getWritableDatabase() üzerinden,
+ * plugin okumaları acquireReader()/releaseReader() ile alınan salt-okunur handle'lar üzerinden yapılır;
+ * böylece uzun bir yazma (ürün senkronu, toplu kayıt) liste/rapor okumalarını bekletmez.
+ * foreign_keys açıktır; dosya auto_vacuum = INCREMENTAL ile tutulur (reclaimFreePages).
  */
 public class ScanDatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DB_NAME = "scan_sessions.db";
-    // Şema sürümü: 5 (gtin, products_local, easy_sales, easy_sale_items + easy_item fiyat alanları dahil)
-    private static final int DB_VERSION = 6;
+    // Şema sürümü: 20 (gtin, products_local, easy_sales, easy_sale_items, fiyat/NDB alanları, gtin_norm,
+    // session_gtin_stats, scan_sessions.created_at + scan_items(session_id) index'leri,
+    // easy_sales.item_count + easy_sale_items(sale_id) index'i, sayısal fiyat kolonları,
+    // easy_sale_items.code_canonical, session_archives, kompakt scan_items kolonları,
+    // SKT / lot index'leri, data_migrations.target_id, products_fts, stakeholders,
+    // products_local.id, app_meta dahil)
+    private static final int DB_VERSION = 21;
+
+    // Veri geçişlerinde (DataMigration) bir parçanın varsayılan id aralığı
+    static final int BACKFILL_BATCH_SIZE = 5000;
+    // session_stats geçişinde parça başına oturum sayısı (her oturum kendi satırlarını yeniden sayar)
+    private static final int SESSION_STATS_BATCH_SIZE = 50;
+
+    // gtin metnini gtin_norm'a çeviren SQL (normalizeGtin ile aynı kural); %1$s = gtin ifadesi
+    private static final String GTIN_NORM_SQL =
+            "CASE WHEN length(TRIM(%1$s)) BETWEEN 1 AND 18 AND TRIM(%1$s) NOT GLOB '*[^0-9]*' " +
+                    "THEN CAST(TRIM(%1$s) AS INTEGER) END";
+
+    // temp.report_sessions doldururken tek INSERT'e konan id sayısı.
+    // SQL metni hep aynı kalsın (statement cache) diye son parça tekrar eden id ile doldurulur.
+    private static final int REPORT_SESSION_CHUNK = 64;
+    private static final String INSERT_REPORT_SESSIONS_SQL = buildInsertReportSessionsSql();
+
+    // BulkInserter kolon sıraları
+    static final String[] SCAN_ITEM_COLUMNS = {
+            "session_id", "code", "raw", "gtin", "gtin_norm", "lot", "expiry", "scanned_at", "scanned_ts"
+    };
+    // importSessions ara tablosu (temp.import_items)
+    private static final String[] IMPORT_ITEM_COLUMNS = { "code", "raw", "gtin", "gtin_norm", "lot", "expiry" };
+
+    // created_at / scanned_at metin biçimi (yerel saat)
+    static final String TIMESTAMP_PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+
+    // data_migrations adı: v7 öncesi scan_items.gtin_norm doldurma
+    static final String MIGRATION_GTIN_NORM = "gtin_norm";
+    // data_migrations adı: v8 öncesi oturumların session_gtin_stats / session_overlaps ön-toplamları
+    static final String MIGRATION_SESSION_STATS = "session_stats";
+    // data_migrations adı: v11 öncesi easy_sales.item_count doldurma
+    static final String MIGRATION_EASY_ITEM_COUNTS = "easy_item_counts";
+    // data_migrations adı: v12 öncesi easy_sale_items sayısal fiyat kolonları
+    static final String MIGRATION_EASY_PRICES = "easy_prices";
+    // data_migrations adı: v13 öncesi easy_sale_items.code_canonical doldurma
+    static final String MIGRATION_EASY_CANONICAL_CODES = "easy_canonical_codes";
+    // data_migrations adı: v15 öncesi scan_items satırlarının kompakt düzene çevrilmesi
+    static final String MIGRATION_COMPACT_SCAN_ITEMS = "compact_scan_items";
+    // data_migrations adı: v18 öncesi katalogun products_fts'e yüklenmesi
+    static final String MIGRATION_PRODUCTS_FTS = "products_fts";
+
+    // Ad araması (ürün / paydaş): varsayılan / en fazla sonuç ve sorguda dikkate alınan kelime sayısı
+    static final int SEARCH_DEFAULT_LIMIT = 20;
+    static final int SEARCH_MAX_LIMIT = 200;
+    private static final int SEARCH_MAX_TOKENS = 8;
+
+    // FTS tablolarına yazılan ad: Türkçe noktasız ı ve noktalı İ, unicode61'in büyük/küçük harf
+    // katlamasında i'ye inmediği için önceden i yapılır (ş, ç, ğ, ö, ü ve Kiril harfleri tokenizer'da katlanır)
+    private static final String FTS_FOLD_SQL = "replace(replace(%s, 'ı', 'i'), 'İ', 'i')";
+
+    // FTS tablosu adı → FTS5 mi (ilk aramada sqlite_master'dan okunur): FTS5'te bm25(), FTS4'te
+    // matchinfo() + Fts4Ranking ile sıralanır
+    private static final Map<String, Boolean> FTS5_TABLES = new ConcurrentHashMap<>();
+
+    // app_meta: paydaş dizini yüklenirken geçerli olan paket sürümü (bkz. replaceStakeholders)
+    static final String META_STAKEHOLDERS_ASSET_VERSION = "stakeholders_asset_version";
+
+    // lookupStakeholders: tek sorguya konan code sayısı (SQL metni sabit kalsın diye son parça doldurulur)
+    static final int STAKEHOLDER_LOOKUP_CHUNK = 64;
+    static final String STAKEHOLDER_COLUMNS_SQL = "s.id, s.code, s.name, s.type, s.city, s.district, s.parent_code";
+    private static final String LOOKUP_STAKEHOLDERS_SQL = buildLookupStakeholdersSql();
+    static final String[] EASY_ITEM_BARCODE_COLUMNS = { "sale_id", "barcode", "code_canonical" };
+    static final String[] EASY_ITEM_COLUMNS = {
+            "sale_id", "barcode", "brand", "sn", "status", "description", "note",
+            "unit_price", "partial_amount", "ndb_success", "ndb_message",
+            "unit_price_minor", "partial_amount_num", "code_canonical"
+    };
+
+    // Easy satış başlığı için derlenmiş INSERT (kalemlerle aynı transaction'da kullanılır)
+    static final String INSERT_EASY_SALE_SQL =
+            "INSERT INTO easy_sales " +
+                    "(created_at, patient, citizen_id, prescription_number, note, device_id, item_count) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // WAL otomatik checkpoint eşiği (sayfa) ve checkpoint sonrası WAL dosyasının kırpılacağı boyut
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+    private static final long WAL_SIZE_LIMIT_BYTES = 4L * 1024 * 1024;
+
+    // PRAGMA auto_vacuum değeri (0: NONE, 1: FULL, 2: INCREMENTAL)
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    // Bundan az boş sayfa için incremental vacuum çalıştırılmaz
+    private static final long VACUUM_MIN_FREE_PAGES = 256;
+    // Tek transaction'da dosyadan atılan en fazla sayfa (yazma şeridini uzun tutmasın)
+    private static final int VACUUM_PAGES_PER_STEP = 2048;
+    // session_archives.data CursorWindow sınırına (2 MB) takılmasın diye parça parça okunur
+    private static final int ARCHIVE_READ_CHUNK = 512 * 1024;
+    // Saklama politikasında tek arşivin açılmış gövdesi en fazla bu kadar olur (SessionArchive.MAX_BODY_BYTES'ın
+    // altında; yazarken bellekte tek parçanın sıkıştırılmış hali ve doğrulama için okunan kopyası tutulur)
+    private static final long ARCHIVE_PART_BODY_BYTES = 4L * 1024 * 1024;
+
+    // Salt-okunur handle havuzu. Her handle tek bağlantılıdır; temp.report_sessions
+    // bağlantıya özel olduğu için doldurma ve rapor sorgusu aynı handle'da kalır.
+    static final int READER_POOL_SIZE = 3;
+    private final ArrayBlockingQueue<SQLiteDatabase> idleReaders = new ArrayBlockingQueue<>(READER_POOL_SIZE);
+    private int openedReaders = 0;
+
+    // Stok raporu sonuç önbelleği; yazan metodlar endTransaction'dan sonra geçersiz kılar
+    final StockReportCache reportCache = new StockReportCache();
 
     private static ScanDatabaseHelper instance;
 
@@ -50,7 +227,44 @@ public class ScanDatabaseHelper extends SQLiteOpenHelper {
     }
 
     private ScanDatabaseHelper(@Nullable Context context) {
-        super(context, DB_NAME, null, DB_VERSION);
+        this(context, DB_NAME);
+    }
+
+    /**
+     * Canlı veritabanı dışında bir dosya için (ölçüm / cihaz testleri); uygulama getInstance kullanır.
+     */
+    ScanDatabaseHelper(@Nullable Context context, String name) {
+        super(context, name, null, DB_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // WAL: yazma sürerken okuyucular son commit edilmiş veriyi okumaya devam eder
+        db.enableWriteAheadLogging();
+        // WAL'da NORMAL, commit başına fsync yapmaz; veritabanı bozulmaz, sadece
+        // güç kesintisinde son commit'ler kaybolabilir
+        execPragma(db, "PRAGMA synchronous = NORMAL");
+        execPragma(db, "PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES);
+        // Checkpoint sonrası WAL dosyası bu boyuta kırpılır (sınırsız büyümesin)
+        execPragma(db, "PRAGMA journal_size_limit = " + WAL_SIZE_LIMIT_BYTES);
+        // Şemadaki ON DELETE CASCADE tanımları ancak bununla uygulanır (bağlantı başına ayar)
+        db.setForeignKeyConstraintsEnabled(true);
+        // Yeni kurulumda ilk tablo oluşmadan ayarlandığı için hemen geçerli olur; eski veritabanları
+        // reclaimFreePages içinde tek seferlik VACUUM ile dönüştürülür. Sonuç satırı dönmez (execSQL).
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+    }
+
+    /**
+     * Sonuç satırı dönebilen PRAGMA'lar execSQL ile çalıştırılamaz; rawQuery + close kullanılır.
+     */
+    private static void execPragma(SQLiteDatabase db, String sql) {
+        Cursor c = db.rawQuery(sql, null);
+        try {
+            c.moveToFirst();
+        } finally {
+            c.close();
+        }
     }
 
     @Override
@@ -65,6 +279,7 @@ public class ScanDatabaseHelper extends SQLiteOpenHelper {
                         "device_id TEXT" +
                         ");"
         );
+        createSessionCreatedAtIndex(db);
 
         // Oturum içi kodlar
         db.execSQL(
@@ -74,6 +289,11 @@ public class ScanDatabaseHelper extends SQLiteOpenHelper {
                         "code TEXT NOT NULL," +
                         "gtin TEXT," +
                         "scanned_at TEXT NOT NULL," +
+                        "gtin_norm INTEGER," +
+                        "raw TEXT," +
+                        "lot TEXT," +
+                        "expiry INTEGER," +
+                        "scanned_ts INTEGER," +
                         "FOREIGN KEY(session_id) REFERENCES scan_sessions(id) ON DELETE CASCADE" +
                         ");"
         );
@@ -83,14 +303,15 @@ public class ScanDatabaseHelper extends SQLiteOpenHelper {
                 "CREATE INDEX IF NOT EXISTS idx_scan_items_session_code " +
                         "ON scan_items(session_id, code);"
         );
+        createSessionItemsPagingIndex(db);
+        createExpiryLotIndexes(db);
 
         // FAST ürün kataloğu tablosu (GTIN -> BrandName)
-        db.execSQL(
-                "CREATE TABLE IF NOT EXISTS products_local (" +
-                        "gtin TEXT PRIMARY KEY," +
-                        "brand_name TEXT NOT NULL" +
-                        ");"
-        );
+        createProductsTable(db, "products_local");
+
+        createGtinNormIndexes(db);
+        createProductSearch(db);
+        createSessionStatsTables(db);
 
         // EASY satış kayıtları (reçete satış başlığı)
         db.execSQL(
@@ -101,7 +322,8 @@ public class ScanDatabaseHelper extends SQLiteOpenHelper {
                         "citizen_id TEXT," +
                         "prescription_number TEXT," +
                         "note TEXT," +
-                        "device_id TEXT" +
+                        "device_id TEXT," +
+                        "item_count INTEGER NOT NULL DEFAULT 0" +
                         ");"
         );
 
@@ -120,10 +342,19 @@ public class ScanDatabaseHelper extends SQLiteOpenHelper {
                         "partial_amount TEXT," +
                         "ndb_success INTEGER," +
                         "ndb_message TEXT," +
+                        "unit_price_minor INTEGER," +
+                        "partial_amount_num INTEGER," +
+                        "code_canonical TEXT," +
                         "FOREIGN KEY(sale_id) REFERENCES easy_sales(id) ON DELETE CASCADE" +
                         ");"
         );
-
+        createEasySaleItemsIndex(db);
+        createEasySalesCreatedAtIndex(db);
+        createEasyCanonicalCodeIndex(db);
+        createSessionArchivesTable(db);
+        createDataMigrationsTable(db);
+        createStakeholderTables(db);
+        createAppMetaTable(db);
     }
 
     @Override
@@ -132,284 +363,2716 @@ public class ScanDatabaseHelper extends SQLiteOpenHelper {
 
         // v1 → v2: scan_sessions.device_id kolonu ekle
         if (oldVersion < 2) {
-            try {
-                db.execSQL("ALTER TABLE scan_sessions ADD COLUMN device_id TEXT;");
-            } catch (Exception ignored) {
-            }
+            addColumnIfMissing(db, "scan_sessions", "device_id", "TEXT");
 
             // Eski v1 kurulumlarında index yoksa ekleyelim
-            try {
-                db.execSQL(
-                        "CREATE INDEX IF NOT EXISTS idx_scan_items_session_code " +
-                                "ON scan_items(session_id, code);"
-                );
-            } catch (Exception ignored) {
-            }
+            db.execSQL(
+                    "CREATE INDEX IF NOT EXISTS idx_scan_items_session_code " +
+                            "ON scan_items(session_id, code);"
+            );
         }
 
         // v2 → v3: scan_items.gtin ve products_local tablosu
         if (oldVersion < 3) {
-            try {
-                db.execSQL("ALTER TABLE scan_items ADD COLUMN gtin TEXT;");
-            } catch (Exception ignored) {
-            }
+            addColumnIfMissing(db, "scan_items", "gtin", "TEXT");
 
-            try {
-                db.execSQL(
-                        "CREATE TABLE IF NOT EXISTS products_local (" +
-                                "gtin TEXT PRIMARY KEY," +
-                                "brand_name TEXT NOT NULL" +
-                                ");"
-                );
-            } catch (Exception ignored) {
-            }
+            db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS products_local (" +
+                            "gtin TEXT PRIMARY KEY," +
+                            "brand_name TEXT NOT NULL" +
+                            ");"
+            );
         }
 
         // v3 → v4: easy_sales ve easy_sale_items tabloları
         if (oldVersion < 4) {
-            try {
-                db.execSQL(
-                        "CREATE TABLE IF NOT EXISTS easy_sales (" +
-                                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                                "created_at TEXT NOT NULL," +
-                                "patient TEXT," +
-                                "citizen_id TEXT," +
-                                "prescription_number TEXT," +
-                                "note TEXT," +
-                                "device_id TEXT" +
-                                ");"
-                );
-            } catch (Exception ignored) {
-            }
+            db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS easy_sales (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "created_at TEXT NOT NULL," +
+                            "patient TEXT," +
+                            "citizen_id TEXT," +
+                            "prescription_number TEXT," +
+                            "note TEXT," +
+                            "device_id TEXT" +
+                            ");"
+            );
 
-            try {
-                db.execSQL(
-                        "CREATE TABLE IF NOT EXISTS easy_sale_items (" +
-                                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                                "sale_id INTEGER NOT NULL," +
-                                "barcode TEXT NOT NULL," +
-                                "brand TEXT," +
-                                "sn TEXT," +
-                                "status TEXT," +
-                                "description TEXT," +
-                                "note TEXT," +
-                                "FOREIGN KEY(sale_id) REFERENCES easy_sales(id) ON DELETE CASCADE" +
-                                ");"
-                );
-            } catch (Exception ignored) {
-            }
+            db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS easy_sale_items (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "sale_id INTEGER NOT NULL," +
+                            "barcode TEXT NOT NULL," +
+                            "brand TEXT," +
+                            "sn TEXT," +
+                            "status TEXT," +
+                            "description TEXT," +
+                            "note TEXT," +
+                            "FOREIGN KEY(sale_id) REFERENCES easy_sales(id) ON DELETE CASCADE" +
+                            ");"
+            );
         }
 
         // v5 → v6: easy_sale_items tablosuna NDB sonuç kolonlarını ekle
         if (oldVersion < 6) {
-            try {
-                db.execSQL("ALTER TABLE easy_sale_items ADD COLUMN ndb_success INTEGER;");
-            } catch (Exception ignored) {
-            }
-            try {
-                db.execSQL("ALTER TABLE easy_sale_items ADD COLUMN ndb_message TEXT;");
-            } catch (Exception ignored) {
-            }
+            addColumnIfMissing(db, "easy_sale_items", "ndb_success", "INTEGER");
+            addColumnIfMissing(db, "easy_sale_items", "ndb_message", "TEXT");
         }
 
 
         // v4 → v5: easy_sale_items tablosuna fiyat kolonlarını ekle
         if (oldVersion < 5) {
-            try {
-                db.execSQL("ALTER TABLE easy_sale_items ADD COLUMN unit_price TEXT;");
-            } catch (Exception ignored) {
-            }
-            try {
-                db.execSQL("ALTER TABLE easy_sale_items ADD COLUMN partial_amount TEXT;");
-            } catch (Exception ignored) {
-            }
+            addColumnIfMissing(db, "easy_sale_items", "unit_price", "TEXT");
+            addColumnIfMissing(db, "easy_sale_items", "partial_amount", "TEXT");
+        }
+
+        // v6 → v7: scan_items / products_local için gtin_norm INTEGER + index. Mevcut scan_items satırları
+        // gtin_norm veri geçişiyle arka planda dolar; products_local'ınki v20'deki kopyada hesaplanır.
+        if (oldVersion < 7) {
+            addColumnIfMissing(db, "scan_items", "gtin_norm", "INTEGER");
+            addColumnIfMissing(db, "products_local", "gtin_norm", "INTEGER");
+            createGtinNormIndexes(db);
+            enqueueDataMigration(db, MIGRATION_GTIN_NORM);
+        }
+
+        // v7 → v8: session_gtin_stats / session_overlaps. Mevcut oturumların ön-toplamları
+        // session_stats veri geçişiyle (gtin_norm'dan sonra) oturum oturum kurulur.
+        if (oldVersion < 8) {
+            createSessionStatsTables(db);
+            enqueueDataMigration(db, MIGRATION_SESSION_STATS);
+        }
+
+        // v8 → v9: tarih aralığı / cihaz filtresiyle rapor oturumu seçimi için index
+        if (oldVersion < 9) {
+            createSessionCreatedAtIndex(db);
+        }
+
+        // v9 → v10: oturum kodlarını id sırasıyla sayfalamak için index
+        if (oldVersion < 10) {
+            createSessionItemsPagingIndex(db);
+        }
+
+        // v10 → v11: easy_sale_items(sale_id) index'i + easy_sales.item_count (easy_item_counts geçişiyle dolar)
+        if (oldVersion < 11) {
+            addColumnIfMissing(db, "easy_sales", "item_count", "INTEGER NOT NULL DEFAULT 0");
+            // Geçişteki COUNT(*) sorguları bu index'i kullanır
+            createEasySaleItemsIndex(db);
+            enqueueDataMigration(db, MIGRATION_EASY_ITEM_COUNTS);
+        }
+
+        // v11 → v12: sayısal fiyat kolonları (TEXT'ten easy_prices geçişiyle dolar) + easy_sales(created_at) index'i
+        if (oldVersion < 12) {
+            addColumnIfMissing(db, "easy_sale_items", "unit_price_minor", "INTEGER");
+            addColumnIfMissing(db, "easy_sale_items", "partial_amount_num", "INTEGER");
+            enqueueDataMigration(db, MIGRATION_EASY_PRICES);
+            createEasySalesCreatedAtIndex(db);
+        }
+
+        // v12 → v13: easy_sale_items.code_canonical (mükerrer satış kontrolü; easy_canonical_codes geçişiyle dolar)
+        if (oldVersion < 13) {
+            addColumnIfMissing(db, "easy_sale_items", "code_canonical", "TEXT");
+            createEasyCanonicalCodeIndex(db);
+            enqueueDataMigration(db, MIGRATION_EASY_CANONICAL_CODES);
+        }
+
+        // v13 → v14: session_archives + eski transaction'sız silmelerden kalan yetim satırlar
+        if (oldVersion < 14) {
+            createSessionArchivesTable(db);
+            deleteOrphanRows(db);
+        }
+
+        // v14 → v15: kompakt scan_items kolonları. Mevcut satırlar açılışı bekletmesin diye burada
+        // çevrilmez; compact_scan_items veri geçişi arka planda parça parça işler.
+        if (oldVersion < 15) {
+            addColumnIfMissing(db, "scan_items", "raw", "TEXT");
+            addColumnIfMissing(db, "scan_items", "lot", "TEXT");
+            addColumnIfMissing(db, "scan_items", "expiry", "INTEGER");
+            addColumnIfMissing(db, "scan_items", "scanned_ts", "INTEGER");
+            createDataMigrationsTable(db);
+            enqueueDataMigration(db, MIGRATION_COMPACT_SCAN_ITEMS);
+        }
+
+        // v15 → v16: SKT raporu ve geri çağırma için lot / expiry index'leri.
+        // v15 öncesi satırların kolonları compact_scan_items geçişiyle dolduruldukça index'e girer.
+        if (oldVersion < 16) {
+            createExpiryLotIndexes(db);
+        }
+
+        // v16 → v17: veri geçişlerinin hedef id'si (ilerleme bildirimi ve sabit aralıklar için).
+        // v15'te kaydedilmiş geçişte boş kalır; ilk parçada hesaplanır.
+        if (oldVersion < 17) {
+            addColumnIfMissing(db, "data_migrations", "target_id", "INTEGER");
+        }
+
+        // v17 → v18: ürün adı araması. Mevcut katalog products_fts veri geçişiyle arka planda yüklenir;
+        // yeni yazılan ürünleri index'leyen trigger'lar products_local.id'ye bağlı olduğu için v20'de kurulur.
+        if (oldVersion < 18) {
+            createNameFtsTable(db, "products_fts");
+            enqueueDataMigration(db, MIGRATION_PRODUCTS_FTS);
+        }
+
+        // v18 → v19: paydaş dizini (boş gelir; importStakeholders ile yüklenir)
+        if (oldVersion < 19) {
+            createStakeholderTables(db);
+        }
+
+        // v19 → v20: products_local'a INTEGER PRIMARY KEY. products_fts gizli rowid'e bağlıydı;
+        // VACUUM açık PK'si olmayan tabloların rowid'lerini yeniden numaralayabildiği için
+        // arama sonuçları yanlış ürünlere join olabiliyordu. Katalog kadar süren tek kopya.
+        if (oldVersion < 20) {
+            rebuildProductsWithIntegerKey(db);
+        }
+
+        // v20 → v21: app_meta (boş gelir; mevcut paydaş dizini sürüm kaydı olmadığı için bir kez yeniden yüklenir)
+        if (oldVersion < 21) {
+            createAppMetaTable(db);
         }
 
-        // İleride yeni versiyonlar için:
-// if (oldVersion < 7) { ... }
+        // İleride yeni versiyonlar için: şema değişikliği burada, satır doldurma DataMigration olarak
+        // (DATA_MIGRATIONS'a ekle, burada enqueueDataMigration ile kaydet).
+// if (oldVersion < 22) { ... }
     }
 
     /**
-     * Yeni bir sayım oturumu ekler.
-     *
-     * @param createdAt  ISO 8601 tarih-saat (örn: "2025-11-23T14:30:00")
-     * @param note       Kullanıcı notu (şimdilik null/boş geçilebilir)
-     * @param totalCount Toplam kod adedi
-     * @param deviceId   Hangi telefonda kaydedildi
-     * @return insert edilen session id (veya -1 hata)
+     * Kolon yoksa ekler. Eskiden ALTER hataları yutuluyordu; yarıda kalan bir yükseltmede
+     * (disk dolu vb.) sürüm yine de artıyor ve kolon hiç eklenmiyordu. Artık yalnızca mevcut kolon
+     * atlanır, diğer hatalar onUpgrade transaction'ını geri alır ve sonraki açılışta yeniden denenir.
      */
-    public long insertSession(String createdAt,
-                              @Nullable String note,
-                              int totalCount,
-                              @Nullable String deviceId) {
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        cv.put("created_at", createdAt);
-        cv.put("note", note);
-        cv.put("total_count", totalCount);
-        cv.put("device_id", deviceId);
-        return db.insert("scan_sessions", null, cv);
+    private static void addColumnIfMissing(SQLiteDatabase db, String table, String column, String type) {
+        Cursor c = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            while (c.moveToNext()) {
+                // table_info kolonları: cid, name, type, notnull, dflt_value, pk
+                if (column.equalsIgnoreCase(c.getString(1))) return;
+            }
+        } finally {
+            c.close();
+        }
+        db.execSQL("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type + ";");
     }
 
     /**
-     * Datamatrix / NDB string'inden GTIN-13 çıkarır.
-     * Senin kuralına göre: "010" + 13 hane = GTIN.
-     * Örnek: 01076134211482632110...  -> 7613421148263
+     * products_local tablosu (v20 düzeni). id products_fts'in rowid'idir; açık INTEGER PRIMARY KEY
+     * olduğu için VACUUM'da değişmez.
      */
-    @Nullable
-    public static String extractGtinFromCode(@Nullable String code) {
-        if (code == null) return null;
-        int idx = code.indexOf("010");
-        if (idx < 0) return null;
-        int start = idx + 3;
-        if (code.length() < start + 13) return null;
-        String gtin13 = code.substring(start, start + 13);
-        // Basit kontrol: sadece rakam olsun
-        for (int i = 0; i < gtin13.length(); i++) {
-            char ch = gtin13.charAt(i);
-            if (ch < '0' || ch > '9') return null;
-        }
-        return gtin13;
+    private static void createProductsTable(SQLiteDatabase db, String table) {
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                        "id INTEGER PRIMARY KEY," +
+                        "gtin TEXT UNIQUE," +
+                        "brand_name TEXT NOT NULL," +
+                        "gtin_norm INTEGER" +
+                        ");"
+        );
     }
 
     /**
-     * FAST stok raporu için scan_items tablosuna satır ekler.
+     * v20 öncesi products_local'ı (gtin TEXT PRIMARY KEY, gizli rowid) id INTEGER PRIMARY KEY ile
+     * yeniden kurar. id = eski rowid: products_fts'teki satırlar ve yarıda kalmış products_fts geçişinin
+     * aralıkları geçerli kalır. Eski tablonun trigger'ları ve index'i tabloyla birlikte düşer, yeniden kurulur.
+     * v7 öncesinden gelen katalogda boş kalan gtin_norm kopyalanırken hesaplanır (ayrı geçiş gerekmez).
      */
-    public long insertScanItem(long sessionId,
-                               String code,
-                               @Nullable String gtin,
-                               String scannedAt) {
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        cv.put("session_id", sessionId);
-        cv.put("code", code);
-        cv.put("gtin", gtin);
-        cv.put("scanned_at", scannedAt);
-        return db.insert("scan_items", null, cv);
+    private static void rebuildProductsWithIntegerKey(SQLiteDatabase db) {
+        createProductsTable(db, "products_local_v20");
+        db.execSQL(
+                "INSERT INTO products_local_v20 (id, gtin, brand_name, gtin_norm) " +
+                        "SELECT rowid, gtin, brand_name, " +
+                        "IFNULL(gtin_norm, " + String.format(GTIN_NORM_SQL, "gtin") + ") FROM products_local;"
+        );
+        db.execSQL("DROP TABLE products_local;");
+        db.execSQL("ALTER TABLE products_local_v20 RENAME TO products_local;");
+        createGtinNormIndexes(db);
+        createProductSearch(db);
     }
 
     /**
-     * FAST ürün kataloğu satırı ekler/günceller.
+     * data_migrations: arka planda parça parça çalışan veri geçişlerinin durumu (bkz. DataMigration).
+     * last_id'ye kadar olan satırlar işlenmiştir; target_id geçiş kaydedildiğinde tablodaki en büyük id'dir.
+     * done = 1 olan geçiş bir daha çalışmaz; done = 2 bitmiş ve sonrasındaki VACUUM'a katılmış demektir. Kayıt sırası (rowid) çalışma sırasıdır.
      */
-    public void upsertProductLocal(String gtin, String brandName) {
-        if (gtin == null || gtin.isEmpty()) return;
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        cv.put("gtin", gtin);
-        cv.put("brand_name", brandName);
-        db.insertWithOnConflict("products_local", null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+    private static void createDataMigrationsTable(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS data_migrations (" +
+                        "name TEXT PRIMARY KEY," +
+                        "last_id INTEGER NOT NULL DEFAULT 0," +
+                        "done INTEGER NOT NULL DEFAULT 0," +
+                        "target_id INTEGER" +
+                        ");"
+        );
     }
 
     /**
-     * EASY satış başlığını ekler.
-     *
-     * @return insert edilen easy_sales.id (veya -1 hata)
+     * lot / expiry index'leri:
+     * - scan_items(session_id, expiry): SKT raporu seçili her oturumda yalnızca sınıra kadar olan
+     *   aralığı tarar (queryExpiringItems).
+     * - scan_items(gtin_norm, lot): geri çağırma araması tüm sayımlarda tek aralık taramasıdır
+     *   (queryRecallSessions).
      */
-    public long insertEasySale(
-            String createdAt,
-            @Nullable String patient,
-            @Nullable String citizenId,
-            @Nullable String prescriptionNumber,
-            @Nullable String note,
-            @Nullable String deviceId
-    ) {
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues cv = new ContentValues();
-        cv.put("created_at", createdAt);
-        cv.put("patient", patient);
-        cv.put("citizen_id", citizenId);
-        cv.put("prescription_number", prescriptionNumber);
-        cv.put("note", note);
-        cv.put("device_id", deviceId);
-        return db.insert("easy_sales", null, cv);
+    private static void createExpiryLotIndexes(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_scan_items_session_expiry " +
+                        "ON scan_items(session_id, expiry);"
+        );
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_scan_items_gtin_lot " +
+                        "ON scan_items(gtin_norm, lot);"
+        );
     }
 
     /**
-     * EASY satış kalemlerini ekler.
-     *
-     * Şimdilik sadece barkodları kaydediyoruz; brand/sn/status gibi alanlar
-     * plugin tarafında doldurulabilir.
-     *
-     * @param saleId   easy_sales.id
-     * @param barcodes Satışa ait karekod listesi
+     * session_archives: saklama politikasıyla silinen oturumların SessionArchive (.fssx) kopyaları.
+     * restoreSessionArchive ile geri yüklenebilir.
      */
-    public void insertEasySaleItems(long saleId, List<String> barcodes) {
-        if (saleId <= 0 || barcodes == null || barcodes.isEmpty()) return;
-
-        SQLiteDatabase db = getWritableDatabase();
-        db.beginTransaction();
-        try {
-            for (String code : barcodes) {
-                if (code == null || code.isEmpty()) continue;
-
-                ContentValues cv = new ContentValues();
-                cv.put("sale_id", saleId);
-                cv.put("barcode", code);
-                db.insert("easy_sale_items", null, cv);
-            }
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
-        }
+    private static void createSessionArchivesTable(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS session_archives (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "created_at TEXT NOT NULL," +
+                        "session_count INTEGER NOT NULL," +
+                        "item_count INTEGER NOT NULL," +
+                        "first_session_at TEXT," +
+                        "last_session_at TEXT," +
+                        "data BLOB NOT NULL" +
+                        ");"
+        );
     }
 
     /**
-     * Bir sayım oturumunu ve ona bağlı tüm barkod kayıtlarını siler.
-     *
-     * @param sessionId silinecek oturumun ID'si
-     * @return silinen session satır sayısı (0 veya 1)
+     * foreign_keys kapalıyken (v14 öncesi) yarıda kalan silmelerin bıraktığı, üst satırı olmayan kayıtlar.
      */
-    public int deleteSession(long sessionId) {
-        SQLiteDatabase db = getWritableDatabase();
-        // Önce bu oturuma ait barkod satırlarını sil
-        db.delete("scan_items", "session_id = ?", new String[]{ String.valueOf(sessionId) });
-        // Sonra oturum kaydını sil
-        return db.delete("scan_sessions", "id = ?", new String[]{ String.valueOf(sessionId) });
+    private static void deleteOrphanRows(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM scan_items WHERE session_id NOT IN (SELECT id FROM scan_sessions);");
+        db.execSQL("DELETE FROM session_gtin_stats WHERE session_id NOT IN (SELECT id FROM scan_sessions);");
+        db.execSQL(
+                "DELETE FROM session_overlaps WHERE session_id NOT IN (SELECT id FROM scan_sessions) " +
+                        "OR other_session_id NOT IN (SELECT id FROM scan_sessions);"
+        );
+        db.execSQL("DELETE FROM easy_sale_items WHERE sale_id NOT IN (SELECT id FROM easy_sales);");
     }
 
     /**
-     * Oturum sayısını döndürür (debug / istatistik amaçlı).
+     * easy_sale_items(code_canonical): isAlreadyDispensed kod başına tek index araması yapar.
+     * Geçmişte aynı kod iki kez kaydedilmiş olabileceği için UNIQUE değildir.
      */
-    public int getSessionCount() {
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor c = db.rawQuery("SELECT COUNT(*) FROM scan_sessions", null);
-        try {
-            if (c.moveToFirst()) {
-                return c.getInt(0);
-            }
-            return 0;
-        } finally {
-            c.close();
-        }
+    private static void createEasyCanonicalCodeIndex(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_easy_sale_items_code_canonical " +
+                        "ON easy_sale_items(code_canonical);"
+        );
     }
 
     /**
-     * FAST sayım için eski API:
-     * Bir oturuma ait tüm kodları tek seferde ekler.
-     * FastMultiScanActivity db.insertItems(sessionId, codes, createdAt) çağırıyor.
+     * easy_sales(created_at): satış özeti tarih aralığını index'ten seçer.
      */
-    public void insertItems(long sessionId, List<String> codes, String createdAt) {
-        if (sessionId <= 0 || codes == null || codes.isEmpty()) return;
-
-        SQLiteDatabase db = getWritableDatabase();
-        db.beginTransaction();
-        try {
-            for (String code : codes) {
-                if (code == null || code.isEmpty()) continue;
+    private static void createEasySalesCreatedAtIndex(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_easy_sales_created_at " +
+                        "ON easy_sales(created_at);"
+        );
+    }
 
-                String gtin = extractGtinFromCode(code);
+    private static void createEasySaleItemsIndex(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_easy_sale_items_sale_id " +
+                        "ON easy_sale_items(sale_id);"
+        );
+    }
+
+    /**
+     * scan_items(session_id) index'i: girişler (session_id, rowid) sırasında tutulduğu için
+     * "session_id = ? AND id > ? ORDER BY id LIMIT ?" sayfaları sıralama yapmadan okunur.
+     */
+    private static void createSessionItemsPagingIndex(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_scan_items_session_id " +
+                        "ON scan_items(session_id);"
+        );
+    }
+
+    private static void createSessionCreatedAtIndex(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_scan_sessions_created_at " +
+                        "ON scan_sessions(created_at, device_id);"
+        );
+    }
+
+    /**
+     * gtin_norm index'leri:
+     * - scan_items(session_id, gtin_norm, code): stok raporu oturum bazında GTIN'e göre gruplar
+     *   ve COUNT(DISTINCT code) için tabloya dönmeden index'ten okur.
+     * - products_local(gtin_norm): rapordaki brand_name araması.
+     */
+    private static void createGtinNormIndexes(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_scan_items_session_gtin_norm " +
+                        "ON scan_items(session_id, gtin_norm, code);"
+        );
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_products_local_gtin_norm " +
+                        "ON products_local(gtin_norm);"
+        );
+    }
+
+    /**
+     * Tek kolonlu (name) tam metin tablosu: FTS5 varsa o, yoksa FTS4 (Android'in kendi SQLite'ında
+     * FTS5 derli değil). İkisinde de unicode61 tokenizer (büyük/küçük harf ve aksan katlama: Türkçe
+     * ve Kiril adlar için) ve 2-3 harflik önek index'i vardır. Sorgular ikisinde de aynı yazılır.
+     */
+    private static void createNameFtsTable(SQLiteDatabase db, String table) {
+        try {
+            db.execSQL(
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS " + table + " USING fts5(" +
+                            "name, tokenize = 'unicode61', prefix = '2 3');"
+            );
+        } catch (SQLiteException e) {
+            // "no such module: fts5"
+            db.execSQL(
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS " + table + " USING fts4(" +
+                            "name, tokenize=unicode61, prefix=\"2,3\");"
+            );
+        }
+    }
+
+    /**
+     * products_fts tam metin tablosu (rowid = products_local.id) ve products_local ile senkron tutan
+     * trigger'lar. Tek yazıcı ProductWriter'dır ve satırları yerinde günceller (id korunur).
+     */
+    private static void createProductSearch(SQLiteDatabase db) {
+        createNameFtsTable(db, "products_fts");
+
+        String name = String.format(FTS_FOLD_SQL, "new.brand_name");
+        db.execSQL(
+                "CREATE TRIGGER IF NOT EXISTS products_fts_after_insert " +
+                        "AFTER INSERT ON products_local BEGIN " +
+                        "INSERT INTO products_fts (rowid, name) VALUES (new.id, " + name + "); " +
+                        "END;"
+        );
+        db.execSQL(
+                "CREATE TRIGGER IF NOT EXISTS products_fts_after_update " +
+                        "AFTER UPDATE OF brand_name ON products_local BEGIN " +
+                        "DELETE FROM products_fts WHERE rowid = old.id; " +
+                        "INSERT INTO products_fts (rowid, name) VALUES (new.id, " + name + "); " +
+                        "END;"
+        );
+        db.execSQL(
+                "CREATE TRIGGER IF NOT EXISTS products_fts_after_delete " +
+                        "AFTER DELETE ON products_local BEGIN " +
+                        "DELETE FROM products_fts WHERE rowid = old.id; " +
+                        "END;"
+        );
+    }
+
+    /**
+     * stakeholders: paydaş dizini (stakeholders.json). code tekil değildir; aynı code'lu şube ve merkez
+     * kayıtları ayrı satırlardır. Tablo yalnızca replaceStakeholders ile bütün olarak yazılır;
+     * stakeholders_fts (rowid = stakeholders.id) aynı transaction'da yeniden kurulur, trigger gerekmez.
+     */
+    private static void createStakeholderTables(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS stakeholders (" +
+                        "id INTEGER PRIMARY KEY," +
+                        "code INTEGER NOT NULL," +
+                        "name TEXT NOT NULL," +
+                        "type INTEGER," +
+                        "city TEXT," +
+                        "district TEXT," +
+                        "parent_code INTEGER" +
+                        ");"
+        );
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_stakeholders_code ON stakeholders(code);");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_stakeholders_parent_code ON stakeholders(parent_code);");
+        createNameFtsTable(db, "stakeholders_fts");
+    }
+
+    /**
+     * app_meta: tek satırlık durum bilgileri (anahtar / değer). Şema gerektirmeyen küçük kayıtlar için;
+     * değer, ilgili tabloyu yazan transaction'da güncellenir.
+     */
+    private static void createAppMetaTable(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS app_meta (" +
+                        "key TEXT PRIMARY KEY," +
+                        "value TEXT" +
+                        ") WITHOUT ROWID;"
+        );
+    }
+
+    @Nullable
+    static String getMeta(SQLiteDatabase db, String key) {
+        Cursor c = db.rawQuery("SELECT value FROM app_meta WHERE key = ?", new String[] { key });
+        try {
+            return c.moveToFirst() ? c.getString(0) : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    static void putMeta(SQLiteDatabase db, String key, @Nullable String value) {
+        db.execSQL("INSERT OR REPLACE INTO app_meta (key, value) VALUES (?, ?)", new Object[] { key, value });
+    }
+
+    /**
+     * session_gtin_stats / session_overlaps tabloları ve index'leri.
+     * idx_scan_items_code_session: kayıt anında başka oturumlarda aynı kodu bulmak için.
+     */
+    private static void createSessionStatsTables(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS session_gtin_stats (" +
+                        "session_id INTEGER NOT NULL," +
+                        "gtin_norm INTEGER," +
+                        "gtin TEXT," +
+                        "distinct_count INTEGER NOT NULL," +
+                        "total_scans INTEGER NOT NULL," +
+                        "FOREIGN KEY(session_id) REFERENCES scan_sessions(id) ON DELETE CASCADE" +
+                        ");"
+        );
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_session_gtin_stats_session " +
+                        "ON session_gtin_stats(session_id, gtin_norm);"
+        );
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS session_overlaps (" +
+                        "session_id INTEGER NOT NULL," +
+                        "other_session_id INTEGER NOT NULL," +
+                        "PRIMARY KEY(session_id, other_session_id)" +
+                        ") WITHOUT ROWID;"
+        );
+        db.execSQL(
+                "CREATE INDEX IF NOT EXISTS idx_scan_items_code_session " +
+                        "ON scan_items(code, session_id);"
+        );
+    }
+
+    /**
+     * Bir oturumun session_gtin_stats ve session_overlaps satırlarını scan_items'tan
+     * yeniden hesaplar. insertItems aynı transaction içinde çağırır; oturum tek seferde
+     * yazıldığı için maliyet sadece o oturumun satır sayısı kadardır.
+     */
+    private static void rebuildSessionAggregates(SQLiteDatabase db, long sessionId) {
+        Object[] args = new Object[]{ sessionId };
+        db.execSQL("DELETE FROM session_gtin_stats WHERE session_id = ?", args);
+        db.execSQL(
+                "INSERT INTO session_gtin_stats " +
+                        "(session_id, gtin_norm, gtin, distinct_count, total_scans) " +
+                        "SELECT session_id, gtin_norm, MIN(" + itemGtinSql("scan_items") + "), " +
+                        "COUNT(DISTINCT code), COUNT(code) " +
+                        "FROM scan_items WHERE session_id = ? GROUP BY gtin_norm",
+                args
+        );
+
+        db.execSQL(
+                "DELETE FROM session_overlaps WHERE session_id = ? OR other_session_id = ?",
+                new Object[]{ sessionId, sessionId }
+        );
+        db.execSQL(
+                "INSERT OR IGNORE INTO session_overlaps (session_id, other_session_id) " +
+                        "SELECT DISTINCT a.session_id, b.session_id " +
+                        "FROM scan_items a JOIN scan_items b " +
+                        "ON b.code = a.code AND b.session_id <> a.session_id " +
+                        "WHERE a.session_id = ?",
+                args
+        );
+        db.execSQL(
+                "INSERT OR IGNORE INTO session_overlaps (session_id, other_session_id) " +
+                        "SELECT other_session_id, session_id FROM session_overlaps WHERE session_id = ?",
+                args
+        );
+    }
+
+    private static String buildInsertReportSessionsSql() {
+        StringBuilder sb = new StringBuilder("INSERT OR IGNORE INTO temp.report_sessions (id) VALUES ");
+        for (int i = 0; i < REPORT_SESSION_CHUNK; i++) {
+            if (i > 0) sb.append(",");
+            sb.append("(?)");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Bağlantıya özel temp.report_sessions tablosunu oluşturur ve boşaltır.
+     */
+    private static void resetReportSessions(SQLiteDatabase db) {
+        db.execSQL("CREATE TEMP TABLE IF NOT EXISTS report_sessions (id INTEGER PRIMARY KEY);");
+        db.execSQL("DELETE FROM temp.report_sessions;");
+    }
+
+    /**
+     * Stok raporu için oturum seçimini temp.report_sessions tablosuna yükler.
+     * Tek bir sabit metinli INSERT, REPORT_SESSION_CHUNK'lık parçalarla tekrar kullanılır;
+     * böylece binlerce oturumda da SQLite değişken limitine takılmaz.
+     * Aynı bağlantıda (aynı SQLiteDatabase) hemen ardından rapor sorgusu çalıştırılmalıdır.
+     *
+     * @return tabloya yüklenen (tekil) oturum sayısı
+     */
+    public static int loadReportSessions(SQLiteDatabase db, Collection<Long> sessionIds) {
+        resetReportSessions(db);
+        if (sessionIds == null || sessionIds.isEmpty()) return 0;
+
+        Object[] chunk = new Object[REPORT_SESSION_CHUNK];
+        int n = 0;
+        for (Long id : sessionIds) {
+            if (id == null || id <= 0) continue;
+            chunk[n++] = id;
+            if (n == REPORT_SESSION_CHUNK) {
+                db.execSQL(INSERT_REPORT_SESSIONS_SQL, chunk);
+                n = 0;
+            }
+        }
+        if (n > 0) {
+            // Kalan boşlukları ilk id ile doldur; OR IGNORE tekrarı yutar
+            for (int i = n; i < REPORT_SESSION_CHUNK; i++) {
+                chunk[i] = chunk[0];
+            }
+            db.execSQL(INSERT_REPORT_SESSIONS_SQL, chunk);
+        }
+        return countReportSessions(db);
+    }
+
+    /**
+     * Stok raporu için oturum seçimini tarih aralığı ve/veya cihaza göre yükler.
+     * created_at ISO 8601 metin olduğu için sözlük sırası kronolojik sıradır.
+     *
+     * @param from     dahil alt sınır (null ise sınırsız)
+     * @param to       hariç üst sınır (null ise sınırsız)
+     * @param deviceId sadece bu cihazın oturumları (null ise tüm cihazlar)
+     * @return tabloya yüklenen oturum sayısı
+     */
+    public static int loadReportSessions(SQLiteDatabase db,
+                                         @Nullable String from,
+                                         @Nullable String to,
+                                         @Nullable String deviceId) {
+        resetReportSessions(db);
+        db.execSQL(
+                "INSERT OR IGNORE INTO temp.report_sessions (id) " +
+                        "SELECT id FROM scan_sessions " +
+                        "WHERE created_at >= IFNULL(?, '') " +
+                        "AND (? IS NULL OR created_at < ?) " +
+                        "AND (? IS NULL OR device_id = ?)",
+                new Object[]{ from, to, to, deviceId, deviceId }
+        );
+        return countReportSessions(db);
+    }
+
+    /**
+     * temp.report_sessions'taki oturum id'leri, artan sırada (stok raporu önbellek anahtarı).
+     */
+    public static long[] readReportSessionIds(SQLiteDatabase db) {
+        Cursor c = db.rawQuery("SELECT id FROM temp.report_sessions ORDER BY id", null);
+        try {
+            long[] ids = new long[c.getCount()];
+            for (int i = 0; c.moveToNext(); i++) {
+                ids[i] = c.getLong(0);
+            }
+            return ids;
+        } finally {
+            c.close();
+        }
+    }
+
+    private static int countReportSessions(SQLiteDatabase db) {
+        Cursor c = db.rawQuery("SELECT COUNT(*) FROM temp.report_sessions", null);
+        try {
+            return c.moveToFirst() ? c.getInt(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * temp.report_sessions içindeki oturumlardan en az ikisi aynı kodu içeriyor mu?
+     * Ortak kod yoksa oturum bazlı DISTINCT sayıları toplanabilir; varsa rapor
+     * scan_items üzerinden kesin (exact) sayıma dönmelidir.
+     * Sadece küçük session_overlaps tablosuna bakar.
+     */
+    public static boolean reportSessionsShareCodes(SQLiteDatabase db) {
+        Cursor c = db.rawQuery(
+                "SELECT 1 FROM session_overlaps o " +
+                        "JOIN temp.report_sessions a ON a.id = o.session_id " +
+                        "JOIN temp.report_sessions b ON b.id = o.other_session_id " +
+                        "LIMIT 1",
+                null
+        );
+        try {
+            return c.moveToFirst();
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * temp.report_sessions'taki oturumlar için stok raporu cursor'u.
+     * Kolonlar: gtin, brand_name, distinctCount, totalScans (marka adına göre sıralı).
+     * Join gtin_norm INTEGER üzerinden: gruplama oturum index'inden yapılır,
+     * marka adı products_local(gtin_norm) index'inden tek satır aranır.
+     *
+     * @param exact true ise DISTINCT scan_items üzerinden sayılır (oturumlar ortak kod içeriyorsa),
+     *              false ise session_gtin_stats ön-toplamları toplanır. Ön-toplamları kuran veri
+     *              geçişleri bitmediyse her durumda scan_items'tan sayılır.
+     * @param signal iptal edilirse sorgu ve cursor doldurma OperationCanceledException ile durur (null olabilir)
+     */
+    public static Cursor queryStockReport(SQLiteDatabase db, boolean exact, @Nullable CancellationSignal signal) {
+        exact = exact || !sessionAggregatesReady(db);
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT g.gtin, ");
+        sb.append("  (SELECT p.brand_name FROM products_local p ");
+        sb.append("    WHERE p.gtin_norm = g.gtin_norm LIMIT 1) AS brand_name, ");
+        sb.append("  g.distinctCount, g.totalScans ");
+        sb.append("FROM (");
+        String gtinNorm = "s.gtin_norm";
+        if (exact) {
+            gtinNorm = itemGtinNormSql(db, "s");
+            sb.append("  SELECT ").append(gtinNorm).append(" AS gtin_norm, ");
+            sb.append("    MIN(").append(itemGtinSql("s")).append(") AS gtin, ");
+            sb.append("    COUNT(DISTINCT s.code) AS distinctCount, ");
+            sb.append("    COUNT(s.code) AS totalScans ");
+            sb.append("  FROM scan_items s ");
+        } else {
+            sb.append("  SELECT s.gtin_norm, MIN(s.gtin) AS gtin, ");
+            sb.append("    SUM(s.distinct_count) AS distinctCount, ");
+            sb.append("    SUM(s.total_scans) AS totalScans ");
+            sb.append("  FROM session_gtin_stats s ");
+        }
+        sb.append("  WHERE s.session_id IN (SELECT id FROM temp.report_sessions) ");
+        sb.append("  GROUP BY ").append(gtinNorm);
+        sb.append(") g ");
+        sb.append("ORDER BY brand_name IS NULL, brand_name ASC;");
+
+        return db.rawQuery(sb.toString(), null, signal);
+    }
+
+    // ================== SON KULLANMA / GERİ ÇAĞIRMA ==================
+
+    /**
+     * temp.report_sessions'taki oturumlarda son kullanma tarihi verilen sınıra kadar olan kutular.
+     * Oturum başına idx_scan_items_session_expiry üzerinden (session_id = ? AND expiry <= ?) aralığı
+     * taranır; expiry'si olmayan satırlar aralığa hiç girmez.
+     * Kolonlar: gtin, brand_name, lot, expiry (YYAAGG), count (tekil kutu) — SKT'ye göre artan sıralı.
+     *
+     * @param maxExpiry     dahil üst sınır (YYAAGG)
+     * @param excludeExpiry sonuçtan çıkarılacak tek değer: sınır ayın son günü değilse o ayın
+     *                      "YYAA00" (ay sonu) kodu sınırdan küçük görünse de sınırı aşar (-1: yok)
+     */
+    public static Cursor queryExpiringItems(SQLiteDatabase db,
+                                            int maxExpiry,
+                                            int excludeExpiry,
+                                            @Nullable CancellationSignal signal) {
+        return db.rawQuery(
+                "SELECT g.gtin, " +
+                        "  (SELECT p.brand_name FROM products_local p " +
+                        "    WHERE p.gtin_norm = g.gtin_norm LIMIT 1) AS brand_name, " +
+                        "  g.lot, g.expiry, g.cnt " +
+                        "FROM (" +
+                        "  SELECT s.gtin_norm, MIN(" + itemGtinSql("s") + ") AS gtin, s.lot, s.expiry, " +
+                        "    COUNT(DISTINCT s.code) AS cnt " +
+                        // CROSS JOIN: dış döngü report_sessions, iç taraf (session_id, expiry) aralığı
+                        "  FROM temp.report_sessions r CROSS JOIN scan_items s ON s.session_id = r.id " +
+                        "  WHERE s.expiry <= ? AND s.expiry <> ? " +
+                        "  GROUP BY s.gtin_norm, s.lot, s.expiry" +
+                        ") g " +
+                        "ORDER BY g.expiry ASC, brand_name IS NULL, brand_name ASC, g.lot ASC",
+                new String[]{ String.valueOf(maxExpiry), String.valueOf(excludeExpiry) },
+                signal
+        );
+    }
+
+    /**
+     * Geri çağırma araması: verilen GTIN + lot'tan kutu içeren tüm sayımlar.
+     * idx_scan_items_gtin_lot üzerinde tek aralık taraması; oturum sayısından bağımsızdır.
+     * Kolonlar: id, created_at, note, device_id, count (tekil kutu), expiry — yeni oturum önce.
+     */
+    public static Cursor queryRecallSessions(SQLiteDatabase db,
+                                             long gtinNorm,
+                                             String lot,
+                                             @Nullable CancellationSignal signal) {
+        return db.rawQuery(
+                "SELECT ss.id, ss.created_at, ss.note, ss.device_id, g.cnt, g.expiry " +
+                        "FROM (" +
+                        "  SELECT session_id, COUNT(DISTINCT code) AS cnt, MIN(expiry) AS expiry " +
+                        "  FROM scan_items WHERE gtin_norm = ? AND lot = ? " +
+                        "  GROUP BY session_id" +
+                        ") g " +
+                        "JOIN scan_sessions ss ON ss.id = g.session_id " +
+                        "ORDER BY ss.created_at DESC, ss.id DESC",
+                new String[]{ String.valueOf(gtinNorm), lot },
+                signal
+        );
+    }
+
+    // ================== AD ARAMASI (ÜRÜN / PAYDAŞ) ==================
+
+    /**
+     * Kullanıcının yazdığı metinden FTS MATCH ifadesi üretir: her kelime önek araması olarak
+     * ("par 500" → "par* 500*"), hepsi aynı kayıtta geçmeli. Yalnızca harf ve rakamlar kalır;
+     * FTS sorgu sözdizimi (tırnak, AND/OR/NOT, sütun filtresi) kullanıcı metninden gelemez.
+     *
+     * @return aranacak kelime yoksa null
+     */
+    @Nullable
+    static String ftsPrefixQuery(String query) {
+        // FTS tablolarına yazılan adla aynı katlama (FTS_FOLD_SQL); küçük harf: FTS operatörleri büyük harflidir
+        String folded = query.replace('ı', 'i').replace('İ', 'i').toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder();
+        int tokens = 0;
+        for (String token : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(token).append('*');
+            if (++tokens == SEARCH_MAX_TOKENS) break;
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * Ürün adı araması (products_fts). Kolonlar: gtin, brand_name.
+     * BM25 sırasıyla döner (FTS5'te bm25(), FTS4'te matchinfo() ile Fts4Ranking);
+     * eşitlikte kısa ad, sonra ad sırası.
+     *
+     * @param matchQuery ftsPrefixQuery çıktısı
+     */
+    public static Cursor searchProducts(SQLiteDatabase db,
+                                        String matchQuery,
+                                        int limit,
+                                        @Nullable CancellationSignal signal) {
+        String from = "FROM products_fts " +
+                "JOIN products_local p ON p.id = products_fts.rowid " +
+                "WHERE products_fts MATCH ? ";
+        if (!isFts5Table(db, "products_fts")) {
+            return queryFts4Ranked(db,
+                    "SELECT " + fts4MatchInfoSql("products_fts") + ", p.gtin, p.brand_name " + from,
+                    new String[]{ matchQuery },
+                    new String[]{ "gtin", "brand_name" },
+                    1,
+                    limit,
+                    signal);
+        }
+        return db.rawQuery(
+                "SELECT p.gtin, p.brand_name " + from +
+                        "ORDER BY " + fts5RankSql("products_fts", "p.brand_name") + " LIMIT ?",
+                new String[]{ matchQuery, String.valueOf(limit) },
+                signal
+        );
+    }
+
+    /**
+     * Paydaş adı araması (stakeholders_fts), searchProducts ile aynı sıralama.
+     * Kolonlar: STAKEHOLDER_COLUMNS_SQL.
+     *
+     * @param type null değilse yalnızca bu türdeki paydaşlar
+     */
+    public static Cursor searchStakeholders(SQLiteDatabase db,
+                                            String matchQuery,
+                                            @Nullable Long type,
+                                            int limit,
+                                            @Nullable CancellationSignal signal) {
+        String from = "FROM stakeholders_fts " +
+                "JOIN stakeholders s ON s.id = stakeholders_fts.rowid " +
+                "WHERE stakeholders_fts MATCH ? " +
+                (type != null ? "AND s.type = ? " : "");
+        String[] matchArgs = type != null
+                ? new String[]{ matchQuery, String.valueOf(type) }
+                : new String[]{ matchQuery };
+        if (!isFts5Table(db, "stakeholders_fts")) {
+            // STAKEHOLDER_COLUMNS_SQL sırası; ad üçüncü kolon
+            return queryFts4Ranked(db,
+                    "SELECT " + fts4MatchInfoSql("stakeholders_fts") + ", " + STAKEHOLDER_COLUMNS_SQL + " " + from,
+                    matchArgs,
+                    new String[]{ "id", "code", "name", "type", "city", "district", "parent_code" },
+                    2,
+                    limit,
+                    signal);
+        }
+        String[] args = Arrays.copyOf(matchArgs, matchArgs.length + 1);
+        args[matchArgs.length] = String.valueOf(limit);
+        return db.rawQuery(
+                "SELECT " + STAKEHOLDER_COLUMNS_SQL + " " + from +
+                        "ORDER BY " + fts5RankSql("stakeholders_fts", "s.name") + " LIMIT ?",
+                args,
+                signal
+        );
+    }
+
+    /**
+     * Paydaşları code ile bulur: codes[from..from+STAKEHOLDER_LOOKUP_CHUNK) (code, id sırasıyla).
+     * Çağıran from'u STAKEHOLDER_LOOKUP_CHUNK adımlarla ilerletir. Kolonlar: STAKEHOLDER_COLUMNS_SQL.
+     */
+    public static Cursor queryStakeholdersByCode(SQLiteDatabase db,
+                                                 List<Long> codes,
+                                                 int from,
+                                                 @Nullable CancellationSignal signal) {
+        String[] args = new String[STAKEHOLDER_LOOKUP_CHUNK];
+        int to = Math.min(codes.size(), from + STAKEHOLDER_LOOKUP_CHUNK);
+        for (int i = 0; i < STAKEHOLDER_LOOKUP_CHUNK; i++) {
+            // Eksik kalan yerler son code ile doldurulur (IN listesinde tekrar sonucu değiştirmez)
+            args[i] = String.valueOf(codes.get(Math.min(from + i, to - 1)));
+        }
+        return db.rawQuery(LOOKUP_STAKEHOLDERS_SQL, args, signal);
+    }
+
+    private static String buildLookupStakeholdersSql() {
+        StringBuilder sb = new StringBuilder("SELECT ").append(STAKEHOLDER_COLUMNS_SQL)
+                .append(" FROM stakeholders s WHERE s.code IN (");
+        for (int i = 0; i < STAKEHOLDER_LOOKUP_CHUNK; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(") ORDER BY s.code, s.id").toString();
+    }
+
+    /**
+     * Paydaş dizinini akıştaki JSON ile tek transaction'da değiştirir (bkz. StakeholderDirectory).
+     * Hata veya iptalde eski dizin olduğu gibi kalır.
+     *
+     * @param assetVersion yükleme anındaki uygulama paketinin sürümü; META_STAKEHOLDERS_ASSET_VERSION'a
+     *                     aynı transaction'da yazılır (bkz. getStakeholdersAssetVersion)
+     * @return yüklenen kayıt sayısı
+     */
+    public long replaceStakeholders(InputStream in,
+                                    String assetVersion,
+                                    @Nullable CancellationSignal signal) throws IOException {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (BulkInserter ins = new BulkInserter(db, "stakeholders", StakeholderDirectory.COLUMNS, null)) {
+            db.execSQL("DELETE FROM stakeholders");
+            db.execSQL("DELETE FROM stakeholders_fts");
+
+            long rows = StakeholderDirectory.read(in, ins, signal);
+            ins.flush();
+
+            db.execSQL(
+                    "INSERT INTO stakeholders_fts (rowid, name) " +
+                            "SELECT id, " + String.format(FTS_FOLD_SQL, "name") + " FROM stakeholders"
+            );
+            // Toplu yüklemeden kalan index parçalarını birleştirir (sorgu başına okunan parça sayısı düşer)
+            db.execSQL("INSERT INTO stakeholders_fts (stakeholders_fts) VALUES ('optimize')");
+            putMeta(db, META_STAKEHOLDERS_ASSET_VERSION, assetVersion);
+            db.setTransactionSuccessful();
+            return rows;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Paydaş dizini yüklenirken geçerli olan uygulama paketi sürümü; dizin hiç yüklenmediyse null.
+     */
+    @Nullable
+    public String getStakeholdersAssetVersion() {
+        return getMeta(getWritableDatabase(), META_STAKEHOLDERS_ASSET_VERSION);
+    }
+
+    /**
+     * FTS5 ad araması sıralaması: bm25 (küçük olan iyi), eşitlikte kısa ad, sonra ad sırası.
+     */
+    private static String fts5RankSql(String ftsTable, String nameColumn) {
+        return "bm25(" + ftsTable + "), length(" + nameColumn + "), " + nameColumn;
+    }
+
+    private static String fts4MatchInfoSql(String ftsTable) {
+        return "matchinfo(" + ftsTable + ", '" + Fts4Ranking.MATCHINFO_FORMAT + "')";
+    }
+
+    /**
+     * FTS4'te sıralama fonksiyonu olmadığı için eşleşen satırlar Java'da puanlanır: sql'in ilk kolonu
+     * matchinfo, kalanlar sonuç kolonlarıdır. Tüm eşleşmeler okunur ama yalnızca en iyi limit kadar
+     * satır bellekte tutulur (heap); diğerlerinin yalnızca matchinfo ve ad kolonu okunur.
+     * Sıra fts5RankSql ile aynıdır: puan, kısa ad, ad.
+     *
+     * @param columns    dönen cursor'ın kolon adları (sql'de matchinfo'dan sonraki kolonlar)
+     * @param nameColumn columns içinde adın indeksi
+     */
+    private static Cursor queryFts4Ranked(SQLiteDatabase db,
+                                          String sql,
+                                          String[] args,
+                                          String[] columns,
+                                          int nameColumn,
+                                          int limit,
+                                          @Nullable CancellationSignal signal) {
+        // Kötüden iyiye: heap'in başı ilk atılacak satırdır
+        Comparator<RankedRow> worstFirst = Collections.reverseOrder(RankedRow.BEST_FIRST);
+        PriorityQueue<RankedRow> top = new PriorityQueue<>(limit + 1, worstFirst);
+        Cursor c = db.rawQuery(sql, args, signal);
+        try {
+            while (c.moveToNext()) {
+                RankedRow row = new RankedRow(Fts4Ranking.bm25(c.getBlob(0)), c.getString(1 + nameColumn));
+                if (top.size() == limit && worstFirst.compare(row, top.peek()) <= 0) continue;
+
+                row.values = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    row.values[i] = cursorValue(c, 1 + i);
+                }
+                top.add(row);
+                if (top.size() > limit) top.poll();
+            }
+        } finally {
+            c.close();
+        }
+
+        List<RankedRow> rows = new ArrayList<>(top);
+        Collections.sort(rows, RankedRow.BEST_FIRST);
+        MatrixCursor out = new MatrixCursor(columns, rows.size());
+        for (RankedRow row : rows) {
+            out.addRow(row.values);
+        }
+        return out;
+    }
+
+    @Nullable
+    private static Object cursorValue(Cursor c, int i) {
+        switch (c.getType(i)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return c.getLong(i);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return c.getDouble(i);
+            case Cursor.FIELD_TYPE_BLOB:
+                return c.getBlob(i);
+            default:
+                return c.getString(i);
+        }
+    }
+
+    /**
+     * queryFts4Ranked'de puanlanmış bir sonuç satırı.
+     */
+    private static final class RankedRow {
+
+        static final Comparator<RankedRow> BEST_FIRST = (a, b) -> {
+            int cmp = Double.compare(b.score, a.score);
+            if (cmp != 0) return cmp;
+            cmp = Integer.compare(a.name.length(), b.name.length());
+            return cmp != 0 ? cmp : a.name.compareTo(b.name);
+        };
+
+        final double score;
+        final String name;
+        Object[] values;
+
+        RankedRow(double score, @Nullable String name) {
+            this.score = score;
+            this.name = name != null ? name : "";
+        }
+    }
+
+    private static boolean isFts5Table(SQLiteDatabase db, String table) {
+        Boolean fts5 = FTS5_TABLES.get(table);
+        if (fts5 == null) {
+            Cursor c = db.rawQuery(
+                    "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?",
+                    new String[]{ table }
+            );
+            try {
+                fts5 = c.moveToFirst() && c.getString(0).toLowerCase(Locale.ROOT).contains("fts5");
+            } finally {
+                c.close();
+            }
+            FTS5_TABLES.put(table, fts5);
+        }
+        return fts5;
+    }
+
+    // ================== OTURUM FARKI (DIFF) ==================
+
+    /**
+     * İki oturumun tekil kod sayıları ve ortak kod sayısı.
+     * Sayımlar idx_scan_items_session_code ve idx_scan_items_code_session üzerinden yapılır.
+     *
+     * @return { a'daki tekil kod, b'deki tekil kod, ortak tekil kod }
+     */
+    public static long[] querySessionDiffCounts(SQLiteDatabase db,
+                                                long sessionA,
+                                                long sessionB,
+                                                @Nullable CancellationSignal signal) {
+        String a = String.valueOf(sessionA);
+        String b = String.valueOf(sessionB);
+        Cursor c = db.rawQuery(
+                "SELECT " +
+                        "(SELECT COUNT(DISTINCT code) FROM scan_items WHERE session_id = ?), " +
+                        "(SELECT COUNT(DISTINCT code) FROM scan_items WHERE session_id = ?), " +
+                        "(SELECT COUNT(DISTINCT i.code) FROM scan_items i WHERE i.session_id = ? " +
+                        "  AND EXISTS (SELECT 1 FROM scan_items o WHERE o.session_id = ? AND o.code = i.code))",
+                new String[]{ a, b, a, b },
+                signal
+        );
+        try {
+            if (!c.moveToFirst()) return new long[]{ 0, 0, 0 };
+            return new long[]{ c.getLong(0), c.getLong(1), c.getLong(2) };
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * İki oturum arasında tekil kutu sayısı değişen GTIN'ler (session_gtin_stats ön-toplamlarından;
+     * ön-toplam geçişleri bitmediyse iki oturumun scan_items satırlarından).
+     * Kolonlar: gtin, brand_name, countA, countB (farkın büyüklüğüne göre azalan sıralı).
+     */
+    public static Cursor querySessionGtinDeltas(SQLiteDatabase db,
+                                                long sessionA,
+                                                long sessionB,
+                                                @Nullable CancellationSignal signal) {
+        String a = String.valueOf(sessionA);
+        String b = String.valueOf(sessionB);
+        if (!sessionAggregatesReady(db)) {
+            String gtinNorm = itemGtinNormSql(db, "s");
+            return db.rawQuery(
+                    "SELECT g.gtin, " +
+                            "  (SELECT p.brand_name FROM products_local p " +
+                            "    WHERE p.gtin_norm = g.gtin_norm LIMIT 1) AS brand_name, " +
+                            "  g.countA, g.countB " +
+                            "FROM (" +
+                            "  SELECT " + gtinNorm + " AS gtin_norm, MIN(" + itemGtinSql("s") + ") AS gtin, " +
+                            "    COUNT(DISTINCT CASE WHEN s.session_id = ? THEN s.code END) AS countA, " +
+                            "    COUNT(DISTINCT CASE WHEN s.session_id = ? THEN s.code END) AS countB " +
+                            "  FROM scan_items s WHERE s.session_id IN (?, ?) " +
+                            "  GROUP BY " + gtinNorm +
+                            ") g " +
+                            "WHERE g.countA <> g.countB " +
+                            "ORDER BY ABS(g.countB - g.countA) DESC, brand_name IS NULL, brand_name ASC",
+                    new String[]{ a, b, a, b },
+                    signal
+            );
+        }
+        return db.rawQuery(
+                "SELECT g.gtin, " +
+                        "  (SELECT p.brand_name FROM products_local p " +
+                        "    WHERE p.gtin_norm = g.gtin_norm LIMIT 1) AS brand_name, " +
+                        "  g.countA, g.countB " +
+                        "FROM (" +
+                        "  SELECT gtin_norm, MIN(gtin) AS gtin, " +
+                        "    SUM(CASE WHEN session_id = ? THEN distinct_count ELSE 0 END) AS countA, " +
+                        "    SUM(CASE WHEN session_id = ? THEN distinct_count ELSE 0 END) AS countB " +
+                        "  FROM session_gtin_stats WHERE session_id IN (?, ?) " +
+                        "  GROUP BY gtin_norm" +
+                        ") g " +
+                        "WHERE g.countA <> g.countB " +
+                        "ORDER BY ABS(g.countB - g.countA) DESC, brand_name IS NULL, brand_name ASC",
+                new String[]{ a, b, a, b },
+                signal
+        );
+    }
+
+    /**
+     * diffSessions kod listesi için keyset sorgusu. Parametreler:
+     * (listelenen oturum, karşılaştırılan oturum, afterId, limit).
+     * Listelenen oturumda aynı kod birden fazla kez okunduysa yalnız ilk satırı döner.
+     * Kolonlar: id, code, gtin.
+     *
+     * @param inOther true → ortak kodlar, false → karşı oturumda olmayan kodlar
+     */
+    public static String sessionDiffPageSql(boolean inOther) {
+        return "SELECT i.id, " + ScanItemCode.rawSql("i") + ", " + itemGtinSql("i") + " FROM scan_items i " +
+                "WHERE i.session_id = ? " +
+                "AND " + (inOther ? "" : "NOT ") +
+                "EXISTS (SELECT 1 FROM scan_items o WHERE o.session_id = ? AND o.code = i.code) " +
+                "AND NOT EXISTS (SELECT 1 FROM scan_items d " +
+                "  WHERE d.session_id = i.session_id AND d.code = i.code AND d.id < i.id) " +
+                "AND i.id > ? ORDER BY i.id ASC LIMIT ?";
+    }
+
+    /**
+     * Yeni bir sayım oturumu ekler.
+     *
+     * @param createdAt  ISO 8601 tarih-saat (örn: "2025-11-23T14:30:00")
+     * @param note       Kullanıcı notu (şimdilik null/boş geçilebilir)
+     * @param totalCount Toplam kod adedi
+     * @param deviceId   Hangi telefonda kaydedildi
+     * @return insert edilen session id (veya -1 hata)
+     */
+    public long insertSession(String createdAt,
+                              @Nullable String note,
+                              int totalCount,
+                              @Nullable String deviceId) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues cv = new ContentValues();
+        cv.put("created_at", createdAt);
+        cv.put("note", note);
+        cv.put("total_count", totalCount);
+        cv.put("device_id", deviceId);
+        return db.insert("scan_sessions", null, cv);
+    }
+
+    /**
+     * Datamatrix / NDB string'inden GTIN-13 çıkarır.
+     * Senin kuralına göre: "010" + 13 hane = GTIN.
+     * Örnek: 01076134211482632110...  -> 7613421148263
+     */
+    @Nullable
+    public static String extractGtinFromCode(@Nullable String code) {
+        if (code == null) return null;
+        int idx = code.indexOf("010");
+        if (idx < 0) return null;
+        int start = idx + 3;
+        if (code.length() < start + 13) return null;
+        String gtin13 = code.substring(start, start + 13);
+        // Basit kontrol: sadece rakam olsun
+        for (int i = 0; i < gtin13.length(); i++) {
+            char ch = gtin13.charAt(i);
+            if (ch < '0' || ch > '9') return null;
+        }
+        return gtin13;
+    }
+
+    /**
+     * GTIN'i rapor join'inde kullanılan INTEGER forma çevirir (gtin_norm).
+     * Boşluklar kırpılır, sadece rakamlardan oluşuyorsa sayıya çevrilir;
+     * böylece "07613421148263" ile "7613421148263" aynı değere düşer.
+     *
+     * @return normalize GTIN veya çevrilemiyorsa null
+     */
+    @Nullable
+    public static Long normalizeGtin(@Nullable String gtin) {
+        if (gtin == null) return null;
+        String t = gtin.trim();
+        // 18 haneye kadar long'a sığar; GTIN en fazla 14 hane
+        if (t.isEmpty() || t.length() > 18) return null;
+        for (int i = 0; i < t.length(); i++) {
+            char ch = t.charAt(i);
+            if (ch < '0' || ch > '9') return null;
+        }
+        return Long.parseLong(t);
+    }
+
+    /**
+     * scan_items.gtin'e yazılacak değer: gtin_norm'dan birebir geri kurulabiliyorsa null
+     * (itemGtinSql okurken geri kurar).
+     */
+    @Nullable
+    static String storedGtin(@Nullable String gtin, @Nullable Long gtinNorm) {
+        if (gtin != null && gtinNorm != null && gtin.equals(Long.toString(gtinNorm))) return null;
+        return gtin;
+    }
+
+    /**
+     * storedGtin'in okuma karşılığı: verilen takma addaki scan_items satırının GTIN metni.
+     */
+    static String itemGtinSql(String t) {
+        return "IFNULL(" + t + ".gtin, CAST(" + t + ".gtin_norm AS TEXT))";
+    }
+
+    /**
+     * TIMESTAMP_PATTERN biçimli yerel zamanı epoch saniyeye çevirir.
+     *
+     * @return epoch saniye veya çevrilemiyorsa / epoch'tan aynı metin geri kurulamıyorsa null
+     */
+    @Nullable
+    static Long parseTimestamp(@Nullable String text) {
+        if (text == null || text.isEmpty()) return null;
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(TIMESTAMP_PATTERN, Locale.getDefault());
+            Date d = format.parse(text);
+            // Okurken epoch'tan aynı metin geri kurulamıyorsa (fazladan ek, taşan gün/saat) metin saklanmalı
+            if (d == null || !format.format(d).equals(text)) return null;
+            return d.getTime() / 1000;
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * scan_items.scanned_at okuma ifadesi. Yazıcılar zamanı scanned_ts'e yazar ve metni boş bırakır;
+     * okurken TIMESTAMP_PATTERN biçiminde yerel saate çevrilir (parseTimestamp'ın tersi).
+     * Epoch'a çevrilemeyen metinler scanned_at'te kalır ve aynen döner.
+     */
+    static String itemScannedAtSql(String t) {
+        return "CASE WHEN " + t + ".scanned_at <> '' THEN " + t + ".scanned_at " +
+                "ELSE strftime('%Y-%m-%dT%H:%M:%S', " + t + ".scanned_ts, 'unixepoch', 'localtime') END";
+    }
+
+    /**
+     * Easy fiyat metnini kuruşa çevirir: "12,50" / "12.50" → 1250, "1.234,5" → 123450, "15" → 1500.
+     * Son ayraçtan sonra 1-2 hane varsa o ayraç ondalıktır; diğer tüm '.' ve ',' binlik ayracı sayılır
+     * ("1.234" → 123400).
+     *
+     * @return kuruş cinsinden tutar veya çevrilemiyorsa null
+     */
+    @Nullable
+    public static Long parsePriceMinor(@Nullable String price) {
+        if (price == null) return null;
+        String t = price.trim().replace(" ", "");
+        if (t.isEmpty()) return null;
+
+        String whole = t;
+        String fraction = "";
+        int sep = Math.max(t.lastIndexOf('.'), t.lastIndexOf(','));
+        int fractionDigits = t.length() - sep - 1;
+        if (sep >= 0 && fractionDigits >= 1 && fractionDigits <= 2) {
+            whole = t.substring(0, sep);
+            fraction = t.substring(sep + 1);
+        }
+        whole = whole.replace(".", "").replace(",", "");
+        if (whole.isEmpty()) whole = "0";
+
+        // 15 hane kuruşla birlikte long'a rahat sığar
+        if (whole.length() > 15 || !isDigits(whole) || !isDigits(fraction)) return null;
+        while (fraction.length() < 2) fraction += "0";
+        return Long.parseLong(whole) * 100 + Long.parseLong(fraction);
+    }
+
+    /**
+     * Kısmi satış miktarı (ekranda sadece rakam girilir) → sayı; boş veya geçersizse null.
+     */
+    @Nullable
+    public static Long parsePartialAmount(@Nullable String amount) {
+        if (amount == null) return null;
+        String t = amount.trim();
+        if (t.isEmpty() || t.length() > 9 || !isDigits(t)) return null;
+        return Long.parseLong(t);
+    }
+
+    private static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return false;
+        }
+        return true;
+    }
+
+    /**
+     * FAST stok raporu için scan_items tablosuna satır ekler.
+     */
+    public long insertScanItem(long sessionId,
+                               String code,
+                               @Nullable String gtin,
+                               String scannedAt) {
+        SQLiteDatabase db = getWritableDatabase();
+        Long gtinNorm = normalizeGtin(gtin);
+        ScanItemCode item = ScanItemCode.of(code);
+        Long scannedTs = parseTimestamp(scannedAt);
+        db.beginTransaction();
+        try {
+            // Kod bu oturumda ilk kez mi geliyor? (distinct_count için)
+            boolean isNewCode;
+            Cursor c = db.rawQuery(
+                    "SELECT 1 FROM scan_items WHERE session_id = ? AND code = ? LIMIT 1",
+                    new String[]{ String.valueOf(sessionId), item.code }
+            );
+            try {
+                isNewCode = !c.moveToFirst();
+            } finally {
+                c.close();
+            }
+
+            ContentValues cv = new ContentValues();
+            cv.put("session_id", sessionId);
+            cv.put("code", item.code);
+            cv.put("raw", item.raw);
+            cv.put("gtin", storedGtin(gtin, gtinNorm));
+            cv.put("gtin_norm", gtinNorm);
+            cv.put("lot", item.lot);
+            cv.put("expiry", item.expiry);
+            // Tek satırlık yolda zaman oturumunkinden farklı olabilir; metin korunur
+            cv.put("scanned_at", scannedAt);
+            cv.put("scanned_ts", scannedTs != null ? scannedTs : 0);
+            long rowId = db.insert("scan_items", null, cv);
+
+            if (rowId > 0) {
+                bumpSessionGtinStats(db, sessionId, gtinNorm, gtin, isNewCode);
+                if (isNewCode) {
+                    // Bu kod başka oturumlarda da varsa çifti iki yönlü kaydet
+                    db.execSQL(
+                            "INSERT OR IGNORE INTO session_overlaps (session_id, other_session_id) " +
+                                    "SELECT DISTINCT ?, session_id FROM scan_items " +
+                                    "WHERE code = ? AND session_id <> ?",
+                            new Object[]{ sessionId, item.code, sessionId }
+                    );
+                    db.execSQL(
+                            "INSERT OR IGNORE INTO session_overlaps (session_id, other_session_id) " +
+                                    "SELECT DISTINCT session_id, ? FROM scan_items " +
+                                    "WHERE code = ? AND session_id <> ?",
+                            new Object[]{ sessionId, item.code, sessionId }
+                    );
+                }
+            }
+            db.setTransactionSuccessful();
+            return rowId;
+        } finally {
+            db.endTransaction();
+            reportCache.invalidateSessions(Collections.singletonList(sessionId));
+        }
+    }
+
+    /**
+     * Tek satırlık eklemede session_gtin_stats satırını artırır (yoksa oluşturur).
+     */
+    private static void bumpSessionGtinStats(SQLiteDatabase db,
+                                             long sessionId,
+                                             @Nullable Long gtinNorm,
+                                             @Nullable String gtin,
+                                             boolean isNewCode) {
+        int distinctInc = isNewCode ? 1 : 0;
+        SQLiteStatement upd = db.compileStatement(
+                "UPDATE session_gtin_stats " +
+                        "SET distinct_count = distinct_count + ?, total_scans = total_scans + 1 " +
+                        "WHERE session_id = ? AND gtin_norm IS ?"
+        );
+        try {
+            upd.bindLong(1, distinctInc);
+            upd.bindLong(2, sessionId);
+            if (gtinNorm != null) upd.bindLong(3, gtinNorm); else upd.bindNull(3);
+            if (upd.executeUpdateDelete() > 0) return;
+        } finally {
+            upd.close();
+        }
+
+        ContentValues cv = new ContentValues();
+        cv.put("session_id", sessionId);
+        cv.put("gtin_norm", gtinNorm);
+        cv.put("gtin", gtin);
+        cv.put("distinct_count", distinctInc);
+        cv.put("total_scans", 1);
+        db.insert("session_gtin_stats", null, cv);
+    }
+
+    /**
+     * FAST ürün kataloğu satırı ekler/günceller.
+     */
+    public void upsertProductLocal(String gtin, String brandName) {
+        if (gtin == null || gtin.isEmpty()) return;
+        boolean changed;
+        try (ProductWriter writer = new ProductWriter(getWritableDatabase())) {
+            writer.write(gtin, brandName);
+            changed = writer.hasChanges();
+        }
+        if (changed) {
+            reportCache.invalidateCatalog();
+        }
+    }
+
+    /**
+     * products_local yazıcısı (transaction çağırana ait).
+     *
+     * Var olan ürün yerinde güncellenir (id korunur), adı değişmemişse satıra hiç dokunulmaz;
+     * böylece products_fts trigger'ları yalnızca yeni ve adı değişen ürünler için çalışır.
+     * Önceki INSERT OR REPLACE her senkronda tüm katalogu silip ekliyor, index'i de baştan yazdırıyordu.
+     *
+     * hasChanges true ise çağıran, commit'ten sonra reportCache.invalidateCatalog() çağırmalıdır.
+     */
+    static final class ProductWriter implements AutoCloseable {
+
+        private final SQLiteStatement exists;
+        private final SQLiteStatement update;
+        private final SQLiteStatement insert;
+        // Eklenen veya adı değişen ürün sayısı
+        private int changes = 0;
+
+        ProductWriter(SQLiteDatabase db) {
+            exists = db.compileStatement("SELECT COUNT(*) FROM products_local WHERE gtin = ?");
+            update = db.compileStatement(
+                    "UPDATE products_local SET brand_name = ?, gtin_norm = ? " +
+                            "WHERE gtin = ? AND (brand_name <> ? OR gtin_norm IS NOT ?)"
+            );
+            insert = db.compileStatement(
+                    "INSERT INTO products_local (gtin, brand_name, gtin_norm) VALUES (?, ?, ?)"
+            );
+        }
+
+        /**
+         * @return true: ürün yeni eklendi, false: zaten vardı (adı değiştiyse güncellendi)
+         */
+        boolean write(String gtin, String brandName) {
+            Long gtinNorm = normalizeGtin(gtin);
+
+            exists.bindString(1, gtin);
+            boolean found = exists.simpleQueryForLong() > 0;
+            exists.clearBindings();
+
+            if (found) {
+                update.bindString(1, brandName);
+                BulkInserter.bindValue(update, 2, gtinNorm);
+                update.bindString(3, gtin);
+                update.bindString(4, brandName);
+                BulkInserter.bindValue(update, 5, gtinNorm);
+                changes += update.executeUpdateDelete();
+                update.clearBindings();
+                return false;
+            }
+
+            insert.bindString(1, gtin);
+            insert.bindString(2, brandName);
+            BulkInserter.bindValue(insert, 3, gtinNorm);
+            insert.executeInsert();
+            insert.clearBindings();
+            changes++;
+            return true;
+        }
+
+        /**
+         * products_local'da gerçekten değişen (eklenen / adı güncellenen) satır var mı?
+         */
+        boolean hasChanges() {
+            return changes > 0;
+        }
+
+        @Override
+        public void close() {
+            exists.close();
+            update.close();
+            insert.close();
+        }
+    }
+
+    /**
+     * EASY satış başlığını ekler.
+     *
+     * @return insert edilen easy_sales.id (veya -1 hata)
+     */
+    public long insertEasySale(
+            String createdAt,
+            @Nullable String patient,
+            @Nullable String citizenId,
+            @Nullable String prescriptionNumber,
+            @Nullable String note,
+            @Nullable String deviceId
+    ) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues cv = new ContentValues();
+        cv.put("created_at", createdAt);
+        cv.put("patient", patient);
+        cv.put("citizen_id", citizenId);
+        cv.put("prescription_number", prescriptionNumber);
+        cv.put("note", note);
+        cv.put("device_id", deviceId);
+        return db.insert("easy_sales", null, cv);
+    }
+
+    /**
+     * EASY satış kalemlerini ekler.
+     *
+     * Şimdilik sadece barkodları kaydediyoruz; brand/sn/status gibi alanlar
+     * plugin tarafında doldurulabilir.
+     *
+     * @param saleId   easy_sales.id
+     * @param barcodes Satışa ait karekod listesi
+     */
+    public void insertEasySaleItems(long saleId, List<String> barcodes) {
+        if (saleId <= 0 || barcodes == null || barcodes.isEmpty()) return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (BulkInserter ins = new BulkInserter(db, "easy_sale_items", EASY_ITEM_BARCODE_COLUMNS, null)) {
+            for (String code : barcodes) {
+                if (code == null || code.isEmpty()) continue;
+                ins.add(saleId, code, Gs1Code.canonicalize(code));
+            }
+            ins.flush();
+            db.execSQL(
+                    "UPDATE easy_sales SET item_count = item_count + ? WHERE id = ?",
+                    new Object[]{ins.getWrittenRows(), saleId}
+            );
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Bir sayım oturumunu ve ona bağlı tüm barkod kayıtlarını siler.
+     *
+     * @param sessionId silinecek oturumun ID'si
+     * @return silinen session satır sayısı (0 veya 1)
+     */
+    public int deleteSession(long sessionId) {
+        return deleteSessions(Collections.singletonList(sessionId));
+    }
+
+    /**
+     * Oturumları kodları ve ön-toplamlarıyla birlikte tek transaction'da siler.
+     * Boşalan sayfalar reclaimFreePages ile (arka planda) dosyadan atılır.
+     *
+     * @return silinen oturum sayısı
+     */
+    public int deleteSessions(Collection<Long> sessionIds) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            loadReportSessions(db, sessionIds);
+            int deleted = deleteReportSessionRows(db);
+            db.setTransactionSuccessful();
+            return deleted;
+        } finally {
+            db.endTransaction();
+            reportCache.invalidateSessions(sessionIds);
+        }
+    }
+
+    // ================== SAKLAMA POLİTİKASI / ARŞİV ==================
+
+    /**
+     * Saklama politikası: eski oturumları session_archives'a sıkıştırılmış SessionArchive'ler olarak
+     * yazar ve siler.
+     *
+     * Seçim, açılmış gövdesi ARCHIVE_PART_BODY_BYTES'ı aşmayan parçalara bölünür (created_at sırasıyla);
+     * her parça kendi transaction'ında yazılır, SessionArchive.read ile geri okunup doğrulanır ve ancak
+     * ondan sonra silinir. Böylece bellekte en fazla bir parçanın sıkıştırılmış hali tutulur ve
+     * restoreSessionArchive'ın okuyamayacağı bir arşiv karşılığında veri silinmez.
+     * Tek başına MAX_BODY_BYTES'ı aşan oturumlar arşivlenmez, yerinde kalır.
+     *
+     * @param olderThan bu created_at değerinden (ISO 8601, hariç) eski oturumlar; null ise yaş sınırı yok
+     * @param maxItems  kalan kod satırı bu sayıyı aşıyorsa en eski oturumlar da seçilir; 0 veya negatifse sınır yok
+     * @return { yazılan arşiv sayısı, oturum sayısı, kod sayısı, toplam arşiv baytı, arşivlenemeyen oturum sayısı }
+     */
+    public long[] archiveOldSessions(@Nullable String olderThan, long maxItems) throws IOException {
+        SQLiteDatabase db = getWritableDatabase();
+        List<long[]> candidates = new ArrayList<>();
+        db.beginTransaction();
+        try {
+            resetReportSessions(db);
+            if (olderThan != null) {
+                db.execSQL(
+                        "INSERT OR IGNORE INTO temp.report_sessions (id) " +
+                                "SELECT id FROM scan_sessions WHERE created_at < ?",
+                        new Object[]{ olderThan }
+                );
+            }
+            if (maxItems > 0) {
+                selectOldestSessionsOverLimit(db, maxItems);
+            }
+            Cursor c = db.rawQuery(
+                    "SELECT s.id, " + SessionArchive.bodyBytesSql("s") + " FROM scan_sessions s " +
+                            "WHERE s.id IN (SELECT id FROM temp.report_sessions) " +
+                            "ORDER BY s.created_at ASC, s.id ASC",
+                    null
+            );
+            try {
+                while (c.moveToNext()) {
+                    candidates.add(new long[]{ c.getLong(0), c.getLong(1) });
+                }
+            } finally {
+                c.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        long[] total = new long[5];
+        List<Long> part = new ArrayList<>();
+        long partBytes = SessionArchive.MAX_ARCHIVE_OVERHEAD;
+        for (long[] candidate : candidates) {
+            if (SessionArchive.MAX_ARCHIVE_OVERHEAD + candidate[1] > SessionArchive.MAX_BODY_BYTES) {
+                total[4]++;
+                continue;
+            }
+            if (!part.isEmpty() && partBytes + candidate[1] > ARCHIVE_PART_BODY_BYTES) {
+                archiveSessionPart(db, part, total);
+                part.clear();
+                partBytes = SessionArchive.MAX_ARCHIVE_OVERHEAD;
+            }
+            part.add(candidate[0]);
+            partBytes += candidate[1];
+        }
+        if (!part.isEmpty()) {
+            archiveSessionPart(db, part, total);
+        }
+        return total;
+    }
+
+    /**
+     * Oturumları tek arşive yazar, arşivi geri okuyup doğrular ve siler (tek transaction).
+     * Doğrulama tutmazsa IOException atılır ve parça olduğu gibi kalır.
+     *
+     * @param total { arşiv, oturum, kod, bayt } toplamları bu parçanınkilerle artırılır
+     */
+    private void archiveSessionPart(SQLiteDatabase db, List<Long> sessionIds, long[] total) throws IOException {
+        List<Long> archived = new ArrayList<>();
+        db.beginTransaction();
+        try {
+            // Seçimden sonra silinmiş/birleştirilmiş oturumlar düşer
+            if (loadReportSessions(db, sessionIds) == 0) return;
+            db.execSQL("DELETE FROM temp.report_sessions WHERE id NOT IN (SELECT id FROM scan_sessions)");
+            if (countReportSessions(db) == 0) return;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long[] written = SessionArchive.write(db, out, null);
+            byte[] data = out.toByteArray();
+
+            List<SessionArchive.Session> check = SessionArchive.read(new ByteArrayInputStream(data));
+            long checkCodes = 0;
+            for (SessionArchive.Session s : check) {
+                checkCodes += s.codes.length;
+            }
+            if (check.size() != written[0] || checkCodes != written[1]) {
+                throw new IOException("Arşiv doğrulanamadı: " + check.size() + "/" + written[0] +
+                        " oturum, " + checkCodes + "/" + written[1] + " kod");
+            }
+
+            ContentValues cv = new ContentValues();
+            Cursor c = db.rawQuery(
+                    "SELECT MIN(created_at), MAX(created_at) FROM scan_sessions " +
+                            "WHERE id IN (SELECT id FROM temp.report_sessions)",
+                    null
+            );
+            try {
+                c.moveToFirst();
+                cv.put("first_session_at", c.getString(0));
+                cv.put("last_session_at", c.getString(1));
+            } finally {
+                c.close();
+            }
+            cv.put("created_at", new SimpleDateFormat(TIMESTAMP_PATTERN, Locale.getDefault()).format(new Date()));
+            cv.put("session_count", written[0]);
+            cv.put("item_count", written[1]);
+            cv.put("data", data);
+            db.insertOrThrow("session_archives", null, cv);
+
+            for (long id : readReportSessionIds(db)) {
+                archived.add(id);
+            }
+            deleteReportSessionRows(db);
+            db.setTransactionSuccessful();
+
+            total[0]++;
+            total[1] += written[0];
+            total[2] += written[1];
+            total[3] += data.length;
+        } finally {
+            db.endTransaction();
+            reportCache.invalidateSessions(archived);
+        }
+    }
+
+    /**
+     * Seçilmemiş oturumların toplam kod satırı maxItems'ı aşıyorsa, en eskiden başlayarak
+     * sınırın altına inene kadar oturumları temp.report_sessions'a ekler.
+     * Satır sayıları session_gtin_stats ön-toplamlarından okunur (ön-toplam geçişleri bitmediyse
+     * scan_items'tan sayılır).
+     */
+    private static void selectOldestSessionsOverLimit(SQLiteDatabase db, long maxItems) {
+        String rowCount = sessionAggregatesReady(db)
+                ? "(SELECT IFNULL(SUM(g.total_scans), 0) FROM session_gtin_stats g WHERE g.session_id = s.id) "
+                : "(SELECT COUNT(*) FROM scan_items i WHERE i.session_id = s.id) ";
+        Cursor c = db.rawQuery(
+                "SELECT s.id, " + rowCount +
+                        "FROM scan_sessions s " +
+                        "WHERE s.id NOT IN (SELECT id FROM temp.report_sessions) " +
+                        "ORDER BY s.created_at ASC, s.id ASC",
+                null
+        );
+        List<long[]> sessions = new ArrayList<>();
+        long remaining = 0;
+        try {
+            while (c.moveToNext()) {
+                sessions.add(new long[]{ c.getLong(0), c.getLong(1) });
+                remaining += c.getLong(1);
+            }
+        } finally {
+            c.close();
+        }
+
+        for (long[] s : sessions) {
+            if (remaining <= maxItems) break;
+            db.execSQL("INSERT OR IGNORE INTO temp.report_sessions (id) VALUES (?)", new Object[]{ s[0] });
+            remaining -= s[1];
+        }
+    }
+
+    /**
+     * @return silinen arşiv sayısı (0 veya 1)
+     */
+    public int deleteSessionArchive(long archiveId) {
+        return getWritableDatabase().delete("session_archives", "id = ?",
+                new String[]{ String.valueOf(archiveId) });
+    }
+
+    /**
+     * session_archives.data'yı CursorWindow sınırına takılmadan parça parça okur.
+     *
+     * @return arşiv baytları; arşiv yoksa null
+     */
+    @Nullable
+    public static byte[] readSessionArchive(SQLiteDatabase db, long archiveId) {
+        String id = String.valueOf(archiveId);
+        long length;
+        Cursor c = db.rawQuery("SELECT length(data) FROM session_archives WHERE id = ?", new String[]{ id });
+        try {
+            if (!c.moveToFirst()) return null;
+            length = c.getLong(0);
+        } finally {
+            c.close();
+        }
+
+        byte[] data = new byte[(int) length];
+        for (int offset = 0; offset < length; offset += ARCHIVE_READ_CHUNK) {
+            // substr BLOB için 1 tabanlı bayt konumu alır
+            c = db.rawQuery(
+                    "SELECT substr(data, ?, ?) FROM session_archives WHERE id = ?",
+                    new String[]{ String.valueOf(offset + 1), String.valueOf(ARCHIVE_READ_CHUNK), id }
+            );
+            try {
+                if (!c.moveToFirst()) return null;
+                byte[] chunk = c.getBlob(0);
+                System.arraycopy(chunk, 0, data, offset, chunk.length);
+            } finally {
+                c.close();
+            }
+        }
+        return data;
+    }
+
+    // ================== ARKA PLAN VERİ GEÇİŞLERİ ==================
+
+    // Kayıtlı veri geçişleri; data_migrations.name ile eşleşir
+    private static final DataMigration[] DATA_MIGRATIONS = {
+            new GtinNormMigration(),
+            new SessionStatsMigration(),
+            new EasyItemCountsMigration(),
+            new EasyPricesMigration(),
+            new EasyCanonicalCodesMigration(),
+            new CompactScanItemsMigration(),
+            new ProductsFtsMigration()
+    };
+
+    /**
+     * Bir veri geçişinin data_migrations'taki durumu.
+     */
+    static final class DataMigrationStatus {
+        final String name;
+        // Bu id'ye kadar (dahil) işlendi
+        final long lastId;
+        // Geçiş bu id'ye kadar çalışır
+        final long targetId;
+        final boolean done;
+
+        DataMigrationStatus(String name, long lastId, long targetId, boolean done) {
+            this.name = name;
+            this.lastId = lastId;
+            this.targetId = targetId;
+            this.done = done;
+        }
+    }
+
+    @Nullable
+    private static DataMigration findDataMigration(String name) {
+        for (DataMigration m : DATA_MIGRATIONS) {
+            if (m.name.equals(name)) return m;
+        }
+        return null;
+    }
+
+    /**
+     * Veri geçişini kaydeder (onUpgrade'den, şema değişikliğinden sonra çağrılır).
+     * Hedef, şu anki en büyük id'dir; bundan sonra yazılan satırlar zaten yeni biçimdedir.
+     * data_migrations v15'te geldiği için daha eski bir sürümden yükseltirken burada kurulur.
+     */
+    private static void enqueueDataMigration(SQLiteDatabase db, String name) {
+        DataMigration migration = findDataMigration(name);
+        if (migration == null) {
+            throw new IllegalArgumentException("Bilinmeyen veri geçişi: " + name);
+        }
+        createDataMigrationsTable(db);
+        long targetId = queryLong(db, "SELECT IFNULL(MAX(rowid), 0) FROM " + migration.table);
+        db.execSQL(
+                "INSERT OR IGNORE INTO data_migrations (name, last_id, done, target_id) VALUES (?, 0, 0, ?);",
+                new Object[]{ name, targetId }
+        );
+    }
+
+    /**
+     * Bekleyen ilk veri geçişinin bir sonraki parçasını işler: en fazla DataMigration.batchSize()'lık
+     * id aralığı ve kalınan id aynı kısa transaction'da yazılır; uygulama kapanırsa geçiş kaldığı
+     * yerden devam eder. Yazma şeridinde çağrılmalıdır; parçalar arasında sıradaki yazmalar çalışabilir.
+     *
+     * Kodda karşılığı olmayan (eski sürümden kalan) kayıtlar bitmiş sayılır.
+     *
+     * @return işlenen geçişin yeni durumu; bekleyen geçiş yoksa null
+     */
+    @Nullable
+    public DataMigrationStatus runDataMigrationBatch() {
+        SQLiteDatabase db = getWritableDatabase();
+        DataMigration migration = null;
+        DataMigrationStatus status;
+        db.beginTransaction();
+        try {
+            String name = null;
+            long lastId = 0;
+            long targetId = -1;
+            Cursor c = db.rawQuery(
+                    "SELECT name, last_id, target_id FROM data_migrations WHERE done = 0 ORDER BY rowid",
+                    null
+            );
+            try {
+                while (c.moveToNext()) {
+                    name = c.getString(0);
+                    migration = findDataMigration(name);
+                    if (migration != null) {
+                        lastId = c.getLong(1);
+                        targetId = c.isNull(2) ? -1 : c.getLong(2);
+                        break;
+                    }
+                }
+            } finally {
+                c.close();
+            }
+            if (migration == null) {
+                if (name != null) {
+                    db.execSQL("UPDATE data_migrations SET done = 1 WHERE done = 0");
+                    db.setTransactionSuccessful();
+                }
+                return null;
+            }
+
+            // v17 öncesi kaydedilen geçişlerde hedef yoktu
+            if (targetId < 0) {
+                targetId = queryLong(db, "SELECT IFNULL(MAX(rowid), 0) FROM " + migration.table);
+            }
+            long upTo = Math.min(targetId, lastId + migration.batchSize());
+            if (upTo > lastId) {
+                migration.migrateRange(db, lastId, upTo);
+            }
+            upTo = Math.max(upTo, lastId);
+            boolean done = upTo >= targetId;
+            db.execSQL(
+                    "UPDATE data_migrations SET last_id = ?, target_id = ?, done = ? WHERE name = ?",
+                    new Object[]{ upTo, targetId, done ? 1 : 0, name }
+            );
+            db.setTransactionSuccessful();
+            status = new DataMigrationStatus(name, upTo, targetId, done);
+        } finally {
+            db.endTransaction();
+            if (migration != null && migration.changesReports()) {
+                reportCache.invalidateAll();
+            }
+        }
+
+        if (status.done) {
+            migration.onFinished(this);
+        }
+        return status;
+    }
+
+    /**
+     * Geçiş bitmediyse henüz işlenmemiş id aralığı: { last_id, target_id } ((last_id, target_id]).
+     * Okuyucular bu aralıktaki satırları eski biçimde okur. Okuyucu handle'ıyla çağrılabilir.
+     *
+     * @return geçiş kayıtlı değilse veya bittiyse null
+     */
+    @Nullable
+    public static long[] pendingMigrationRange(SQLiteDatabase db, String name) {
+        Cursor c = db.rawQuery(
+                "SELECT last_id, target_id FROM data_migrations WHERE name = ? AND done = 0",
+                new String[]{ name }
+        );
+        try {
+            if (!c.moveToFirst()) return null;
+            return new long[]{ c.getLong(0), c.isNull(1) ? Long.MAX_VALUE : c.getLong(1) };
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * session_gtin_stats / session_overlaps ön-toplamları (ve bağlı oldukları gtin_norm) tüm oturumlar
+     * için kurulu mu? Değilse rapor okuyucuları scan_items'tan sayar.
+     */
+    static boolean sessionAggregatesReady(SQLiteDatabase db) {
+        return pendingMigrationRange(db, MIGRATION_GTIN_NORM) == null
+                && pendingMigrationRange(db, MIGRATION_SESSION_STATS) == null;
+    }
+
+    /**
+     * Verilen takma addaki scan_items satırının gtin_norm'u. gtin_norm geçişi sürerken boş kalan
+     * satırlar gtin metninden aynı kuralla hesaplanır.
+     */
+    private static String itemGtinNormSql(SQLiteDatabase db, String t) {
+        if (pendingMigrationRange(db, MIGRATION_GTIN_NORM) == null) return t + ".gtin_norm";
+        return "IFNULL(" + t + ".gtin_norm, " + String.format(GTIN_NORM_SQL, t + ".gtin") + ")";
+    }
+
+    /**
+     * Verilen takma addaki easy_sales satırının kalem sayısı. easy_item_counts geçişi sürerken
+     * işlenmemiş aralıktaki satışlar kalem tablosundan (sale_id index'i) sayılır.
+     */
+    static String easySaleItemCountSql(SQLiteDatabase db, String t) {
+        long[] pending = pendingMigrationRange(db, MIGRATION_EASY_ITEM_COUNTS);
+        if (pending == null) return t + ".item_count";
+        return "CASE WHEN " + t + ".id > " + pending[0] + " AND " + t + ".id <= " + pending[1] + " " +
+                "THEN (SELECT COUNT(*) FROM easy_sale_items i WHERE i.sale_id = " + t + ".id) " +
+                "ELSE " + t + ".item_count END";
+    }
+
+    /**
+     * Tüm kayıtlı veri geçişlerinin durumu (kayıt sırasıyla). Okuyucu handle'ıyla çağrılabilir.
+     */
+    public static List<DataMigrationStatus> queryDataMigrations(SQLiteDatabase db) {
+        List<DataMigrationStatus> list = new ArrayList<>();
+        Cursor c = db.rawQuery(
+                "SELECT name, last_id, target_id, done FROM data_migrations ORDER BY rowid",
+                null
+        );
+        try {
+            while (c.moveToNext()) {
+                long lastId = c.getLong(1);
+                list.add(new DataMigrationStatus(
+                        c.getString(0),
+                        lastId,
+                        c.isNull(2) ? lastId : c.getLong(2),
+                        c.getInt(3) != 0
+                ));
+            }
+        } finally {
+            c.close();
+        }
+        return list;
+    }
+
+    /**
+     * v7 öncesi scan_items satırlarının gtin_norm'unu gtin metninden doldurur (normalizeGtin ile aynı
+     * kural: yalnızca rakamlardan oluşan gtin INTEGER'a çevrilir, baştaki 0'lar düşer).
+     */
+    private static final class GtinNormMigration extends DataMigration {
+
+        GtinNormMigration() {
+            super(MIGRATION_GTIN_NORM, "scan_items");
+        }
+
+        @Override
+        void migrateRange(SQLiteDatabase db, long afterId, long upToId) {
+            db.execSQL(
+                    "UPDATE scan_items SET gtin_norm = " + String.format(GTIN_NORM_SQL, "gtin") + " " +
+                            "WHERE id > ? AND id <= ? AND gtin_norm IS NULL AND gtin IS NOT NULL",
+                    new Object[]{ afterId, upToId }
+            );
+        }
+    }
+
+    /**
+     * v8 öncesi oturumların session_gtin_stats / session_overlaps satırlarını kurar. Tek dev GROUP BY ve
+     * self-join yerine oturum oturum rebuildSessionAggregates; gtin_norm geçişinden sonra çalışır
+     * (kayıt sırası). Bitene kadar rapor okuyucuları scan_items'tan sayar (sessionAggregatesReady).
+     */
+    private static final class SessionStatsMigration extends DataMigration {
+
+        SessionStatsMigration() {
+            super(MIGRATION_SESSION_STATS, "scan_sessions");
+        }
+
+        @Override
+        void migrateRange(SQLiteDatabase db, long afterId, long upToId) {
+            Cursor c = db.rawQuery(
+                    "SELECT id FROM scan_sessions WHERE id > ? AND id <= ?",
+                    new String[]{ String.valueOf(afterId), String.valueOf(upToId) }
+            );
+            List<Long> sessionIds = new ArrayList<>();
+            try {
+                while (c.moveToNext()) {
+                    sessionIds.add(c.getLong(0));
+                }
+            } finally {
+                c.close();
+            }
+            for (long sessionId : sessionIds) {
+                rebuildSessionAggregates(db, sessionId);
+            }
+        }
+
+        @Override
+        int batchSize() {
+            return SESSION_STATS_BATCH_SIZE;
+        }
+
+        @Override
+        boolean changesReports() {
+            return true;
+        }
+    }
+
+    /**
+     * v11 öncesi satışların item_count'unu kalemlerden sayar. Bitene kadar getEasySales aralıktaki
+     * satışları kalem tablosundan sayar (easySaleItemCountSql).
+     */
+    private static final class EasyItemCountsMigration extends DataMigration {
+
+        EasyItemCountsMigration() {
+            super(MIGRATION_EASY_ITEM_COUNTS, "easy_sales");
+        }
+
+        @Override
+        void migrateRange(SQLiteDatabase db, long afterId, long upToId) {
+            db.execSQL(
+                    "UPDATE easy_sales SET item_count = " +
+                            "(SELECT COUNT(*) FROM easy_sale_items i WHERE i.sale_id = easy_sales.id) " +
+                            "WHERE id > ? AND id <= ?",
+                    new Object[]{ afterId, upToId }
+            );
+        }
+    }
+
+    /**
+     * v12 öncesi kalemlerin unit_price_minor / partial_amount_num kolonlarını TEXT alanlardan doldurur.
+     * Fiyat biçimi serbest metin olduğu için ayrıştırma SQL'de değil parsePriceMinor() ile yapılır.
+     */
+    private static final class EasyPricesMigration extends DataMigration {
+
+        EasyPricesMigration() {
+            super(MIGRATION_EASY_PRICES, "easy_sale_items");
+        }
+
+        @Override
+        void migrateRange(SQLiteDatabase db, long afterId, long upToId) {
+            SQLiteStatement update = db.compileStatement(
+                    "UPDATE easy_sale_items SET unit_price_minor = ?, partial_amount_num = ? WHERE id = ?"
+            );
+            Cursor c = db.rawQuery(
+                    "SELECT id, unit_price, partial_amount FROM easy_sale_items " +
+                            "WHERE id > ? AND id <= ? " +
+                            "AND unit_price_minor IS NULL AND partial_amount_num IS NULL " +
+                            "AND (unit_price IS NOT NULL OR partial_amount IS NOT NULL)",
+                    new String[]{ String.valueOf(afterId), String.valueOf(upToId) }
+            );
+            try {
+                while (c.moveToNext()) {
+                    Long price = parsePriceMinor(c.isNull(1) ? null : c.getString(1));
+                    Long partial = parsePartialAmount(c.isNull(2) ? null : c.getString(2));
+                    if (price == null && partial == null) continue;
+
+                    BulkInserter.bindValue(update, 1, price);
+                    BulkInserter.bindValue(update, 2, partial);
+                    update.bindLong(3, c.getLong(0));
+                    update.executeUpdateDelete();
+                    update.clearBindings();
+                }
+            } finally {
+                c.close();
+                update.close();
+            }
+        }
+    }
+
+    /**
+     * v13 öncesi kalemlerin code_canonical kolonunu barcode'dan doldurur (GS1 ayrıştırma Java'da).
+     */
+    private static final class EasyCanonicalCodesMigration extends DataMigration {
+
+        EasyCanonicalCodesMigration() {
+            super(MIGRATION_EASY_CANONICAL_CODES, "easy_sale_items");
+        }
+
+        @Override
+        void migrateRange(SQLiteDatabase db, long afterId, long upToId) {
+            SQLiteStatement update = db.compileStatement(
+                    "UPDATE easy_sale_items SET code_canonical = ? WHERE id = ?"
+            );
+            Cursor c = db.rawQuery(
+                    "SELECT id, barcode FROM easy_sale_items " +
+                            "WHERE id > ? AND id <= ? AND code_canonical IS NULL",
+                    new String[]{ String.valueOf(afterId), String.valueOf(upToId) }
+            );
+            try {
+                while (c.moveToNext()) {
+                    String canonical = Gs1Code.canonicalize(c.getString(1));
+                    if (canonical == null) continue;
+
+                    update.bindString(1, canonical);
+                    update.bindLong(2, c.getLong(0));
+                    update.executeUpdateDelete();
+                    update.clearBindings();
+                }
+            } finally {
+                c.close();
+                update.close();
+            }
+        }
+    }
+
+    /**
+     * v18 öncesi katalogu products_fts'e yükler. Aralık önce temizlenir: trigger'lar bu arada
+     * silinen bir ürünün id'sini yeniden kullanan satırı zaten index'lemiş olabilir.
+     */
+    private static final class ProductsFtsMigration extends DataMigration {
+
+        ProductsFtsMigration() {
+            super(MIGRATION_PRODUCTS_FTS, "products_local");
+        }
+
+        @Override
+        void migrateRange(SQLiteDatabase db, long afterId, long upToId) {
+            Object[] range = { afterId, upToId };
+            db.execSQL("DELETE FROM products_fts WHERE rowid > ? AND rowid <= ?", range);
+            db.execSQL(
+                    "INSERT INTO products_fts (rowid, name) " +
+                            "SELECT p.id, " + String.format(FTS_FOLD_SQL, "p.brand_name") + " " +
+                            "FROM products_local p WHERE p.id > ? AND p.id <= ?",
+                    range
+            );
+        }
+    }
+
+    // ================== KOMPAKT KOD DÜZENİNE GEÇİŞ (v15) ==================
+
+    /**
+     * v15 öncesi scan_items satırlarını kompakt düzene çevirir (ScanItemCode, storedGtin, scanned_ts).
+     * Yeni yazılan satırlar zaten kompakt olduğu için (scanned_ts dolu) atlanır.
+     *
+     * Kimlik kanonik koda döndüğü için aynı kutunun farklı okunuşları artık aynı koddur: çevrilen kod
+     * başka bir okunuşla çakışıyorsa ilgili oturumların ön-toplamları aynı transaction'da yeniden
+     * hesaplanır. Geçiş bittiğinde geçmiş filtresi sıfırlanır.
+     *
+     * Satırlar yerinde kısaldığı için sayfalar boşalmaz; dosya geçiş sonunda bir kez VACUUM ile küçülür.
+     */
+    private static final class CompactScanItemsMigration extends DataMigration {
+
+        CompactScanItemsMigration() {
+            super(MIGRATION_COMPACT_SCAN_ITEMS, "scan_items");
+        }
+
+        @Override
+        void migrateRange(SQLiteDatabase db, long afterId, long upToId) {
+            compactScanItemRange(db, afterId, upToId);
+        }
+
+        @Override
+        void onFinished(ScanDatabaseHelper dbHelper) {
+            // Filtrede eski (ham) okunuşlar var; bir sonraki taramada kanonik kodlarla yeniden kurulur
+            ScanHistoryFilter.getInstance().invalidate();
+        }
+
+        @Override
+        boolean changesReports() {
+            // Çakışan okunuşlar birleşince ön-toplamlar yeniden kurulur
+            return true;
+        }
+
+        @Override
+        boolean vacuumWhenDone() {
+            return true;
+        }
+    }
+
+    private static void compactScanItemRange(SQLiteDatabase db, long afterId, long upToId) {
+        compactScanItems(db, "id > ? AND id <= ?",
+                new String[]{ String.valueOf(afterId), String.valueOf(upToId) });
+    }
+
+    /**
+     * where'e uyan, henüz çevrilmemiş (scanned_ts IS NULL) scan_items satırlarını kompakt biçime
+     * çevirir; çakışan okunuşların oturumlarında ön-toplamlar yeniden kurulur (transaction çağırana ait).
+     *
+     * @return ön-toplamı yeniden kurulan oturumlar
+     */
+    private static Set<Long> compactScanItems(SQLiteDatabase db, String where, @Nullable String[] args) {
+        Set<Long> affectedSessions = new HashSet<>();
+        SQLiteStatement update = db.compileStatement(
+                "UPDATE scan_items SET code = ?, raw = ?, lot = ?, expiry = ?, gtin = ?, " +
+                        "scanned_at = ?, scanned_ts = ? WHERE id = ?"
+        );
+        Cursor c = db.rawQuery(
+                "SELECT id, session_id, code, gtin, gtin_norm, scanned_at FROM scan_items " +
+                        "WHERE " + where + " AND scanned_ts IS NULL",
+                args
+        );
+        try {
+            String lastText = null;
+            Long lastTs = null;
+            while (c.moveToNext()) {
+                long id = c.getLong(0);
+                long sessionId = c.getLong(1);
+                String scanned = c.getString(2);
+                Long gtinNorm = c.isNull(4) ? null : c.getLong(4);
+                String scannedAt = c.getString(5);
+                // Oturumun satırları aynı zamanı taşır
+                if (!scannedAt.equals(lastText)) {
+                    lastText = scannedAt;
+                    lastTs = parseTimestamp(scannedAt);
+                }
+
+                ScanItemCode item = ScanItemCode.of(scanned);
+                BulkInserter.bindValue(update, 1, item.code);
+                BulkInserter.bindValue(update, 2, item.raw);
+                BulkInserter.bindValue(update, 3, item.lot);
+                BulkInserter.bindValue(update, 4, item.expiry);
+                BulkInserter.bindValue(update, 5, storedGtin(c.getString(3), gtinNorm));
+                // Çevrilemeyen zaman metni korunur; scanned_ts = 0 satırı işlenmiş olarak işaretler
+                BulkInserter.bindValue(update, 6, lastTs != null ? "" : scannedAt);
+                BulkInserter.bindValue(update, 7, lastTs != null ? lastTs : 0L);
+                update.bindLong(8, id);
+                update.executeUpdateDelete();
+                update.clearBindings();
+
+                if (!item.code.equals(scanned)) {
+                    collectCodeCollisions(db, id, sessionId, item.code, affectedSessions);
+                }
+            }
+        } finally {
+            c.close();
+            update.close();
+        }
+
+        for (long sessionId : affectedSessions) {
+            rebuildSessionAggregates(db, sessionId);
+        }
+        return affectedSessions;
+    }
+
+    /**
+     * Kodu değişen satırın yeni kodunu taşıyan başka satır varsa (ön-toplamlarda ve
+     * session_overlaps'ta bu kutu iki ayrı kod sayılmıştı) satırın ve o kodu taşıyan tüm
+     * oturumları ekler. Okunuş metnine bakılmaz: aynı metinden yeni kodla kaydedilmiş bir oturum
+     * da eski satırın oturumuyla ortak kod paylaşır hale gelmiştir.
+     * Henüz çevrilmemiş okunuşlar kendi sıraları geldiğinde yakalanır.
+     */
+    private static void collectCodeCollisions(SQLiteDatabase db,
+                                              long id,
+                                              long sessionId,
+                                              String code,
+                                              Set<Long> out) {
+        Cursor c = db.rawQuery(
+                "SELECT DISTINCT o.session_id FROM scan_items o WHERE o.code = ? AND o.id <> ?",
+                new String[]{ code, String.valueOf(id) }
+        );
+        try {
+            while (c.moveToNext()) {
+                out.add(sessionId);
+                out.add(c.getLong(0));
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    // ================== DOSYA BOYUTU (INCREMENTAL VACUUM) ==================
+
+    /**
+     * Silmelerden boşalan sayfaları dosyadan atar (auto_vacuum = INCREMENTAL).
+     *
+     * Tam yeniden yazım (VACUUM) iki durumda gerekir: v14 öncesi kurulum hâlâ auto_vacuum = NONE ise
+     * (ayar ancak VACUUM ile uygulanır) ve satırları yerinde küçülten bir veri geçişi bittiyse
+     * (DataMigration.vacuumWhenDone). İkisi tek VACUUM'da yapılır ve bekleyen veri geçişleri bitene kadar
+     * ertelenir; geçişler sürerken yalnızca incremental adımlar çalışır. VACUUM'a katılan geçişler
+     * data_migrations'ta done = 2 olur.
+     * Diğer çağrılar yazma şeridini uzun tutmamak için VACUUM_PAGES_PER_STEP'lik kısa
+     * transaction'larla ilerler. Yazma şeridinde, arka planda çağrılmalıdır.
+     *
+     * @return dosyadan atılan sayfa sayısı
+     */
+    public long reclaimFreePages() {
+        SQLiteDatabase db = getWritableDatabase();
+        boolean incremental = queryLong(db, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL;
+        if ((!incremental || finishedMigrationsNeedVacuum(db))
+                && queryLong(db, "SELECT COUNT(*) FROM data_migrations WHERE done = 0") == 0) {
+            long before = queryLong(db, "PRAGMA page_count");
+            // auto_vacuum değişikliği ancak VACUUM ile uygulanır; execSQL ikisini de yazıcı bağlantıda çalıştırır
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            db.execSQL("UPDATE data_migrations SET done = 2 WHERE done = 1");
+            return Math.max(0, before - queryLong(db, "PRAGMA page_count"));
+        }
+        // auto_vacuum = NONE iken incremental_vacuum bir şey yapmaz
+        if (!incremental) return 0;
+
+        long free = queryLong(db, "PRAGMA freelist_count");
+        if (free < VACUUM_MIN_FREE_PAGES) return 0;
+
+        long reclaimed = 0;
+        while (reclaimed < free) {
+            int step = (int) Math.min(VACUUM_PAGES_PER_STEP, free - reclaimed);
+            // Transaction içinde rawQuery yazıcı bağlantıda çalışır; cursor sonuna kadar
+            // okunmazsa PRAGMA yalnızca ilk adımı çalıştırır
+            db.beginTransaction();
+            try {
+                Cursor c = db.rawQuery("PRAGMA incremental_vacuum(" + step + ")", null);
+                try {
+                    while (c.moveToNext()) {
+                        // sonuç satırı yok
+                    }
+                } finally {
+                    c.close();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            reclaimed += step;
+        }
+        checkpointIfNeeded();
+        return reclaimed;
+    }
+
+    /**
+     * Bitmiş (done = 1) ve henüz VACUUM'a katılmamış geçişlerden biri dosyanın yeniden yazılmasını istiyor mu?
+     */
+    private static boolean finishedMigrationsNeedVacuum(SQLiteDatabase db) {
+        Cursor c = db.rawQuery("SELECT name FROM data_migrations WHERE done = 1", null);
+        try {
+            while (c.moveToNext()) {
+                DataMigration migration = findDataMigration(c.getString(0));
+                if (migration != null && migration.vacuumWhenDone()) return true;
+            }
+            return false;
+        } finally {
+            c.close();
+        }
+    }
+
+    private static long queryLong(SQLiteDatabase db, String sql) {
+        Cursor c = db.rawQuery(sql, null);
+        try {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Birden çok sayım oturumunu tek bir yeni oturumda birleştirir (tek transaction).
+     *
+     * Kodlar SQL tarafında tekilleşir: kaynak oturumlardaki her kod yeni oturuma bir kez yazılır
+     * (kod başına en küçük id'li satır; aynı kutunun farklı okunuşları tek satır olur). Oturum seçimi temp.report_sessions üzerinden okunur, sorgu
+     * kaynak oturumların idx_scan_items_session_code girişlerinden beslenir.
+     * Yeni oturumun device_id'si kaynakların hepsi aynı cihazdansa o cihaz, değilse null olur.
+     *
+     * @param retireSources true ise kaynak oturumlar (kodları ve ön-toplamlarıyla) aynı transaction'da silinir
+     * @return { yeni oturum id, yazılan tekil kod sayısı, birleştirilen oturum sayısı };
+     *         kaynak oturumlardan hiçbiri bulunamazsa null
+     */
+    @Nullable
+    public long[] mergeSessions(Collection<Long> sessionIds,
+                                @Nullable String note,
+                                String createdAt,
+                                boolean retireSources) {
+        SQLiteDatabase db = getWritableDatabase();
+        List<Long> changed = new ArrayList<>();
+        db.beginTransaction();
+        try {
+            // Temp tablo bağlantıya özeldir; transaction boyunca aynı bağlantı kullanılır
+            loadReportSessions(db, sessionIds);
+            db.execSQL("DELETE FROM temp.report_sessions WHERE id NOT IN (SELECT id FROM scan_sessions)");
+
+            long sourceCount;
+            String deviceId;
+            Cursor c = db.rawQuery(
+                    "SELECT COUNT(*), COUNT(DISTINCT device_id), MIN(device_id) FROM scan_sessions " +
+                            "WHERE id IN (SELECT id FROM temp.report_sessions)",
+                    null
+            );
+            try {
+                c.moveToFirst();
+                sourceCount = c.getLong(0);
+                deviceId = c.getLong(1) == 1 ? c.getString(2) : null;
+            } finally {
+                c.close();
+            }
+            if (sourceCount == 0) return null;
+
+            // v15 sıkıştırma geçişi sürüyorsa kaynaklarda ham metni code'da duran satırlar olabilir.
+            // Kopyalanan satırlar geçişin hedef id'sinden sonra yazılacağı için bir daha çevrilmez;
+            // bu yüzden kaynak satırlar önce burada (geçişin yaptığı gibi yerinde) çevrilir.
+            if (pendingMigrationRange(db, MIGRATION_COMPACT_SCAN_ITEMS) != null) {
+                changed.addAll(compactScanItems(db, "session_id IN (SELECT id FROM temp.report_sessions)", null));
+            }
+
+            ContentValues cv = new ContentValues();
+            cv.put("created_at", createdAt);
+            cv.put("note", note);
+            cv.put("total_count", 0);
+            cv.put("device_id", deviceId);
+            long mergedId = db.insertOrThrow("scan_sessions", null, cv);
+            changed.add(mergedId);
+
+            // scanned_ts: insertItems gibi tüm satırlar oturumun kayıt zamanını taşır.
+            // Her kod bir kez yazılır: aynı kutunun farklı okunuşları (raw) tek satıra iner.
+            // Yeni satırlar gtin_norm geçişinin hedefinden sonra geldiği için gtin_norm burada hesaplanır.
+            Long createdTs = parseTimestamp(createdAt);
+            db.execSQL(
+                    "INSERT INTO scan_items " +
+                            "(session_id, code, raw, gtin, gtin_norm, lot, expiry, scanned_at, scanned_ts) " +
+                            "SELECT ?, s.code, s.raw, s.gtin, " + itemGtinNormSql(db, "s") + ", s.lot, s.expiry, ?, ? " +
+                            "FROM scan_items s WHERE s.id IN (" +
+                            "  SELECT MIN(i.id) FROM temp.report_sessions r " +
+                            "  CROSS JOIN scan_items i ON i.session_id = r.id " +
+                            "  WHERE i.code IS NOT NULL GROUP BY i.code)",
+                    new Object[]{ mergedId, createdTs != null ? "" : createdAt, createdTs != null ? createdTs : 0 }
+            );
+
+            long totalCount;
+            c = db.rawQuery(
+                    "SELECT COUNT(*) FROM scan_items WHERE session_id = ?",
+                    new String[]{ String.valueOf(mergedId) }
+            );
+            try {
+                totalCount = c.moveToFirst() ? c.getLong(0) : 0;
+            } finally {
+                c.close();
+            }
+            db.execSQL(
+                    "UPDATE scan_sessions SET total_count = ? WHERE id = ?",
+                    new Object[]{ totalCount, mergedId }
+            );
+
+            if (retireSources) {
+                changed.addAll(sessionIds);
+                deleteReportSessionRows(db);
+            }
+            // Kaynaklar silindiyse session_overlaps artık yalnız kalan oturumlarla kurulur
+            rebuildSessionAggregates(db, mergedId);
+
+            db.setTransactionSuccessful();
+            return new long[]{ mergedId, totalCount, sourceCount };
+        } finally {
+            db.endTransaction();
+            reportCache.invalidateSessions(changed);
+        }
+    }
+
+    /**
+     * Başka cihazdan gelen SessionArchive oturumlarını tek transaction'da içe aktarır.
+     *
+     * Her kaynak oturum için kendi created_at / note / device_id değerleriyle yeni bir oturum açılır.
+     * Kodlar önce temp.import_items'a toplu yazılır, sonra tek INSERT ... SELECT ile scan_items'a
+     * aktarılır: aynı cihazın (device_id) herhangi bir oturumunda zaten bulunan kodlar atlanır
+     * (code + device tekilleştirmesi, idx_scan_items_code_session). Böylece aynı dosya iki kez
+     * içe aktarılırsa ikinci seferde hiçbir şey yazılmaz. Yeni kodu kalmayan oturum oluşturulmaz.
+     *
+     * @return { oluşturulan oturum sayısı, yazılan kod sayısı, atlanan kod sayısı }
+     */
+    public long[] importSessions(List<SessionArchive.Session> sessions) {
+        SQLiteDatabase db = getWritableDatabase();
+        long created = 0;
+        long written = 0;
+        long skipped = 0;
+        // Yeni oturum id'leri de geçersiz kılınır: var olmayan id içeren bir seçim önbellekte olabilir
+        List<Long> createdIds = new ArrayList<>();
+
+        db.beginTransaction();
+        try {
+            db.execSQL(
+                    "CREATE TEMP TABLE IF NOT EXISTS import_items (" +
+                            "code TEXT NOT NULL, raw TEXT, gtin TEXT, gtin_norm INTEGER, lot TEXT, expiry INTEGER);"
+            );
+
+            for (SessionArchive.Session s : sessions) {
+                db.execSQL("DELETE FROM temp.import_items;");
+                try (BulkInserter ins = new BulkInserter(db, "temp.import_items", IMPORT_ITEM_COLUMNS, null)) {
+                    for (int i = 0; i < s.codes.length; i++) {
+                        ScanItemCode item = ScanItemCode.of(s.codes[i]);
+                        Long gtinNorm = normalizeGtin(s.gtins[i]);
+                        ins.add(item.code, item.raw, storedGtin(s.gtins[i], gtinNorm), gtinNorm,
+                                item.lot, item.expiry);
+                    }
+                    ins.flush();
+                }
 
                 ContentValues cv = new ContentValues();
-                cv.put("session_id", sessionId);
-                cv.put("code", code);
-                cv.put("gtin", gtin);
-                cv.put("scanned_at", createdAt);
+                cv.put("created_at", s.createdAt);
+                cv.put("note", s.note);
+                cv.put("total_count", 0);
+                cv.put("device_id", s.deviceId);
+                long sessionId = db.insertOrThrow("scan_sessions", null, cv);
+
+                // scanned_ts: insertItems gibi tüm satırlar oturumun kayıt zamanını taşır.
+                // Her kod bir kez yazılır: aynı kutunun farklı okunuşları (raw) tek satıra iner.
+                Long createdTs = parseTimestamp(s.createdAt);
+                db.execSQL(
+                        "INSERT INTO scan_items " +
+                                "(session_id, code, raw, gtin, gtin_norm, lot, expiry, scanned_at, scanned_ts) " +
+                                "SELECT ?, t.code, t.raw, t.gtin, t.gtin_norm, t.lot, t.expiry, ?, ? " +
+                                "FROM temp.import_items t " +
+                                "WHERE t.rowid IN (SELECT MIN(rowid) FROM temp.import_items GROUP BY code) " +
+                                "AND NOT EXISTS (SELECT 1 FROM scan_items i " +
+                                "  JOIN scan_sessions o ON o.id = i.session_id " +
+                                "  WHERE i.code = t.code AND o.device_id IS ?)",
+                        new Object[]{ sessionId, createdTs != null ? "" : s.createdAt,
+                                createdTs != null ? createdTs : 0, s.deviceId }
+                );
+
+                long count;
+                Cursor c = db.rawQuery(
+                        "SELECT COUNT(*) FROM scan_items WHERE session_id = ?",
+                        new String[]{ String.valueOf(sessionId) }
+                );
+                try {
+                    count = c.moveToFirst() ? c.getLong(0) : 0;
+                } finally {
+                    c.close();
+                }
+
+                skipped += s.codes.length - count;
+                if (count == 0) {
+                    db.delete("scan_sessions", "id = ?", new String[]{ String.valueOf(sessionId) });
+                    continue;
+                }
+                db.execSQL(
+                        "UPDATE scan_sessions SET total_count = ? WHERE id = ?",
+                        new Object[]{ count, sessionId }
+                );
+                rebuildSessionAggregates(db, sessionId);
+                createdIds.add(sessionId);
+                created++;
+                written += count;
+            }
+
+            db.execSQL("DELETE FROM temp.import_items;");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            reportCache.invalidateSessions(createdIds);
+        }
+        return new long[]{ created, written, skipped };
+    }
+
+    /**
+     * temp.report_sessions'taki oturumları kodları ve ön-toplamlarıyla birlikte siler
+     * (transaction çağırana ait).
+     *
+     * @return silinen oturum sayısı
+     */
+    private static int deleteReportSessionRows(SQLiteDatabase db) {
+        String selected = "IN (SELECT id FROM temp.report_sessions)";
+        db.execSQL("DELETE FROM scan_items WHERE session_id " + selected);
+        db.execSQL("DELETE FROM session_gtin_stats WHERE session_id " + selected);
+        db.execSQL("DELETE FROM session_overlaps WHERE session_id " + selected +
+                " OR other_session_id " + selected);
+        return db.delete("scan_sessions", "id " + selected, null);
+    }
+
+    // ================== OKUMA HAVUZU / CHECKPOINT ==================
+
+    /**
+     * Okuma havuzundan salt-okunur, tek bağlantılı bir handle alır.
+     *
+     * WAL sayesinde yazıcı bağlantı ile eşzamanlı çalışır. Handle releaseReader ile iade edilene
+     * kadar başka çağrıya verilmez; temp.report_sessions doldurma + rapor sorgusu aynı handle'da yapılmalıdır.
+     * Havuz doluysa bir handle iade edilene kadar bekler.
+     */
+    public SQLiteDatabase acquireReader() {
+        SQLiteDatabase reader = idleReaders.poll();
+        if (reader != null) return reader;
+
+        String path = null;
+        synchronized (this) {
+            if (openedReaders < READER_POOL_SIZE) {
+                // Şema (onCreate/onUpgrade) yazıcı bağlantı açılırken hazırlanır
+                path = getWritableDatabase().getPath();
+                openedReaders++;
+            }
+        }
+
+        if (path != null) {
+            try {
+                return SQLiteDatabase.openDatabase(
+                        path,
+                        null,
+                        SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS
+                );
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    openedReaders--;
+                }
+                throw e;
+            }
+        }
 
-                db.insert("scan_items", null, cv);
+        try {
+            return idleReaders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Okuma bağlantısı beklenirken kesildi", e);
+        }
+    }
+
+    /**
+     * acquireReader ile alınan handle'ı havuza iade eder (null güvenli).
+     */
+    public void releaseReader(@Nullable SQLiteDatabase reader) {
+        if (reader == null) return;
+        if (!reader.isOpen() || !idleReaders.offer(reader)) {
+            reader.close();
+            synchronized (this) {
+                openedReaders--;
+            }
+        }
+    }
+
+    /**
+     * WAL dosyası journal_size_limit'i aştıysa TRUNCATE checkpoint yapar.
+     *
+     * Büyük yazımlardan (ürün import/senkronu, toplu kayıt) sonra çağrılır. Otomatik checkpoint
+     * açık okuyucular yüzünden tamamlanamadığında WAL'ın büyüyüp okumaları yavaşlatmasını önler.
+     *
+     * @return checkpoint çalıştırılıp tamamlandıysa true
+     */
+    public boolean checkpointIfNeeded() {
+        SQLiteDatabase db = getWritableDatabase();
+        File wal = new File(db.getPath() + "-wal");
+        if (wal.length() < WAL_SIZE_LIMIT_BYTES) return false;
+
+        // Sonuç: busy, WAL sayfa sayısı, checkpoint edilen sayfa sayısı
+        Cursor c = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+        try {
+            return c.moveToFirst() && c.getInt(0) == 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        SQLiteDatabase reader;
+        while ((reader = idleReaders.poll()) != null) {
+            reader.close();
+            openedReaders--;
+        }
+        super.close();
+    }
+
+    /**
+     * Oturum sayısını döndürür (debug / istatistik amaçlı).
+     */
+    public int getSessionCount() {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor c = db.rawQuery("SELECT COUNT(*) FROM scan_sessions", null);
+        try {
+            if (c.moveToFirst()) {
+                return c.getInt(0);
             }
+            return 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * FAST sayım için eski API:
+     * Bir oturuma ait tüm kodları tek seferde ekler.
+     * FastMultiScanActivity db.insertItems(sessionId, codes, createdAt) çağırıyor.
+     */
+    public void insertItems(long sessionId, List<String> codes, String createdAt) {
+        if (sessionId <= 0 || codes == null || codes.isEmpty()) return;
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            writeScanItems(db, sessionId, codes, createdAt);
+            rebuildSessionAggregates(db, sessionId);
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            reportCache.invalidateSessions(Collections.singletonList(sessionId));
+        }
+    }
+
+    /**
+     * scan_items satırlarını derlenmiş çok satırlı INSERT ile yazar (transaction çağırana ait).
+     *
+     * @return yazılan satır sayısı
+     */
+    static long writeScanItems(SQLiteDatabase db, long sessionId, List<String> codes, String createdAt) {
+        // Tüm satırlar oturumun kayıt zamanını taşır; metin yalnızca epoch'a çevrilemezse saklanır
+        Long createdTs = parseTimestamp(createdAt);
+        String scannedAt = createdTs != null ? "" : createdAt;
+        long scannedTs = createdTs != null ? createdTs : 0;
+
+        try (BulkInserter ins = new BulkInserter(db, "scan_items", SCAN_ITEM_COLUMNS, null)) {
+            for (String code : codes) {
+                if (code == null || code.isEmpty()) continue;
+
+                ScanItemCode item = ScanItemCode.of(code);
+                String gtin = extractGtinFromCode(code);
+                Long gtinNorm = normalizeGtin(gtin);
+                ins.add(sessionId, item.code, item.raw, storedGtin(gtin, gtinNorm), gtinNorm,
+                        item.lot, item.expiry, scannedAt, scannedTs);
+            }
+            ins.flush();
+            return ins.getWrittenRows();
         }
     }
 }
@@ -0,0 +1,175 @@
+package com.example.datamatrix;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Geçmiş sayımlardaki (scan_items.code) tüm kodların bellekteki Bloom filtresi.
+ *
+ * Tarama ekranı her yeni kod için önce mightContain() sorar (bellek içi, kamera thread'ini bekletmez).
+ * Filtre "yok" derse kod kesin olarak daha önce sayılmamıştır; "olabilir" derse
+ * findSessionWithCode() ile idx_scan_items_code_session üzerinden tek sorguyla doğrulanır.
+ * Yanlış pozitif oranı ~%1'dir, yani doğrulama sorgusu neredeyse yalnız gerçekten tekrar eden kodlar için çalışır.
+ *
+ * Filtre süreç boyunca tek örnektir: ilk taramada tüm tablo okunur, sonraki taramalarda
+ * refresh() yalnız son okunan id'den sonra eklenen satırları ekler. Silinen oturumların kodları
+ * filtrede kalır; bu sadece yanlış pozitif üretir ve doğrulama sorgusunda elenir.
+ *
+ * Filtre saklanan kodu (ScanItemCode.code) tutar; okunan metin sorulmadan önce aynı biçime çevrilmelidir.
+ */
+final class ScanHistoryFilter {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_CAPACITY = 4096;
+    private static final int REFRESH_BATCH_SIZE = 5000;
+
+    private static ScanHistoryFilter instance;
+
+    private long[] bits = new long[0];
+    private long numBits = 0;
+    private int numHashes = 0;
+    private long capacity = 0;
+    private long entries = 0;
+    private long lastId = 0;
+
+    static synchronized ScanHistoryFilter getInstance() {
+        if (instance == null) {
+            instance = new ScanHistoryFilter();
+        }
+        return instance;
+    }
+
+    private ScanHistoryFilter() {
+    }
+
+    /**
+     * scan_items'a son refresh'ten sonra eklenen kodları filtreye ekler.
+     * İlk çağrıda (veya kapasite aşıldığında) filtre tablonun tamamından yeniden kurulur.
+     *
+     * @param db acquireReader ile alınmış salt-okunur handle
+     */
+    @WorkerThread
+    synchronized void refresh(SQLiteDatabase db) {
+        long total = countRows(db);
+        if (numBits == 0 || total > capacity || entries > capacity) {
+            // Tekrar tekrar yeniden kurmamak için beklenen büyüme payı bırakılır
+            allocate(Math.max(MIN_CAPACITY, total * 2));
+            lastId = 0;
+        }
+
+        while (true) {
+            Cursor c = db.rawQuery(
+                    "SELECT id, code FROM scan_items WHERE id > ? ORDER BY id LIMIT ?",
+                    new String[]{ String.valueOf(lastId), String.valueOf(REFRESH_BATCH_SIZE) }
+            );
+            int read = 0;
+            try {
+                while (c.moveToNext()) {
+                    lastId = c.getLong(0);
+                    String code = c.getString(1);
+                    if (code != null) put(code);
+                    read++;
+                }
+            } finally {
+                c.close();
+            }
+            if (read < REFRESH_BATCH_SIZE) break;
+        }
+    }
+
+    /**
+     * Filtreyi boşaltır; bir sonraki refresh() tablonun tamamından yeniden kurar.
+     * Mevcut satırların kodu değiştiğinde (kompakt düzene geçiş) çağrılır.
+     */
+    synchronized void invalidate() {
+        bits = new long[0];
+        numBits = 0;
+        capacity = 0;
+        entries = 0;
+        lastId = 0;
+    }
+
+    /**
+     * @return kod daha önce hiç eklenmediyse kesin false; true ise doğrulama gerekir
+     */
+    synchronized boolean mightContain(String code) {
+        if (numBits == 0) return false;
+        long hash = hash64(code);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Filtrenin "olabilir" dediği kodu index üzerinden doğrular.
+     *
+     * @return kodun geçtiği ilk oturumun id'si; kod hiç sayılmamışsa -1
+     */
+    @WorkerThread
+    static long findSessionWithCode(SQLiteDatabase db, String code) {
+        Cursor c = db.rawQuery(
+                "SELECT session_id FROM scan_items WHERE code = ? LIMIT 1",
+                new String[]{ code }
+        );
+        try {
+            return c.moveToFirst() ? c.getLong(0) : -1;
+        } finally {
+            c.close();
+        }
+    }
+
+    private void allocate(long expectedEntries) {
+        // m = -n·ln(p) / (ln 2)^2, k = (m / n)·ln 2
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expectedEntries * Math.log(FALSE_POSITIVE_RATE) / (ln2 * ln2));
+        int words = (int) ((m + 63) >>> 6);
+        bits = new long[words];
+        numBits = (long) words << 6;
+        numHashes = Math.max(1, (int) Math.round((double) numBits / expectedEntries * ln2));
+        capacity = expectedEntries;
+        entries = 0;
+    }
+
+    private void put(String code) {
+        long hash = hash64(code);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        entries++;
+    }
+
+    private static long countRows(SQLiteDatabase db) {
+        Cursor c = db.rawQuery("SELECT COUNT(*) FROM scan_items", null);
+        try {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * FNV-1a (64 bit) + murmur3 karıştırma adımı; alt/üst 32 bit çift hash olarak kullanılır.
+     */
+    private static long hash64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9a34ffe1a53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.datamatrix;
+
+import androidx.annotation.Nullable;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * scan_items satırının kompakt biçimi (şema v15).
+ *
+ * code   : kutunun kimliği. GTIN + seri çözülebiliyorsa Gs1Code.canonical() ("01" + GTIN + "21" + seri),
+ *          çözülemiyorsa okunan metnin kendisi. Tekilleştirme, fark, birleştirme ve index'ler bunu kullanır.
+ * expiry : AI 17, YYAAGG sayı olarak (270131)
+ * lot    : AI 10
+ * raw    : okunan metin; yalnızca code + expiry + lot'tan birebir geri kurulamıyorsa saklanır
+ *          (farklı AI sırası, sembol ön eki, ek AI'lar...). Türkiye karekodlarındaki yaygın
+ *          "01 GTIN 21 seri GS 17 SKT 10 lot" sırası geri kurulabildiği için çoğu satırda null'dır.
+ *
+ * Geri kurma kuralı rebuild() ile rawSql() arasında birebir aynıdır.
+ */
+final class ScanItemCode {
+
+    final String code;
+    @Nullable final String raw;
+    @Nullable final String lot;
+    @Nullable final Integer expiry;
+
+    private ScanItemCode(String code, @Nullable String raw, @Nullable String lot, @Nullable Integer expiry) {
+        this.code = code;
+        this.raw = raw;
+        this.lot = lot;
+        this.expiry = expiry;
+    }
+
+    /**
+     * Okunan karekodu saklanacak kolonlara ayırır.
+     */
+    static ScanItemCode of(String scanned) {
+        Gs1Code parsed = Gs1Code.parse(scanned);
+        String canonical = parsed.canonical();
+        String code = canonical != null ? canonical : scanned;
+        Integer expiry = parsed.expiry != null ? Integer.valueOf(parsed.expiry) : null;
+
+        String raw = scanned.equals(rebuild(code, expiry, parsed.lot)) ? null : scanned;
+        return new ScanItemCode(code, raw, parsed.lot, expiry);
+    }
+
+    /**
+     * Saklanan kolonlardan okunan metni üretir (raw null olan satırlar için).
+     */
+    static String rebuild(String code, @Nullable Integer expiry, @Nullable String lot) {
+        if (expiry == null && lot == null) return code;
+        StringBuilder sb = new StringBuilder(code.length() + 20);
+        // Seri değişken uzunluklu olduğu için sonrasına GS gelir; 17 sabit uzunluklu, ardından GS gerekmez
+        sb.append(code).append(Gs1Code.GS);
+        if (expiry != null) {
+            sb.append("17");
+            String e = Integer.toString(expiry);
+            for (int i = e.length(); i < 6; i++) sb.append('0');
+            sb.append(e);
+        }
+        if (lot != null) sb.append("10").append(lot);
+        return sb.toString();
+    }
+
+    /**
+     * YYAAGG son kullanma kodunun tarihi. GG = 00 ayın son günü demektir (GS1); yıl 2000 + YY.
+     * Geçersiz kodlarda (ay 13, 31 Şubat...) null döner.
+     */
+    @Nullable
+    static LocalDate expiryDate(int expiry) {
+        int year = 2000 + expiry / 10000;
+        int month = expiry / 100 % 100;
+        int day = expiry % 100;
+        try {
+            LocalDate first = LocalDate.of(year, month, 1);
+            return day == 0 ? first.withDayOfMonth(first.lengthOfMonth()) : first.withDayOfMonth(day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tarihin YYAAGG kodu (expiry kolonundaki biçim).
+     */
+    static int expiryCode(LocalDate date) {
+        return date.getYear() % 100 * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    /**
+     * rebuild()'in SQL karşılığı: verilen takma addaki scan_items satırının okunan metni.
+     */
+    static String rawSql(String t) {
+        return "COALESCE(" + t + ".raw, " + t + ".code || " +
+                "CASE WHEN " + t + ".expiry IS NULL AND " + t + ".lot IS NULL THEN '' ELSE char(29) END || " +
+                "IFNULL('17' || substr('00000' || " + t + ".expiry, -6), '') || " +
+                "IFNULL('10' || " + t + ".lot, ''))";
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.datamatrix;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+
+import com.getcapacitor.JSObject;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
+import com.google.mlkit.vision.barcode.BarcodeScanning;
+import com.google.mlkit.vision.barcode.common.Barcode;
+import com.google.mlkit.vision.common.InputImage;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * FastMultiScanActivity'nin süreç boyunca yeniden kullanılan tarama motoru.
+ *
+ * Önceden her startMultiScan yeni bir ML Kit BarcodeScanner ve executor'lar kuruyor, CameraX'i
+ * sıfırdan başlatıyordu; ilk okumaya kadar geçen sürenin büyük kısmı buydu (ML Kit modeli ilk
+ * process() çağrısında yüklenir). Motor warmUp ile bir kez hazırlanır ve oturumlar arasında paylaşılır:
+ * - BarcodeScanner (DataMatrix + QR), modeli boş bir kareyle önceden yüklenmiş
+ * - kamera karelerinin analiz thread'i ve geçmiş sayım kontrolü (ScanHistoryFilter) thread'i
+ * - ProcessCameraProvider (CameraX başlatması)
+ *
+ * Açık bir tarama ekranı yokken bellek baskısında (onTrimMemory / onLowMemory) bırakılır; sonraki
+ * acquire motoru yeniden kurar (soğuk başlangıç). ProcessCameraProvider CameraX'in süreç tekilidir,
+ * bırakılırken yalnız referansı düşülür.
+ *
+ * Her tarama oturumunun kamera hazır / ilk kare / ilk okuma süreleri recordSession ile kaydedilir;
+ * sıcak ve soğuk başlangıçlar ayrı toplanır (getStats).
+ */
+final class ScannerEngine implements ComponentCallbacks2 {
+
+    // Model yüklemesi için boş kare (px)
+    private static final int WARMUP_FRAME_SIZE = 64;
+
+    private static ScannerEngine instance;
+
+    private final Context appContext;
+
+    private BarcodeScanner scanner;
+    private ExecutorService analysisExecutor;
+    private ExecutorService historyExecutor;
+    private ListenableFuture<ProcessCameraProvider> cameraProvider;
+    // Açık tarama ekranı sayısı; sıfırdan büyükken motor bırakılmaz
+    private int activeSessions = 0;
+
+    // Ölçümler (ms); -1: henüz yok
+    private long warmUpMs = -1;
+    private int releases = 0;
+    private final SessionStats warmStarts = new SessionStats();
+    private final SessionStats coldStarts = new SessionStats();
+    private JSObject lastSession;
+
+    private static final class SessionStats {
+        int count;
+        int decoded;
+        long totalCameraReadyMs;
+        long totalFirstDecodeMs;
+
+        JSObject toJSObject() {
+            JSObject o = new JSObject();
+            o.put("count", count);
+            o.put("avgCameraReadyMs", count == 0 ? -1 : totalCameraReadyMs / count);
+            o.put("avgFirstDecodeMs", decoded == 0 ? -1 : totalFirstDecodeMs / decoded);
+            return o;
+        }
+    }
+
+    static synchronized ScannerEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScannerEngine(context.getApplicationContext());
+            instance.appContext.registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    private ScannerEngine(Context appContext) {
+        this.appContext = appContext;
+    }
+
+    /**
+     * Motoru hazırlar (zaten hazırsa bir şey yapmaz). Herhangi bir thread'den çağrılabilir;
+     * model yüklemesi, CameraX başlatması ve geçmiş filtresi arka planda tamamlanır.
+     */
+    synchronized void warmUp() {
+        if (scanner != null) return;
+
+        // Sadece DataMatrix + QR okutalım
+        BarcodeScannerOptions options =
+                new BarcodeScannerOptions.Builder()
+                        .setBarcodeFormats(
+                                Barcode.FORMAT_DATA_MATRIX,
+                                Barcode.FORMAT_QR_CODE
+                        )
+                        .build();
+        scanner = BarcodeScanning.getClient(options);
+        analysisExecutor = Executors.newSingleThreadExecutor();
+        historyExecutor = Executors.newSingleThreadExecutor();
+        cameraProvider = ProcessCameraProvider.getInstance(appContext);
+        warmUpMs = -1;
+
+        // ML Kit modeli ilk process() çağrısında yüklenir; ilk gerçek kareyi bekletmesin
+        long started = SystemClock.elapsedRealtime();
+        BarcodeScanner warming = scanner;
+        Bitmap blank = Bitmap.createBitmap(WARMUP_FRAME_SIZE, WARMUP_FRAME_SIZE, Bitmap.Config.ARGB_8888);
+        warming.process(InputImage.fromBitmap(blank, 0))
+                .addOnCompleteListener(task -> {
+                    blank.recycle();
+                    synchronized (this) {
+                        // Bu arada bırakılıp yeniden kurulduysa ölçüm eski istemcinindir
+                        if (scanner == warming) {
+                            warmUpMs = SystemClock.elapsedRealtime() - started;
+                        }
+                    }
+                });
+
+        // Geçmiş sayımların kod filtresi (ilk seferde tüm tablo okunur)
+        historyExecutor.execute(this::refreshScanHistory);
+    }
+
+    /**
+     * Tarama ekranı açılırken çağrılır; motor hazır değilse (ilk kullanım / bellek baskısı sonrası) kurulur.
+     * Her acquire'a karşılık bir release çağrılmalıdır.
+     *
+     * @return motor önceden hazır mıydı (sıcak başlangıç)
+     */
+    synchronized boolean acquire() {
+        boolean warm = scanner != null && warmUpMs >= 0;
+        warmUp();
+        activeSessions++;
+        return warm;
+    }
+
+    synchronized void release() {
+        if (activeSessions > 0) activeSessions--;
+    }
+
+    synchronized BarcodeScanner scanner() {
+        return scanner;
+    }
+
+    synchronized ExecutorService analysisExecutor() {
+        return analysisExecutor;
+    }
+
+    synchronized ExecutorService historyExecutor() {
+        return historyExecutor;
+    }
+
+    synchronized ListenableFuture<ProcessCameraProvider> cameraProvider() {
+        return cameraProvider;
+    }
+
+    /**
+     * scan_items kodlarının Bloom filtresini günceller (ilk seferde tüm tablo, sonra yalnız yeni satırlar).
+     * historyExecutor üzerinde çalışır.
+     */
+    @WorkerThread
+    void refreshScanHistory() {
+        ScanDatabaseHelper dbHelper = ScanDatabaseHelper.getInstance(appContext);
+        SQLiteDatabase db = null;
+        try {
+            db = dbHelper.acquireReader();
+            ScanHistoryFilter.getInstance().refresh(db);
+        } catch (Exception e) {
+            // Filtre kurulamazsa geçmiş kontrolü yapılmaz; tarama etkilenmez
+            e.printStackTrace();
+        } finally {
+            dbHelper.releaseReader(db);
+        }
+    }
+
+    /**
+     * Açık tarama ekranı yoksa motoru bırakır.
+     */
+    synchronized void releaseIfIdle() {
+        if (activeSessions > 0 || scanner == null) return;
+
+        scanner.close();
+        analysisExecutor.shutdown();
+        historyExecutor.shutdown();
+        scanner = null;
+        analysisExecutor = null;
+        historyExecutor = null;
+        cameraProvider = null;
+        warmUpMs = -1;
+        releases++;
+    }
+
+    /**
+     * Bir tarama oturumunun süreleri (startMultiScan çağrısından itibaren, ms; olmayan -1).
+     */
+    synchronized void recordSession(boolean warm, long cameraReadyMs, long firstFrameMs, long firstDecodeMs) {
+        SessionStats s = warm ? warmStarts : coldStarts;
+        s.count++;
+        s.totalCameraReadyMs += Math.max(cameraReadyMs, 0);
+        if (firstDecodeMs >= 0) {
+            s.decoded++;
+            s.totalFirstDecodeMs += firstDecodeMs;
+        }
+
+        lastSession = new JSObject();
+        lastSession.put("warm", warm);
+        lastSession.put("cameraReadyMs", cameraReadyMs);
+        lastSession.put("firstFrameMs", firstFrameMs);
+        lastSession.put("firstDecodeMs", firstDecodeMs);
+    }
+
+    synchronized JSObject getStats() {
+        JSObject result = new JSObject();
+        result.put("ready", scanner != null);
+        result.put("warmUpMs", warmUpMs);
+        result.put("releases", releases);
+        result.put("warmStarts", warmStarts.toJSObject());
+        result.put("coldStarts", coldStarts.toJSObject());
+        result.put("lastSession", lastSession);
+        return result;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // UI_HIDDEN (arka plana geçiş) bırakma sebebi değildir; kullanıcı dönünce motor hazır olmalı
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            releaseIfIdle();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        releaseIfIdle();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
@@ -0,0 +1,471 @@
+package com.example.datamatrix;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sayım oturumlarını cihazlar arasında taşımak için sıkıştırılmış, sağlama toplamlı ikili format (.fssx).
+ *
+ * Dosya: "FSSX" | sürüm (1 bayt) | Deflate ile sıkıştırılmış gövde
+ * Gövde (tamsayılar unsigned varint, metinler varint uzunluk + UTF-8):
+ *   gtinSayısı, gtin[]               → tüm oturumların ortak GTIN sözlüğü
+ *   oturumSayısı
+ *   her oturum: kaynakId, created_at, note?, device_id?, kodSayısı
+ *     her kod (kod sırasıyla): gtinRef (0 = yok, i+1 = sözlükteki i),
+ *                              önceki kodla ortak önek uzunluğu, kalan kısım
+ *   CRC32 (4 bayt, big-endian): gövdenin kendisinden önceki baytları üzerinden
+ * null olabilen metinler (?): 0 = null, aksi halde uzunluk + 1.
+ *
+ * Kodlar oturum içinde sıralı yazıldığı için aynı GTIN'in "01" + GTIN + "21" öneki ve serilerin
+ * ortak başı tekrar yazılmaz (seriler bir öncekine göre delta kodlanır); kalan kısım Deflate ile sıkışır.
+ */
+final class SessionArchive {
+
+    static final String FILE_EXTENSION = ".fssx";
+
+    private static final byte[] MAGIC = { 'F', 'S', 'S', 'X' };
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Açılmış gövde (ortak önekler dahil) en fazla bu kadar olabilir; bozuk/kötü niyetli dosya belleği tüketmesin
+    static final long MAX_BODY_BYTES = 64L * 1024 * 1024;
+    // Sayı doğrulaması için elemanların gövdede kapladığı en az bayt
+    private static final int MIN_GTIN_BYTES = 1;     // uzunluk
+    private static final int MIN_SESSION_BYTES = 5;  // kaynakId, created_at, note, device_id, kodSayısı
+    private static final int MIN_CODE_BYTES = 3;     // gtinRef, ortak önek, kalan kısım
+    // bodyBytesSql için varint'lerin en çok tuttuğu bayt
+    private static final int MAX_CODE_OVERHEAD = 16;     // gtinRef, ortak önek, kalan uzunluk
+    private static final int MAX_SESSION_OVERHEAD = 40;  // kaynakId, metin uzunlukları, kodSayısı
+    private static final int MAX_GTIN_OVERHEAD = 4;      // uzunluk
+    // Gövdedeki sayılar ve CRC32
+    static final int MAX_ARCHIVE_OVERHEAD = 32;
+
+    /**
+     * Arşivden okunan tek oturum. codes[i] ile gtins[i] aynı satıra aittir.
+     */
+    static final class Session {
+        final long sourceId;
+        final String createdAt;
+        @Nullable final String note;
+        @Nullable final String deviceId;
+        final String[] codes;
+        final String[] gtins;
+
+        Session(long sourceId,
+                String createdAt,
+                @Nullable String note,
+                @Nullable String deviceId,
+                String[] codes,
+                String[] gtins) {
+            this.sourceId = sourceId;
+            this.createdAt = createdAt;
+            this.note = note;
+            this.deviceId = deviceId;
+            this.codes = codes;
+            this.gtins = gtins;
+        }
+    }
+
+    private SessionArchive() {
+    }
+
+    // ================== YAZMA ==================
+
+    /**
+     * temp.report_sessions'taki oturumları arşiv olarak yazar (aynı bağlantıda doldurulmuş olmalı).
+     * Kodlar idx_scan_items_session_code sırasıyla okunur; ayrıca sıralama yapılmaz.
+     *
+     * @return { yazılan oturum sayısı, yazılan kod sayısı }
+     */
+    static long[] write(SQLiteDatabase db, OutputStream out, @Nullable CancellationSignal signal) throws IOException {
+        Encoder encoder = new Encoder(out);
+        long sessions = 0;
+        long codes = 0;
+        try {
+            Cursor g = db.rawQuery(
+                    "SELECT DISTINCT " + ScanDatabaseHelper.itemGtinSql("scan_items") + " FROM scan_items " +
+                            "WHERE session_id IN (SELECT id FROM temp.report_sessions) " +
+                            "AND (gtin IS NOT NULL OR gtin_norm IS NOT NULL)",
+                    null,
+                    signal
+            );
+            try {
+                encoder.beginGtins(g.getCount());
+                while (g.moveToNext()) {
+                    encoder.gtin(g.getString(0));
+                }
+            } finally {
+                g.close();
+            }
+
+            Cursor s = db.rawQuery(
+                    "SELECT id, created_at, note, device_id FROM scan_sessions " +
+                            "WHERE id IN (SELECT id FROM temp.report_sessions) ORDER BY id ASC",
+                    null,
+                    signal
+            );
+            try {
+                encoder.beginSessions(s.getCount());
+                while (s.moveToNext()) {
+                    codes += writeSessionCodes(db, s, encoder, signal);
+                    sessions++;
+                }
+            } finally {
+                s.close();
+            }
+
+            encoder.finish();
+        } finally {
+            encoder.end();
+        }
+        return new long[]{ sessions, codes };
+    }
+
+    /**
+     * s takma adlı scan_sessions satırının arşiv gövdesinde (okurken MAX_BODY_BYTES bütçesinden)
+     * en çok tutacağı bayt; bölmek için üst tahmindir. Kod başına okunan metin (ortak önek de bütçeden
+     * düşer) + varint'ler, oturum başlığı ve oturumun GTIN'lerinin sözlük girdileri sayılır.
+     */
+    static String bodyBytesSql(String s) {
+        return "(" + MAX_SESSION_OVERHEAD + " + length(CAST(IFNULL(" + s + ".created_at, '') AS BLOB)) + " +
+                "IFNULL(length(CAST(" + s + ".note AS BLOB)), 0) + " +
+                "IFNULL(length(CAST(" + s + ".device_id AS BLOB)), 0) + " +
+                "(SELECT IFNULL(SUM(length(CAST(" + ScanItemCode.rawSql("i") + " AS BLOB)) + " + MAX_CODE_OVERHEAD + "), 0) " +
+                "FROM scan_items i WHERE i.session_id = " + s + ".id AND i.code IS NOT NULL) + " +
+                "(SELECT IFNULL(SUM(length(CAST(g.gtin AS BLOB)) + " + MAX_GTIN_OVERHEAD + "), 0) " +
+                "FROM (SELECT DISTINCT " + ScanDatabaseHelper.itemGtinSql("i") + " AS gtin FROM scan_items i " +
+                "WHERE i.session_id = " + s + ".id AND (i.gtin IS NOT NULL OR i.gtin_norm IS NOT NULL)) g))";
+    }
+
+    private static long writeSessionCodes(SQLiteDatabase db,
+                                          Cursor session,
+                                          Encoder encoder,
+                                          @Nullable CancellationSignal signal) throws IOException {
+        long sessionId = session.getLong(0);
+        Cursor c = db.rawQuery(
+                // Dosyaya okunan metin yazılır (alıcı kendi düzenine çevirir); sıra index'ten gelir
+                "SELECT " + ScanItemCode.rawSql("scan_items") + ", " + ScanDatabaseHelper.itemGtinSql("scan_items") +
+                        " FROM scan_items WHERE session_id = ? AND code IS NOT NULL ORDER BY code",
+                new String[]{ String.valueOf(sessionId) },
+                signal
+        );
+        try {
+            encoder.beginSession(
+                    sessionId,
+                    session.isNull(1) ? "" : session.getString(1),
+                    session.isNull(2) ? null : session.getString(2),
+                    session.isNull(3) ? null : session.getString(3),
+                    c.getCount()
+            );
+            while (c.moveToNext()) {
+                encoder.code(c.getString(0), c.isNull(1) ? null : c.getString(1));
+            }
+            return c.getCount();
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Arşivi sırayla yazar: beginGtins + gtin × n, beginSessions, her oturum için beginSession +
+     * code × kodSayısı, sonra finish. Sayılar önceden verilir (gövdede öğelerden önce yazılır).
+     * end() her durumda çağrılmalıdır (Deflater'ın yerel belleği).
+     */
+    static final class Encoder {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final DeflaterOutputStream deflated;
+        private final BufferedOutputStream buffered;
+        private final Body body;
+        private final Map<String, Integer> gtinRefs = new HashMap<>();
+        private String previous = "";
+
+        Encoder(OutputStream out) throws IOException {
+            out.write(MAGIC);
+            out.write(VERSION);
+            deflated = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            // Varint'ler tek tek Deflater'a gitmesin
+            buffered = new BufferedOutputStream(deflated, BUFFER_SIZE);
+            body = new Body(buffered);
+        }
+
+        void beginGtins(int count) throws IOException {
+            body.writeVarint(count);
+        }
+
+        void gtin(String gtin) throws IOException {
+            gtinRefs.put(gtin, gtinRefs.size() + 1);
+            body.writeString(gtin);
+        }
+
+        void beginSessions(int count) throws IOException {
+            body.writeVarint(count);
+        }
+
+        void beginSession(long sourceId,
+                          String createdAt,
+                          @Nullable String note,
+                          @Nullable String deviceId,
+                          int codeCount) throws IOException {
+            body.writeVarint(sourceId);
+            body.writeString(createdAt);
+            body.writeNullableString(note);
+            body.writeNullableString(deviceId);
+            body.writeVarint(codeCount);
+            previous = "";
+        }
+
+        /**
+         * Kodlar oturum içinde sıralı verilmelidir (ortak önek bir öncekine göre yazılır).
+         * Sözlükte olmayan gtin "yok" olarak yazılır.
+         */
+        void code(String code, @Nullable String gtin) throws IOException {
+            Integer ref = gtin == null ? null : gtinRefs.get(gtin);
+            int shared = commonPrefix(previous, code);
+
+            body.writeVarint(ref == null ? 0 : ref);
+            body.writeVarint(shared);
+            body.writeString(code.substring(shared));
+            previous = code;
+        }
+
+        void finish() throws IOException {
+            body.writeChecksum();
+            buffered.flush();
+            deflated.finish();
+        }
+
+        void end() {
+            deflater.end();
+        }
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) i++;
+        // Vekil çift (surrogate pair) ortadan bölünmesin
+        if (i > 0 && Character.isHighSurrogate(b.charAt(i - 1))) i--;
+        return i;
+    }
+
+    // ================== OKUMA ==================
+
+    /**
+     * Arşivi okur; başlık, sürüm ve CRC32 doğrulanır. Gövde akıştan çözülür (tamamı belleğe açılmaz),
+     * açılmış boyut MAX_BODY_BYTES'ı aşarsa okuma durur.
+     *
+     * @throws IOException dosya bu formatta değilse veya bozuksa
+     */
+    static List<Session> read(InputStream in) throws IOException {
+        byte[] header = new byte[MAGIC.length + 1];
+        int n = 0;
+        while (n < header.length) {
+            int r = in.read(header, n, header.length - n);
+            if (r < 0) throw new IOException("Geçersiz arşiv: dosya çok kısa");
+            n += r;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) throw new IOException("Geçersiz arşiv: FSSX başlığı yok");
+        }
+        if (header[MAGIC.length] != VERSION) {
+            throw new IOException("Desteklenmeyen arşiv sürümü: " + header[MAGIC.length]);
+        }
+
+        // Gövde akıştan parça parça çözülür; açılmış boyut MAX_BODY_BYTES ile sınırlıdır (zip bombası)
+        try (InputStream body = new BufferedInputStream(new InflaterInputStream(in), BUFFER_SIZE)) {
+            Parser p = new Parser(body);
+            int gtinCount = p.readCount(MIN_GTIN_BYTES);
+            String[] gtins = new String[gtinCount];
+            for (int i = 0; i < gtinCount; i++) {
+                gtins[i] = p.readString();
+            }
+
+            int sessionCount = p.readCount(MIN_SESSION_BYTES);
+            List<Session> sessions = new ArrayList<>(sessionCount);
+            for (int i = 0; i < sessionCount; i++) {
+                long sourceId = p.readVarint();
+                String createdAt = p.readString();
+                String note = p.readNullableString();
+                String deviceId = p.readNullableString();
+
+                int codeCount = p.readCount(MIN_CODE_BYTES);
+                String[] codes = new String[codeCount];
+                String[] codeGtins = new String[codeCount];
+                String previous = "";
+                for (int j = 0; j < codeCount; j++) {
+                    long ref = p.readVarint();
+                    long shared = p.readVarint();
+                    if (ref > gtinCount || shared > previous.length()) {
+                        throw new IOException("Geçersiz arşiv: kod kaydı bozuk");
+                    }
+                    // Ortak önek de bellekte yeniden kurulur; sınırdan düşülür
+                    p.charge(shared);
+                    String code = previous.substring(0, (int) shared) + p.readString();
+                    codes[j] = code;
+                    codeGtins[j] = ref == 0 ? null : gtins[(int) ref - 1];
+                    previous = code;
+                }
+                sessions.add(new Session(sourceId, createdAt, note, deviceId, codes, codeGtins));
+            }
+            p.readChecksum();
+            if (body.read() >= 0) throw new IOException("Geçersiz arşiv: fazladan veri");
+            return sessions;
+        }
+    }
+
+    // ================== VARINT GÖVDE ==================
+
+    /**
+     * Gövde yazıcısı: yazılan her baytı CRC32'ye de ekler.
+     */
+    private static final class Body {
+        private final OutputStream out;
+        private final CRC32 crc = new CRC32();
+        private final byte[] scratch = new byte[10];
+
+        Body(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeVarint(long value) throws IOException {
+            int n = 0;
+            while ((value & ~0x7FL) != 0) {
+                scratch[n++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            scratch[n++] = (byte) value;
+            write(scratch, n);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] b = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(b.length);
+            write(b, b.length);
+        }
+
+        void writeNullableString(@Nullable String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] b = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(b.length + 1L);
+            write(b, b.length);
+        }
+
+        void writeChecksum() throws IOException {
+            long v = crc.getValue();
+            out.write(new byte[]{ (byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v });
+        }
+
+        private void write(byte[] b, int len) throws IOException {
+            crc.update(b, 0, len);
+            out.write(b, 0, len);
+        }
+    }
+
+    /**
+     * Akıştan okuyan gövde çözücü: okunan her baytı CRC32'ye ekler ve MAX_BODY_BYTES bütçesinden düşer.
+     * Sayılar ve uzunluklar dizi/metin ayrılmadan önce kalan bütçeye göre doğrulanır.
+     */
+    private static final class Parser {
+        private final InputStream in;
+        private final CRC32 crc = new CRC32();
+        private long remaining = MAX_BODY_BYTES;
+
+        Parser(InputStream in) {
+            this.in = in;
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IOException("Geçersiz arşiv: varint çok uzun");
+        }
+
+        /**
+         * Eleman sayısı; her eleman en az minBytes tuttuğu için kalan bütçeye sığmıyorsa bozuk kabul edilir.
+         */
+        int readCount(int minBytes) throws IOException {
+            long n = readVarint();
+            if (n > remaining / minBytes) throw new IOException("Geçersiz arşiv: sayı sınır dışı");
+            return (int) n;
+        }
+
+        String readString() throws IOException {
+            return readText(readVarint());
+        }
+
+        @Nullable
+        String readNullableString() throws IOException {
+            long n = readVarint();
+            if (n == 0) return null;
+            return readText(n - 1);
+        }
+
+        /**
+         * Gövdede yer tutmayan ama bellekte kurulan baytları (ortak önek) bütçeden düşer.
+         */
+        void charge(long bytes) throws IOException {
+            if (bytes > remaining) throw new IOException("Geçersiz arşiv: boyut sınırı aşıldı");
+            remaining -= bytes;
+        }
+
+        /**
+         * Gövdenin sonundaki CRC32'yi okur ve o ana kadar okunan baytlarla karşılaştırır.
+         */
+        void readChecksum() throws IOException {
+            long actual = crc.getValue();
+            long expected = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = in.read();
+                if (b < 0) throw new IOException("Geçersiz arşiv: gövde eksik");
+                expected = (expected << 8) | b;
+            }
+            if (actual != expected) throw new IOException("Arşiv bozuk: sağlama toplamı tutmuyor");
+        }
+
+        private String readText(long len) throws IOException {
+            charge(len);
+            byte[] b = new byte[(int) len];
+            int n = 0;
+            while (n < b.length) {
+                int r = in.read(b, n, b.length - n);
+                if (r < 0) throw new IOException("Geçersiz arşiv: beklenmeyen son");
+                n += r;
+            }
+            crc.update(b, 0, b.length);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        private int readByte() throws IOException {
+            charge(1);
+            int b = in.read();
+            if (b < 0) throw new IOException("Geçersiz arşiv: beklenmeyen son");
+            crc.update(b);
+            return b;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.datamatrix;
+
+import android.os.CancellationSignal;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Paydaş (stakeholder) dizininin JSON'dan stakeholders tablosuna akış halinde okunması.
+ *
+ * stakeholders.json 2 MB'ı aşan tek bir dizidir; WebView'de tamamı parse edilip bellekte tutuluyordu.
+ * Burada JsonReader ile kayıt kayıt okunur ve her kayıt doğrudan BulkInserter'a verilir; bellekte
+ * aynı anda tek kayıt bulunur. gzip'li dosya (AdminStakeholders'ın yayınladığı .json.gz) ilk iki
+ * bayttan tanınır.
+ *
+ * Kabul edilen biçimler (AdminStakeholders / AdminTrials ile aynı): kök dizi veya
+ * { result | data: [...] } ya da { actionResult: { stakeholders: [...] } }.
+ * Kayıt alanları: code (yoksa id), name (yoksa title), type, city, district, parentCode.
+ * code'u olmayan kayıtlar atlanır; aynı code birden çok kayıtta geçebilir (şube / merkez).
+ */
+final class StakeholderDirectory {
+
+    // Uygulamayla gelen dizin (Capacitor web varlıkları)
+    static final String DEFAULT_ASSET = "public/stakeholders.json";
+
+    // BulkInserter kolon sırası
+    static final String[] COLUMNS = { "code", "name", "type", "city", "district", "parent_code" };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Bu kadar kayıtta bir iptal kontrolü
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+
+    private StakeholderDirectory() {
+    }
+
+    /**
+     * Dizini okuyup kayıtları ins'e ekler (flush ve transaction çağırana ait).
+     *
+     * @return eklenen kayıt sayısı
+     * @throws IOException JSON bozuksa veya kayıt dizisi bulunamazsa
+     */
+    static long read(InputStream in, BulkInserter ins, @Nullable CancellationSignal signal) throws IOException {
+        InputStream src = new BufferedInputStream(in, BUFFER_SIZE);
+        src.mark(2);
+        int b1 = src.read();
+        int b2 = src.read();
+        src.reset();
+        if (b1 == 0x1f && b2 == 0x8b) {
+            src = new BufferedInputStream(new GZIPInputStream(src, BUFFER_SIZE), BUFFER_SIZE);
+        }
+
+        long rows = 0;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(src, StandardCharsets.UTF_8))) {
+            if (!seekRecords(reader)) {
+                throw new IOException("Beklenmeyen JSON formatı: dizi bulunamadı.");
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (signal != null && rows % CANCEL_CHECK_INTERVAL == 0) {
+                    signal.throwIfCanceled();
+                }
+                if (readRecord(reader, ins)) rows++;
+            }
+            reader.endArray();
+        }
+        return rows;
+    }
+
+    /**
+     * Okuyucuyu kayıt dizisinin başına getirir (dizi henüz açılmamış olur).
+     */
+    private static boolean seekRecords(JsonReader r) throws IOException {
+        JsonToken token = r.peek();
+        if (token == JsonToken.BEGIN_ARRAY) return true;
+        if (token != JsonToken.BEGIN_OBJECT) return false;
+
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            JsonToken value = r.peek();
+            if (value == JsonToken.BEGIN_ARRAY
+                    && (name.equals("result") || name.equals("data") || name.equals("stakeholders"))) {
+                return true;
+            }
+            if (value == JsonToken.BEGIN_OBJECT && name.equals("actionResult")) {
+                // Bulunamazsa iç nesne sonuna kadar tüketilmiş olur
+                if (seekRecords(r)) return true;
+                continue;
+            }
+            r.skipValue();
+        }
+        r.endObject();
+        return false;
+    }
+
+    private static boolean readRecord(JsonReader r, BulkInserter ins) throws IOException {
+        if (r.peek() != JsonToken.BEGIN_OBJECT) {
+            r.skipValue();
+            return false;
+        }
+
+        Long code = null;
+        Long id = null;
+        String name = null;
+        String title = null;
+        Long type = null;
+        String city = null;
+        String district = null;
+        Long parentCode = null;
+
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "code": code = nextLong(r); break;
+                case "id": id = nextLong(r); break;
+                case "name": name = nextString(r); break;
+                case "title": title = nextString(r); break;
+                case "type": type = nextLong(r); break;
+                case "city": city = nextString(r); break;
+                case "district": district = nextString(r); break;
+                case "parentCode": parentCode = nextLong(r); break;
+                default: r.skipValue(); break;
+            }
+        }
+        r.endObject();
+
+        if (code == null) code = id;
+        if (code == null) return false;
+        if (name == null) name = title;
+        if (name == null) name = String.valueOf(code);
+
+        ins.add(code, name, type, city, district, parentCode);
+        return true;
+    }
+
+    @Nullable
+    private static Long nextLong(JsonReader r) throws IOException {
+        JsonToken token = r.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            // Sayısal metinler ("13593") de kabul edilir
+            String s = r.nextString().trim();
+            try {
+                return Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        r.skipValue();
+        return null;
+    }
+
+    @Nullable
+    private static String nextString(JsonReader r) throws IOException {
+        JsonToken token = r.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            String s = r.nextString().trim();
+            return s.isEmpty() ? null : s;
+        }
+        r.skipValue();
+        return null;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.datamatrix;
+
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stok raporu sonuçlarının bellekteki LRU önbelleği.
+ *
+ * Anahtar: rapora giren oturumların sıralı, tekil id kümesi + katalog sürümü. Aynı seçim
+ * (sessionIds veya aynı oturumlara denk gelen from/to/deviceId) tekrar istendiğinde join / GROUP BY
+ * yeniden çalışmaz.
+ *
+ * Geçersiz kılma, scan_items / products_local'a yazan ScanDatabaseHelper metodlarının (ve katalog
+ * yazan plugin metodlarının) commit'ten SONRA çağırdığı invalidateSessions / invalidateCatalog ile
+ * yapılır: yalnızca yazılan oturumları içeren girişler atılır, katalog değişince sürüm artar.
+ *
+ * Okuma ile yazma yarışı: okuyucu sorgudan önce begin() ile bir damga alır, put aynı damgayla yapılır.
+ * Damgadan sonra anahtardaki oturumlardan biri veya katalog geçersiz kılındıysa sonuç saklanmaz;
+ * böylece eski bir WAL anlık görüntüsünden hesaplanmış rapor önbelleğe girmez.
+ */
+final class StockReportCache {
+
+    // Önbellekteki toplam rapor satırı (GTIN) sınırı; giriş boyutu satır sayısıdır
+    static final int MAX_ROWS = 20_000;
+    // sessionStamps bu boyutu aşınca boşaltılır (bkz. invalidateSessions)
+    static final int MAX_SESSION_STAMPS = 1024;
+
+    /**
+     * Tek bir stok raporu (queryStockReport satırları + toplamlar). Değişmez; çağrılar arasında paylaşılır.
+     */
+    static final class Report {
+        final String[] gtins;
+        final String[] brandNames;
+        final int[] distinctCounts;
+        final int[] totalScans;
+        final int totalDistinct;
+        final int totalScanCount;
+        final int sessionCount;
+
+        Report(String[] gtins, String[] brandNames, int[] distinctCounts, int[] totalScans, int sessionCount) {
+            this.gtins = gtins;
+            this.brandNames = brandNames;
+            this.distinctCounts = distinctCounts;
+            this.totalScans = totalScans;
+            this.sessionCount = sessionCount;
+
+            int distinct = 0;
+            int scans = 0;
+            for (int i = 0; i < gtins.length; i++) {
+                distinct += distinctCounts[i];
+                scans += totalScans[i];
+            }
+            this.totalDistinct = distinct;
+            this.totalScanCount = scans;
+        }
+
+        int size() {
+            return gtins.length;
+        }
+    }
+
+    private static final class Key {
+        final long[] sessionIds;
+        final long catalogVersion;
+
+        Key(long[] sessionIds, long catalogVersion) {
+            this.sessionIds = sessionIds;
+            this.catalogVersion = catalogVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return catalogVersion == k.catalogVersion && Arrays.equals(sessionIds, k.sessionIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(sessionIds) + Long.hashCode(catalogVersion);
+        }
+    }
+
+    private final LruCache<Key, Report> cache = new LruCache<Key, Report>(MAX_ROWS) {
+        @Override
+        protected int sizeOf(Key key, Report value) {
+            // Boş rapor da yer kaplar
+            return value.size() + 1;
+        }
+    };
+
+    // Her geçersiz kılmada artan sayaç; damgalar bundan alınır
+    private long generation = 0;
+    private long catalogVersion = 0;
+    private long catalogStamp = 0;
+    // Oturum id → son geçersiz kılındığı damga. Silinen oturumların kayıtları da kalacağı için sınırlıdır:
+    // boşaltılırken o anki damga prunedStamp'e yazılır; daha eski damgalı put'lar (atılan kayıtlardan biri
+    // onları reddedebilirdi) hiç saklanmaz.
+    private final Map<Long, Long> sessionStamps = new HashMap<>();
+    private long prunedStamp = 0;
+
+    /**
+     * Rapor sorgusundan önce alınan damga; put'a verilir.
+     */
+    synchronized long begin() {
+        return generation;
+    }
+
+    /**
+     * @param sessionIds sıralı, tekil oturum id'leri (ScanDatabaseHelper.readReportSessionIds)
+     */
+    @Nullable
+    synchronized Report get(long[] sessionIds) {
+        return cache.get(new Key(sessionIds, catalogVersion));
+    }
+
+    /**
+     * Raporu saklar; stamp alındıktan sonra anahtardaki bir oturum veya katalog değiştiyse saklamaz.
+     */
+    synchronized void put(long[] sessionIds, long stamp, Report report) {
+        if (catalogStamp > stamp || prunedStamp > stamp) return;
+        for (long id : sessionIds) {
+            Long changed = sessionStamps.get(id);
+            if (changed != null && changed > stamp) return;
+        }
+        cache.put(new Key(sessionIds, catalogVersion), report);
+    }
+
+    /**
+     * Bu oturumların scan_items satırları değişti (eklendi / silindi / ön-toplamları yeniden kuruldu).
+     */
+    synchronized void invalidateSessions(Collection<Long> sessionIds) {
+        if (sessionIds.isEmpty()) return;
+        generation++;
+        for (Long id : sessionIds) {
+            if (id != null) sessionStamps.put(id, generation);
+        }
+        if (sessionStamps.size() > MAX_SESSION_STAMPS) {
+            sessionStamps.clear();
+            prunedStamp = generation;
+        }
+        for (Key key : cache.snapshot().keySet()) {
+            for (Long id : sessionIds) {
+                if (id != null && Arrays.binarySearch(key.sessionIds, id) >= 0) {
+                    cache.remove(key);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * products_local değişti; marka adları eskimiş olabileceği için tüm girişler düşer.
+     */
+    synchronized void invalidateCatalog() {
+        generation++;
+        catalogVersion++;
+        catalogStamp = generation;
+        // catalogStamp'ten eski damgalar zaten reddedilir; oturum kayıtlarına gerek kalmaz
+        sessionStamps.clear();
+        cache.evictAll();
+    }
+
+    /**
+     * Hangi oturumların etkilendiği bilinmeyen toplu değişiklikler (veri geçişleri) için.
+     */
+    synchronized void invalidateAll() {
+        invalidateCatalog();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.datamatrix;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class ColumnarRowsTest {
+
+    /** Paketi istemcinin yapacağı gibi çözer. */
+    private static long[] unpack(ColumnarRows.PackedInts p) {
+        ByteBuffer buf = ByteBuffer.wrap(p.data).order(ByteOrder.LITTLE_ENDIAN);
+        int width;
+        switch (p.type) {
+            case "i8": width = 1; break;
+            case "i16": width = 2; break;
+            case "i32": width = 4; break;
+            default: width = 8; break;
+        }
+        long[] out = new long[p.data.length / width];
+        long acc = p.base;
+        for (int i = 0; i < out.length; i++) {
+            long v;
+            switch (width) {
+                case 1: v = buf.get(); break;
+                case 2: v = buf.getShort(); break;
+                case 4: v = buf.getInt(); break;
+                default: v = (long) buf.getDouble(); break;
+            }
+            if (p.delta) {
+                acc += v;
+                out[i] = acc;
+            } else {
+                out[i] = v;
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void pack_increasingIdsAsDeltas() {
+        long[] ids = { 1_000_000, 1_000_001, 1_000_003, 1_000_100 };
+        ColumnarRows.PackedInts p = ColumnarRows.pack(ids, ids.length);
+
+        assertTrue(p.delta);
+        assertEquals(1_000_000, p.base);
+        assertEquals("i8", p.type);
+        assertArrayEquals(new byte[] { 0, 1, 2, 97 }, p.data);
+        assertArrayEquals(ids, unpack(p));
+    }
+
+    @Test
+    public void pack_unorderedValuesWithoutDelta() {
+        long[] values = { 5, 3, -7, 100 };
+        ColumnarRows.PackedInts p = ColumnarRows.pack(values, values.length);
+
+        assertFalse(p.delta);
+        assertEquals("i8", p.type);
+        assertArrayEquals(values, unpack(p));
+    }
+
+    @Test
+    public void pack_singleValueIsNotDelta() {
+        long[] values = { 300 };
+        ColumnarRows.PackedInts p = ColumnarRows.pack(values, 1);
+
+        assertFalse(p.delta);
+        assertEquals("i16", p.type);
+        assertArrayEquals(new byte[] { 0x2C, 0x01 }, p.data);
+    }
+
+    @Test
+    public void pack_widthFollowsRange() {
+        assertEquals("i8", ColumnarRows.pack(new long[] { 127, -128 }, 2).type);
+        assertEquals("i16", ColumnarRows.pack(new long[] { 128, 0 }, 2).type);
+        assertEquals("i16", ColumnarRows.pack(new long[] { -129, 0 }, 2).type);
+        assertEquals("i32", ColumnarRows.pack(new long[] { 32_768, 0 }, 2).type);
+        assertEquals("i32", ColumnarRows.pack(new long[] { 0, Integer.MIN_VALUE }, 2).type);
+        // Artan dizide genişlik farka göre seçilir: MIN_VALUE → 0 farkı (2^31) i32 sınırını aşar
+        assertEquals("f64", ColumnarRows.pack(new long[] { Integer.MIN_VALUE, 0 }, 2).type);
+        assertEquals("f64", ColumnarRows.pack(new long[] { 1L << 40, 0 }, 2).type);
+    }
+
+    @Test
+    public void pack_roundTripsEveryWidth() {
+        long[][] cases = {
+                { 9, -3, 0, 120 },
+                { 40_000, -2, 7 },
+                { -5_000_000_000L, 3, 1L << 52 },
+                { 0, 70_000, 70_000, 140_000 },
+        };
+        for (long[] values : cases) {
+            assertArrayEquals(values, unpack(ColumnarRows.pack(values, values.length)));
+        }
+    }
+
+    @Test
+    public void pack_onlyFirstSizeValues() {
+        long[] values = { 1, 2, 3, 0, 0, 0, 0, 0 };
+        ColumnarRows.PackedInts p = ColumnarRows.pack(values, 3);
+
+        assertTrue(p.delta);
+        assertEquals(3, p.data.length);
+        assertArrayEquals(new long[] { 1, 2, 3 }, unpack(p));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.datamatrix;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class EasyPriceParseTest {
+
+    @Test
+    public void parsePriceMinor_decimalSeparators() {
+        assertEquals(Long.valueOf(1250), ScanDatabaseHelper.parsePriceMinor("12,50"));
+        assertEquals(Long.valueOf(1250), ScanDatabaseHelper.parsePriceMinor("12.50"));
+        assertEquals(Long.valueOf(1250), ScanDatabaseHelper.parsePriceMinor("12,5"));
+        assertEquals(Long.valueOf(1500), ScanDatabaseHelper.parsePriceMinor("15"));
+        assertEquals(Long.valueOf(50), ScanDatabaseHelper.parsePriceMinor(",5"));
+        assertEquals(Long.valueOf(0), ScanDatabaseHelper.parsePriceMinor("0"));
+    }
+
+    @Test
+    public void parsePriceMinor_thousandsSeparators() {
+        assertEquals(Long.valueOf(123450), ScanDatabaseHelper.parsePriceMinor("1.234,5"));
+        assertEquals(Long.valueOf(123450), ScanDatabaseHelper.parsePriceMinor("1,234.50"));
+        assertEquals(Long.valueOf(123400), ScanDatabaseHelper.parsePriceMinor("1.234"));
+        assertEquals(Long.valueOf(123456700), ScanDatabaseHelper.parsePriceMinor("1.234.567"));
+        assertEquals(Long.valueOf(123450), ScanDatabaseHelper.parsePriceMinor(" 1 234,50 "));
+    }
+
+    @Test
+    public void parsePriceMinor_invalid() {
+        assertNull(ScanDatabaseHelper.parsePriceMinor(null));
+        assertNull(ScanDatabaseHelper.parsePriceMinor(""));
+        assertNull(ScanDatabaseHelper.parsePriceMinor("   "));
+        assertNull(ScanDatabaseHelper.parsePriceMinor("abc"));
+        assertNull(ScanDatabaseHelper.parsePriceMinor("-5"));
+        assertNull(ScanDatabaseHelper.parsePriceMinor("12,5a"));
+        assertNull(ScanDatabaseHelper.parsePriceMinor("1234567890123456"));
+    }
+
+    @Test
+    public void parsePartialAmount() {
+        assertEquals(Long.valueOf(3), ScanDatabaseHelper.parsePartialAmount("3"));
+        assertEquals(Long.valueOf(12), ScanDatabaseHelper.parsePartialAmount(" 12 "));
+        assertNull(ScanDatabaseHelper.parsePartialAmount(null));
+        assertNull(ScanDatabaseHelper.parsePartialAmount(""));
+        assertNull(ScanDatabaseHelper.parsePartialAmount("1,5"));
+        assertNull(ScanDatabaseHelper.parsePartialAmount("1234567890"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.datamatrix;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class Gs1CodeTest {
+
+    private static final String GS = "\u001d";
+    private static final String CANONICAL = "0108699123456789" + "21ABC123";
+
+    @Test
+    public void canonical_sameBoxFromDifferentReadings() {
+        String[] readings = {
+                CANONICAL + GS + "17270131" + "10LOT42",
+                "]d2" + CANONICAL + GS + "17270131" + "10LOT42",
+                GS + CANONICAL + GS + "17270131" + "10LOT42",
+                "(01)08699123456789(21)ABC123(17)270131(10)LOT42",
+                // GS ayracı düşürülmüş: seri 17YYAAGG kuyruğundan ayrılır
+                CANONICAL + "17270131" + "10LOT42",
+                CANONICAL + "17270100",
+                "17270131" + "10LOT42" + GS + CANONICAL,
+                CANONICAL + GS + "714" + "1234567" + GS + "17270131",
+        };
+        for (String raw : readings) {
+            assertEquals(raw, CANONICAL, Gs1Code.parse(raw).canonical());
+            assertEquals(raw, CANONICAL, Gs1Code.canonicalize(raw));
+        }
+    }
+
+    @Test
+    public void parse_fields() {
+        Gs1Code c = Gs1Code.parse(CANONICAL + "17270131" + "10LOT42");
+
+        assertEquals("08699123456789", c.gtin);
+        assertEquals("ABC123", c.serial);
+        assertEquals("270131", c.expiry);
+        assertEquals("LOT42", c.lot);
+    }
+
+    @Test
+    public void canonical_nullWithoutSerial() {
+        String raw = "0108699123456789" + "17270131" + "10LOT42";
+
+        assertNull(Gs1Code.parse(raw).canonical());
+        assertEquals(raw, Gs1Code.canonicalize(raw));
+        assertEquals(raw, Gs1Code.canonicalize("]d2" + raw.substring(0, 16) + GS + raw.substring(16)));
+    }
+
+    @Test
+    public void canonicalize_emptyInput() {
+        assertNull(Gs1Code.canonicalize(null));
+        assertNull(Gs1Code.canonicalize("  "));
+        assertNull(Gs1Code.parse(null).canonical());
+    }
+}
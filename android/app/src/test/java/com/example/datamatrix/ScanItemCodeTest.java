@@ -0,0 +1,116 @@
+package com.example.datamatrix;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+
+public class ScanItemCodeTest {
+
+    private static final String GS = "\u001d";
+    private static final String CANONICAL = "0108699123456789" + "21ABC123";
+
+    @Test
+    public void of_usualOrderIsRebuiltWithoutRaw() {
+        String scanned = CANONICAL + GS + "17270131" + "10LOT42";
+        ScanItemCode c = ScanItemCode.of(scanned);
+
+        assertEquals(CANONICAL, c.code);
+        assertEquals(Integer.valueOf(270131), c.expiry);
+        assertEquals("LOT42", c.lot);
+        assertNull(c.raw);
+        assertEquals(scanned, ScanItemCode.rebuild(c.code, c.expiry, c.lot));
+    }
+
+    @Test
+    public void of_dayZeroExpiryKeepsLeadingZeros() {
+        // 2005 Şubat, gün 00: sayı olarak 50200, metinde yine 6 hane
+        String scanned = CANONICAL + GS + "17050200" + "10L1";
+        ScanItemCode c = ScanItemCode.of(scanned);
+
+        assertEquals(Integer.valueOf(50200), c.expiry);
+        assertNull(c.raw);
+        assertEquals(scanned, ScanItemCode.rebuild(c.code, c.expiry, c.lot));
+    }
+
+    @Test
+    public void of_missingLot() {
+        String scanned = CANONICAL + GS + "17270131";
+        ScanItemCode c = ScanItemCode.of(scanned);
+
+        assertEquals(CANONICAL, c.code);
+        assertNull(c.lot);
+        assertNull(c.raw);
+        assertEquals(scanned, ScanItemCode.rebuild(c.code, c.expiry, c.lot));
+    }
+
+    @Test
+    public void of_bareCanonicalCode() {
+        ScanItemCode c = ScanItemCode.of(CANONICAL);
+
+        assertEquals(CANONICAL, c.code);
+        assertNull(c.expiry);
+        assertNull(c.lot);
+        assertNull(c.raw);
+    }
+
+    @Test
+    public void of_reorderedAisKeepRaw() {
+        String scanned = "17270131" + "10LOT42" + GS + "0108699123456789" + "21ABC123";
+        ScanItemCode c = ScanItemCode.of(scanned);
+
+        assertEquals(CANONICAL, c.code);
+        assertEquals(Integer.valueOf(270131), c.expiry);
+        assertEquals("LOT42", c.lot);
+        assertEquals(scanned, c.raw);
+    }
+
+    @Test
+    public void of_unparsedTextIsKeptAsCode() {
+        ScanItemCode c = ScanItemCode.of("not-a-datamatrix");
+
+        assertEquals("not-a-datamatrix", c.code);
+        assertNull(c.raw);
+    }
+
+    @Test
+    public void expiryDate_dayZeroIsLastDayOfMonth() {
+        assertEquals(LocalDate.of(2027, 2, 28), ScanItemCode.expiryDate(270200));
+        assertEquals(LocalDate.of(2028, 2, 29), ScanItemCode.expiryDate(280200));
+        assertEquals(LocalDate.of(2027, 1, 31), ScanItemCode.expiryDate(270131));
+        assertNull(ScanItemCode.expiryDate(271301));
+        assertNull(ScanItemCode.expiryDate(270231));
+        assertEquals(270131, ScanItemCode.expiryCode(LocalDate.of(2027, 1, 31)));
+    }
+
+    @Test
+    public void rawSql_matchesRebuild() throws Exception {
+        Object[][] rows = {
+                { CANONICAL, null, null, null },
+                { CANONICAL, null, "LOT42", 270131 },
+                { CANONICAL, null, null, 50200 },
+                { CANONICAL, null, "L1", null },
+                { CANONICAL, "17270131" + GS + "01X", "LOT42", 270131 },
+        };
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT " + ScanItemCode.rawSql("t") +
+                     " FROM (SELECT ? AS code, ? AS raw, ? AS lot, ? AS expiry) t")) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) st.setObject(i + 1, row[i]);
+                String expected = row[1] != null
+                        ? (String) row[1]
+                        : ScanItemCode.rebuild((String) row[0], (Integer) row[3], (String) row[2]);
+                try (ResultSet rs = st.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(expected, rs.getString(1));
+                }
+            }
+        }
+    }
+}
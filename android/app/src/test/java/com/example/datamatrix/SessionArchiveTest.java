@@ -0,0 +1,150 @@
+package com.example.datamatrix;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+public class SessionArchiveTest {
+
+    private static final char GS = '\u001D';
+
+    private static byte[] sampleArchive() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SessionArchive.Encoder enc = new SessionArchive.Encoder(out);
+        try {
+            enc.beginGtins(2);
+            enc.gtin("08699123456789");
+            enc.gtin("08699000000017");
+
+            enc.beginSessions(2);
+            enc.beginSession(7, "2024-03-01 10:00:00", "Depo – şube 1", "cihaz-ü", 3);
+            enc.code("0108699123456789211000" + GS + "17270200", "08699123456789");
+            enc.code("0108699123456789211001" + GS + "17270200", "08699123456789");
+            enc.code("0108699000000017212000", "08699000000017");
+
+            enc.beginSession(300, "2024-03-02 08:30:00", null, null, 1);
+            // Sözlükte olmayan gtin "yok" olarak döner
+            enc.code("0108699999999999213000", "08699999999999");
+            enc.finish();
+        } finally {
+            enc.end();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void writeThenRead_roundTrips() throws Exception {
+        List<SessionArchive.Session> sessions =
+                SessionArchive.read(new ByteArrayInputStream(sampleArchive()));
+
+        assertEquals(2, sessions.size());
+
+        SessionArchive.Session first = sessions.get(0);
+        assertEquals(7, first.sourceId);
+        assertEquals("2024-03-01 10:00:00", first.createdAt);
+        assertEquals("Depo – şube 1", first.note);
+        assertEquals("cihaz-ü", first.deviceId);
+        assertArrayEquals(new String[] {
+                "0108699123456789211000" + GS + "17270200",
+                "0108699123456789211001" + GS + "17270200",
+                "0108699000000017212000"
+        }, first.codes);
+        assertArrayEquals(new String[] {
+                "08699123456789", "08699123456789", "08699000000017"
+        }, first.gtins);
+
+        SessionArchive.Session second = sessions.get(1);
+        assertEquals(300, second.sourceId);
+        assertNull(second.note);
+        assertNull(second.deviceId);
+        assertArrayEquals(new String[] { "0108699999999999213000" }, second.codes);
+        assertArrayEquals(new String[] { null }, second.gtins);
+    }
+
+    @Test
+    public void read_rejectsCorruptedBody() throws Exception {
+        byte[] data = sampleArchive();
+        data[data.length - 6] ^= 0x55;
+        try {
+            SessionArchive.read(new ByteArrayInputStream(data));
+            fail("bozuk arşiv okunmamalı");
+        } catch (IOException expected) {
+            // CRC veya deflate hatası
+        }
+    }
+
+    @Test
+    public void read_rejectsForeignFile() {
+        try {
+            SessionArchive.read(new ByteArrayInputStream("PK\u0003\u0004xxxx".getBytes()));
+            fail("başka format okunmamalı");
+        } catch (IOException expected) {
+            // başlık uyuşmuyor
+        }
+    }
+
+    @Test
+    public void bodyBytesSql_isUpperBoundOfReadBudget() throws Exception {
+        String[] codes = {
+                "0108699123456789211000",
+                "0108699123456789211001" + GS + "17270200" + "10LOT-ü",
+                "0108699000000017212000",
+        };
+        long estimate;
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement st = conn.createStatement()) {
+            st.executeUpdate("CREATE TABLE scan_sessions (id INTEGER PRIMARY KEY, created_at TEXT, note TEXT, device_id TEXT)");
+            st.executeUpdate("CREATE TABLE scan_items (id INTEGER PRIMARY KEY, session_id INTEGER, code TEXT, " +
+                    "raw TEXT, gtin TEXT, gtin_norm INTEGER, lot TEXT, expiry INTEGER)");
+            st.executeUpdate("INSERT INTO scan_sessions VALUES (7, '2024-03-01 10:00:00', 'Depo – şube 1', NULL)");
+            st.executeUpdate("INSERT INTO scan_items (session_id, code, gtin_norm) VALUES " +
+                    "(7, '0108699123456789211000', 8699123456789), (7, '0108699000000017212000', 8699000000017)");
+            st.executeUpdate("INSERT INTO scan_items (session_id, code, gtin_norm, lot, expiry) VALUES " +
+                    "(7, '0108699123456789211001', 8699123456789, 'LOT-ü', 270200)");
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT " + SessionArchive.bodyBytesSql("s") + " FROM scan_sessions s WHERE s.id = 7")) {
+                assertTrue(rs.next());
+                estimate = rs.getLong(1) + SessionArchive.MAX_ARCHIVE_OVERHEAD;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SessionArchive.Encoder enc = new SessionArchive.Encoder(out);
+        try {
+            enc.beginGtins(2);
+            enc.gtin("8699000000017");
+            enc.gtin("8699123456789");
+            enc.beginSessions(1);
+            enc.beginSession(7, "2024-03-01 10:00:00", "Depo – şube 1", null, codes.length);
+            enc.code(codes[0], "8699123456789");
+            enc.code(codes[1], "8699123456789");
+            enc.code(codes[2], "8699000000017");
+            enc.finish();
+        } finally {
+            enc.end();
+        }
+
+        // Okurken bütçeden düşen: açılmış gövde + ortak önekler (ortak önek + kalan = kodun tamamı)
+        byte[] data = out.toByteArray();
+        long body = new InflaterInputStream(new ByteArrayInputStream(data, 5, data.length - 5)).readAllBytes().length;
+        long shared = 0;
+        for (int i = 1; i < codes.length; i++) {
+            int n = 0;
+            while (n < Math.min(codes[i].length(), codes[i - 1].length())
+                    && codes[i].charAt(n) == codes[i - 1].charAt(n)) n++;
+            shared += codes[i].substring(0, n).getBytes(StandardCharsets.UTF_8).length;
+        }
+        assertTrue(estimate + " < " + (body + shared), estimate >= body + shared);
+    }
+}
@@ -595,6 +595,34 @@ const syncFastProductsFromServer = async () => {
 };
 
 
+  // Daha önce bir Easy satışında kaydedilmiş karekodları işaretler
+  // (native tarafta kanonik kod index'inden, kod başına tek arama)
+  const markDispensedItems = async (
+    items: StockScanLog[]
+  ): Promise<StockScanLog[]> => {
+    if (!items.length || !Capacitor.isNativePlatform()) return items;
+    try {
+      // @ts-ignore
+      const res = await (FastStockScanner as any).isAlreadyDispensed({
+        codes: items.map((it) => it.raw),
+      });
+      const list: any[] = Array.isArray(res?.results) ? res.results : [];
+      return items.map((it, i) => {
+        const r = list[i];
+        if (!r || !r.dispensed) return it;
+        return {
+          ...it,
+          status: "nonsellable" as StockScanStatus,
+          title: "Daha önce satıldı",
+          description: `Bu karekod #${r.saleId} numaralı Easy satışında kayıtlı (${r.createdAt}).`,
+        };
+      });
+    } catch (err) {
+      console.warn("Easy satış kontrolü yapılamadı:", err);
+      return items;
+    }
+  };
+
   // EASY modunda okunan karekodları tek tek işler
   const loadEasyItems = async (codes: string[]) => {
     setEasyResolving(true);
@@ -612,7 +640,7 @@ const syncFastProductsFromServer = async () => {
         }
       }
 
-      setEasyItems(results);
+      setEasyItems(await markDispensedItems(results));
       setShowEasyPage(false);
       setShowEasyFinalPage(true);
     } finally {
@@ -635,9 +663,11 @@ const syncFastProductsFromServer = async () => {
         }
       }
 
+      const checked = await markDispensedItems(results);
+
       setEasyItems((prev) => {
         const existingRaw = new Set(prev.map((p) => p.raw));
-        const onlyNew = results.filter((r) => !existingRaw.has(r.raw));
+        const onlyNew = checked.filter((r) => !existingRaw.has(r.raw));
         return [...prev, ...onlyNew];
       });
 
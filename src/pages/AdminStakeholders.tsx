@@ -6,6 +6,7 @@ import { Preferences } from "@capacitor/preferences";
 // 3) Minify + GZIP üretir ve indirilebilir hale getirir
 // Not: GZIP için pako kullanıyoruz → npm i pako
 import { gzip } from "pako";
+import { stakeholderArray } from "../plugins/stakeholders";
 
 const API_URL = "https://testndbapi.med.kg/api/TrackAndTrace/GetAllStakeholders";
 
@@ -140,15 +141,7 @@ export default function AdminStakeholders() {
           data = raw ? JSON.parse(raw) : {};
         } catch {}
 
-        const arr = Array.isArray(data)
-          ? data
-          : Array.isArray(data?.result)
-          ? data.result
-          : Array.isArray(data?.data)
-          ? data.data
-          : Array.isArray(data?.actionResult?.stakeholders)
-          ? data.actionResult.stakeholders
-          : [];
+        const arr = stakeholderArray(data);
 
         if (!Array.isArray(arr)) {
           throw new Error("Beklenmeyen JSON formatı: dizi bulunamadı.");
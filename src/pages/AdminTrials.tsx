@@ -1,4 +1,5 @@
 import { useEffect, useMemo, useState } from "react";
+import { lookupStakeholderNames } from "../plugins/stakeholders";
 
 const API_BASE = "https://dms-tr.onrender.com";
 
@@ -26,43 +27,24 @@ export default function AdminTrials() {
   const [filter, setFilter] = useState("");
   const [nameMap, setNameMap] = useState<NameMap>({});
 
-  // stakeholders.json'dan id → isim eşlemesi yükle
+  // Listedeki stakeholderId'lerin adları (paydaş dizininden, code ile)
   useEffect(() => {
-    async function loadStakeholderNames() {
-      try {
-        const res = await fetch("/stakeholders.json", { cache: "no-store" });
-        if (!res.ok) throw new Error("stakeholders.json HTTP " + res.status);
-        const data = await res.json();
-
-        const arr: any[] = Array.isArray(data)
-          ? data
-          : Array.isArray((data as any)?.result)
-          ? (data as any).result
-          : Array.isArray((data as any)?.data)
-          ? (data as any).data
-          : Array.isArray((data as any)?.actionResult?.stakeholders)
-          ? (data as any).actionResult.stakeholders
-          : [];
-
-        const map: NameMap = {};
-        for (const it of arr) {
-          const id = String(it.code ?? it.id ?? "");
-          const name = String(
-            it.name ?? it.title ?? it.code ?? it.id ?? ""
-          ).trim();
-          if (id) map[id] = name || id;
-        }
-        setNameMap(map);
-      } catch (e) {
-        console.warn("stakeholders.json adları yüklenemedi:", e);
-        setNameMap({});
-      }
-    }
-
-    loadStakeholderNames();
-  }, []);
-
-
+    const codes = Array.from(
+      new Set(rows.map((r) => Number(r.stakeholderId)).filter(Number.isFinite))
+    );
+    let cancelled = false;
+    lookupStakeholderNames(codes)
+      .then((map) => {
+        if (!cancelled) setNameMap(map);
+      })
+      .catch((e) => {
+        console.warn("Paydaş adları yüklenemedi:", e);
+        if (!cancelled) setNameMap({});
+      });
+    return () => {
+      cancelled = true;
+    };
+  }, [rows]);
 
   async function fetchList() {
     setLoading(true);
@@ -77,6 +77,9 @@ const Card: React.FC<React.PropsWithChildren<{ title?: string }>> = ({
   </div>
 );
 
+// Easy satış listesinin sayfa boyutu
+const EASY_SALES_PAGE_SIZE = 100;
+
 const EasyPage: React.FC<EasyPageProps> = ({
   onBack,
   onDone,
@@ -91,43 +94,53 @@ const EasyPage: React.FC<EasyPageProps> = ({
     { id: number; created_at: string; item_count: number; note?: string }[]
   >([]);
 
-  React.useEffect(() => {
-    let cancelled = false;
-
-    const load = async () => {
-      if (!Capacitor.isNativePlatform()) return;
-      try {
-        // Native plugin'den easy satış listesi
-        // @ts-ignore
-        const res = await (FastStockScanner as any).getEasySales();
-        const list =
-          res && Array.isArray(res.sales)
-            ? (res.sales as {
-                id: number;
-                created_at: string;
-                item_count: number;
-                note?: string;
-              }[]).map((s) => ({
-                id: s.id,
-                created_at: s.created_at,
-                item_count: s.item_count,
-                note: s.note ?? "",
-              }))
-            : [];
-
-        if (!cancelled) {
-          setEasySales(list);
-        }
-      } catch (err) {
-        console.warn("Easy satış listesi okunamadı:", err);
-      }
-    };
+  // Liste id'ye göre keyset sayfalarıyla gelir (yeniden eskiye)
+  const [easySalesLastId, setEasySalesLastId] = useState<number | null>(null);
+  const [easySalesHasMore, setEasySalesHasMore] = useState(false);
+  const [easySalesLoading, setEasySalesLoading] = useState(false);
 
-    load();
+  // more=false: ilk sayfa; more=true: son satırdan sonraki sayfa eklenir
+  const loadEasySales = async (more: boolean) => {
+    if (!Capacitor.isNativePlatform()) return;
+    setEasySalesLoading(true);
+    try {
+      // Native plugin'den easy satış listesi
+      // @ts-ignore
+      const res = await (FastStockScanner as any).getEasySales({
+        limit: EASY_SALES_PAGE_SIZE,
+        ...(more && easySalesLastId != null ? { afterId: easySalesLastId } : {}),
+      });
+      const list =
+        res && Array.isArray(res.sales)
+          ? (res.sales as {
+              id: number;
+              created_at: string;
+              item_count: number;
+              note?: string;
+            }[]).map((s) => ({
+              id: s.id,
+              created_at: s.created_at,
+              item_count: s.item_count,
+              note: s.note ?? "",
+            }))
+          : [];
+
+      setEasySales((prev) => (more ? [...prev, ...list] : list));
+      setEasySalesLastId(res?.lastId ?? null);
+      setEasySalesHasMore(!!res?.hasMore);
+    } catch (err) {
+      console.warn("Easy satış listesi okunamadı:", err);
+    } finally {
+      setEasySalesLoading(false);
+    }
+  };
 
-    return () => {
-      cancelled = true;
-    };
+  React.useEffect(() => {
+    if (!Capacitor.isNativePlatform()) return;
+    // Tarama ekranı açılmadan motor ısınsın
+    FastStockScanner.prewarmScanner().catch(() => {});
+    loadEasySales(false);
+    // eslint-disable-next-line react-hooks/exhaustive-deps
   }, []);
 
   const handleScan = async () => {
@@ -385,7 +398,12 @@ const EasyPage: React.FC<EasyPageProps> = ({
               gap: 8,
             }}
           >
-            {groupedEasySalesByDate.map((group) => (
+            {groupedEasySalesByDate.map((group, groupIndex) => {
+              // Sonraki sayfa yüklenmeden en eski gün eksik olabilir; günlük CSV o gün için kapalı
+              const partial =
+                easySalesHasMore &&
+                groupIndex === groupedEasySalesByDate.length - 1;
+              return (
               <div
                 key={group.dateKey}
                 style={{
@@ -416,7 +434,14 @@ const EasyPage: React.FC<EasyPageProps> = ({
 
                   <button
                     onClick={() => handleDownloadCsvForGroup(group)}
+                    disabled={partial}
+                    title={
+                      partial
+                        ? "Bu günün tüm kayıtları için daha fazla satış yükleyin"
+                        : undefined
+                    }
                     style={{
+                      opacity: partial ? 0.5 : 1,
                       padding: "4px 8px",
                       borderRadius: 8,
                       border: "1px solid #1d4ed8",
@@ -534,7 +559,24 @@ const EasyPage: React.FC<EasyPageProps> = ({
                   </tbody>
                 </table>
               </div>
-            ))}
+              );
+            })}
+            {easySalesHasMore && (
+              <button
+                onClick={() => loadEasySales(true)}
+                disabled={easySalesLoading}
+                style={{
+                  padding: "6px 10px",
+                  borderRadius: 10,
+                  border: "1px solid #e5e7eb",
+                  background: "#fff",
+                  fontSize: 12,
+                  fontWeight: 600,
+                }}
+              >
+                {easySalesLoading ? "Yükleniyor…" : "Daha fazla satış"}
+              </button>
+            )}
           </div>
         )}
       </Card>
@@ -4,6 +4,7 @@ import { Preferences } from "@capacitor/preferences";
 import React, { useEffect, useState } from "react";
 import { Capacitor } from "@capacitor/core";
 import { FastStockScanner } from "../plugins/fastStockScanner";
+import { ColumnarTable } from "../plugins/columnar";
 import { Filesystem, Directory, Encoding } from "@capacitor/filesystem";
 import { Share } from "@capacitor/share";
 
@@ -149,9 +150,17 @@ async function downloadCsv(filename: string, rows: string[][]) {
 
 
 
+// Oturum listesinin sayfa boyutu
+const SESSION_PAGE_SIZE = 100;
+
 const FastPage: React.FC<FastPageProps> = ({ onBack }) => {
   const [scanSessions, setScanSessions] = useState<ScanSession[]>([]);
   const [scanSessionsLoading, setScanSessionsLoading] = useState(false);
+  // Oturum listesi sayfalı gelir (yeniden eskiye); sonraki sayfa için son satırın id'si
+  const [scanSessionsLastId, setScanSessionsLastId] = useState<number | null>(
+    null
+  );
+  const [scanSessionsHasMore, setScanSessionsHasMore] = useState(false);
   const [stockReport, setStockReport] = useState<GetStockReportResult | null>(
     null
   );
@@ -159,15 +168,24 @@ const FastPage: React.FC<FastPageProps> = ({ onBack }) => {
     const [showReportPage, setShowReportPage] = useState(false);
 
 
-  // Fast multi-scan ile SQLite'e kaydedilen oturumları okur
-  const loadFastScanSessions = async () => {
+  // Fast multi-scan ile SQLite'e kaydedilen oturumları okur.
+  // more=false: listeyi en yeni sayfadan yeniden kurar; more=true: sonraki sayfayı ekler.
+  const loadFastScanSessions = async (more = false) => {
     if (!Capacitor.isNativePlatform()) {
       return;
     }
     try {
       setScanSessionsLoading(true);
-      const res = await FastStockScanner.getScanSessions();
-      setScanSessions(res.sessions ?? []);
+      const res = await FastStockScanner.getScanSessions({
+        limit: SESSION_PAGE_SIZE,
+        ...(more && scanSessionsLastId != null
+          ? { afterId: scanSessionsLastId }
+          : {}),
+      });
+      const page = res.sessions ?? [];
+      setScanSessions((prev) => (more ? [...prev, ...page] : page));
+      setScanSessionsLastId(res.lastId ?? null);
+      setScanSessionsHasMore(!!res.hasMore);
     } catch (err: any) {
       console.error(err);
       const msg =
@@ -256,9 +274,17 @@ const FastPage: React.FC<FastPageProps> = ({ onBack }) => {
 
     try {
       setStockReportLoading(true);
-      const sessionIds = scanSessions.map((s) => s.id);
-      const res = await FastStockScanner.getStockReport({ sessionIds });
-      setStockReport(res);
+      // Liste sayfalı olduğu için id'ler listeden alınmaz: from "" tüm oturumları seçer
+      // Kolon bazlı cevap: köprüden satır nesneleri yerine birkaç dizi gelir
+      const res = await FastStockScanner.getStockReport({
+        from: "",
+        columnar: true,
+        packInts: true,
+      });
+      setStockReport({
+        ...res,
+        items: new ColumnarTable<StockReportRow>(res.items).rows(),
+      });
       setShowReportPage(true);
     } catch (err: any) {
       console.error(err);
@@ -296,7 +322,8 @@ const handleExportStockReportCsv = async () => {
 
 
 
-   // Tüm datamatrixleri CSV'ye aktar (native pluginde getAllScanItems olması bekleniyor)
+  // Tüm datamatrixleri CSV'ye aktar: dosya native tarafta cursor'dan gzip'li CSV'ye yazılır
+  // (kodlar JS köprüsünden geçmez, bellekte liste kurulmaz), sonra paylaş/kaydet ekranı açılır.
   const handleExportAllDatamatrixCsv = async () => {
     try {
       if (!Capacitor.isNativePlatform()) {
@@ -304,52 +331,29 @@ const handleExportStockReportCsv = async () => {
         return;
       }
 
-      // Tip hatasını engellemek için any cast
-      const anyScanner: any = FastStockScanner;
-      const res = await anyScanner.getAllScanItems?.();
-
-      const codesRaw: string[] = Array.isArray(res?.codes)
-  ? res.codes
-  : Array.isArray(res?.datamatrixes)
-  ? res.datamatrixes
-  : [];
-
-// ✅ unique + boş temizliği
-const codes = Array.from(
-  new Set(
-    codesRaw
-      .map((s) => String(s || "").trim())
-      .filter((s) => s.length > 0)
-  )
-);
-
-if (!codes.length) {
-  alert("Kayıtlı karekod bulunamadı.");
-  return;
-}
-
-const header = ["Datamatrix"];
-const rows = codes.map((code) => [code]);
-
+      const res = await FastStockScanner.exportData({ kind: "scan_items" });
+      if (!res.rows) {
+        alert("Kayıtlı karekod bulunamadı.");
+        return;
+      }
 
-      await downloadCsv("tum_datamatrixler.csv", [header, ...rows]);
+      // Share, file:// yolunu uygulamanın FileProvider'ı (cache/exports) üzerinden paylaşır
+      await Share.share({
+        title: res.fileName,
+        files: ["file://" + res.path],
+        dialogTitle: "CSV'yi kaydet / paylaş",
+      });
 
       alert(
-  `CSV hazırlandı. Benzersiz datamatrix: ${codes.length}\n` +
-  "Açılan paylaş/kaydet ekranından Dosyalar/Drive/WhatsApp ile kaydedebilirsiniz."
-);
-
-
+        `CSV hazırlandı. Satır: ${res.rows}\n` +
+          "Açılan paylaş/kaydet ekranından Dosyalar/Drive/WhatsApp ile kaydedebilirsiniz."
+      );
     } catch (err: any) {
       const msg =
         typeof err === "string"
           ? err
           : err?.message || JSON.stringify(err ?? "");
-      alert(
-        "Datamatrix CSV oluşturulurken hata: " +
-          msg +
-          "\n\nNative FastStockScanner tarafında getAllScanItems metodunun tanımlı olduğundan emin olun."
-      );
+      alert("Datamatrix CSV oluşturulurken hata: " + msg);
     }
   };
 
@@ -358,6 +362,8 @@ const rows = codes.map((code) => [code]);
   useEffect(() => {
   if (!isNative()) return;
   importInitialProductsOnce();   // ✅ EKLE
+  // Tarama ekranı açılmadan motor ısınsın
+  FastStockScanner.prewarmScanner().catch(() => {});
   loadFastScanSessions();
   // eslint-disable-next-line react-hooks/exhaustive-deps
 }, []);
@@ -461,17 +467,20 @@ const rows = codes.map((code) => [code]);
           >
             <div style={{ fontSize: 13 }}>
               Kaydedilmiş oturum sayısı:{" "}
-              <strong>{scanSessions.length}</strong>
+              <strong>
+                {scanSessions.length}
+                {scanSessionsHasMore ? "+" : ""}
+              </strong>
             </div>
                         <div style={{ fontSize: 13 }}>
-              Tüm oturumlarda okutulan toplam kutu:{" "}
+              Listelenen oturumlarda okutulan toplam kutu:{" "}
               <strong>
                 {scanSessions.reduce((sum, s) => sum + (s.total_count || 0), 0)}
               </strong>
             </div>
 
             <button
-              onClick={loadFastScanSessions}
+              onClick={() => loadFastScanSessions()}
               disabled={scanSessionsLoading}
               style={{
                 padding: "6px 10px",
@@ -570,6 +579,23 @@ const rows = codes.map((code) => [code]);
                   ))}
                 </tbody>
               </table>
+              {scanSessionsHasMore && (
+                <button
+                  onClick={() => loadFastScanSessions(true)}
+                  disabled={scanSessionsLoading}
+                  style={{
+                    marginTop: 8,
+                    padding: "6px 10px",
+                    borderRadius: 10,
+                    border: "1px solid #e5e7eb",
+                    background: "#fff",
+                    fontSize: 12,
+                    fontWeight: 600,
+                  }}
+                >
+                  {scanSessionsLoading ? "Yükleniyor…" : "Daha fazla oturum"}
+                </button>
+              )}
             </div>
           )}
 
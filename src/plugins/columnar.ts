@@ -0,0 +1,139 @@
+// src/plugins/columnar.ts
+// FastStockScanner { columnar: true } cevapları (Java: ColumnarRows) için tembel çözücü.
+// Satır nesneleri köprüden gelmez; kolonlar ilk erişimde bir kez çözülür, satırlar istendikçe kurulur.
+
+// Kolon biçimleri (ColumnarRows.java ile aynı)
+export type ColumnarColumn =
+  | { type: "int"; values: number[] }
+  // packInts: base64, little-endian, en dar tip; delta ise değerler base + farkların kümülatif toplamı
+  | { type: "i8" | "i16" | "i32" | "f64"; data: string; base?: number; delta?: boolean }
+  | { type: "str"; values: (string | null)[] }
+  | { type: "dict"; dict: string[]; index: ColumnarColumn } // index -1 = null
+  | { type: "bool"; values: (boolean | null)[] };
+
+export interface ColumnarData {
+  length: number;
+  columns: Record<string, ColumnarColumn>;
+}
+
+// items alanı columnar mı (columnar: true ile istendiyse)?
+export function isColumnar(items: unknown): items is ColumnarData {
+  return (
+    typeof items === "object" &&
+    items !== null &&
+    !Array.isArray(items) &&
+    "columns" in items
+  );
+}
+
+function base64ToBuffer(data: string): ArrayBuffer {
+  const bin = atob(data);
+  const bytes = new Uint8Array(bin.length);
+  for (let i = 0; i < bin.length; i++) {
+    bytes[i] = bin.charCodeAt(i);
+  }
+  return bytes.buffer;
+}
+
+// Typed array'ler platform bayt sırasını kullanır; Android / iOS / tarayıcılar little-endian
+function decodeInts(col: ColumnarColumn): ArrayLike<number> {
+  let packed: ArrayLike<number>;
+  switch (col.type) {
+    case "int":
+      return col.values;
+    case "i8":
+      packed = new Int8Array(base64ToBuffer(col.data));
+      break;
+    case "i16":
+      packed = new Int16Array(base64ToBuffer(col.data));
+      break;
+    case "i32":
+      packed = new Int32Array(base64ToBuffer(col.data));
+      break;
+    case "f64":
+      packed = new Float64Array(base64ToBuffer(col.data));
+      break;
+    default:
+      throw new Error("Sayı kolonu bekleniyordu: " + col.type);
+  }
+  if (!col.delta) return packed;
+
+  const out = new Array<number>(packed.length);
+  let value = col.base ?? 0;
+  for (let i = 0; i < packed.length; i++) {
+    value += packed[i];
+    out[i] = value;
+  }
+  return out;
+}
+
+function decodeColumn(col: ColumnarColumn): ArrayLike<unknown> {
+  switch (col.type) {
+    case "str":
+    case "bool":
+      return col.values;
+    case "dict": {
+      const index = decodeInts(col.index);
+      const out = new Array<string | null>(index.length);
+      for (let i = 0; i < index.length; i++) {
+        out[i] = index[i] < 0 ? null : col.dict[index[i]];
+      }
+      return out;
+    }
+    default:
+      return decodeInts(col);
+  }
+}
+
+// Satır tipi T'nin alanları kolon adlarıyla aynıdır (örn. StockReportRow)
+export class ColumnarTable<T extends object> {
+  readonly length: number;
+  readonly names: string[];
+  private readonly data: ColumnarData;
+  private readonly decoded = new Map<string, ArrayLike<unknown>>();
+
+  constructor(data: ColumnarData) {
+    this.data = data;
+    this.length = data.length;
+    this.names = Object.keys(data.columns);
+  }
+
+  // Tek kolon (ilk çağrıda çözülür); toplam / grafik gibi işlerde satır kurmadan kullanılır
+  column<K extends keyof T & string>(name: K): ArrayLike<T[K]> {
+    let values = this.decoded.get(name);
+    if (!values) {
+      const col = this.data.columns[name];
+      if (!col) throw new Error("Kolon yok: " + name);
+      values = decodeColumn(col);
+      this.decoded.set(name, values);
+    }
+    return values as ArrayLike<T[K]>;
+  }
+
+  row(i: number): T {
+    const out: Record<string, unknown> = {};
+    for (const name of this.names) {
+      out[name] = this.column(name as keyof T & string)[i];
+    }
+    return out as T;
+  }
+
+  // Sanal liste vb. için dilim; tümü için rows()
+  slice(start: number, end = this.length): T[] {
+    const out: T[] = [];
+    for (let i = Math.max(0, start); i < Math.min(end, this.length); i++) {
+      out.push(this.row(i));
+    }
+    return out;
+  }
+
+  rows(): T[] {
+    return this.slice(0);
+  }
+
+  *[Symbol.iterator](): Iterator<T> {
+    for (let i = 0; i < this.length; i++) {
+      yield this.row(i);
+    }
+  }
+}
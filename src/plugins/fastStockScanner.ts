@@ -1,5 +1,7 @@
 // src/plugins/fastStockScanner.ts
 import { registerPlugin } from "@capacitor/core";
+import type { PluginListenerHandle } from "@capacitor/core";
+import type { ColumnarData } from "./columnar";
 
 export interface StartMultiScanResult {
   barcodes: string[];
@@ -45,6 +47,233 @@ export interface GetStockReportResult {
   totalDistinct: number;
   totalScans: number;
   duplicateCount: number;
+  sessionCount: number; // rapora dahil edilen oturum sayısı
+}
+
+// Stok raporu oturum seçimi: id listesi veya tarih aralığı / cihaz filtresi
+export interface GetStockReportOptions extends TaskOptions {
+  sessionIds?: number[];
+  from?: string; // dahil, ISO 8601 (örn: "2025-11-01")
+  to?: string; // hariç, ISO 8601
+  deviceId?: string;
+}
+
+// SKT raporu satırı (GTIN + lot + SKT grubu)
+export interface ExpiryReportRow {
+  gtin: string | null;
+  brand_name: string | null;
+  lot: string | null;
+  expiryCode: number; // AI 17 YYAAGG (GG = 00 → ay sonu)
+  expiry: string | null; // "2027-01-31"; geçersiz kodda null
+  daysLeft: number | null; // bugünden SKT'ye gün (geçmişse negatif)
+  expired: boolean;
+  count: number; // benzersiz kutu sayısı
+}
+
+// SKT raporu: seçim verilmezse tüm sayımlar
+export interface GetExpiryReportOptions extends GetStockReportOptions {
+  withinDays: number;
+}
+
+export interface GetExpiryReportResult {
+  items: ExpiryReportRow[]; // SKT'ye göre artan
+  totalCount: number;
+  expiredCount: number;
+  sessionCount: number;
+  until: string; // dahil SKT sınırı
+}
+
+// Geri çağırma araması: bu GTIN + lot'tan kutu içeren sayım
+export interface RecallSession {
+  id: number;
+  created_at: string;
+  note: string | null;
+  device_id: string | null;
+  count: number; // benzersiz kutu sayısı
+  expiry?: string | null;
+}
+
+// Arka plan veri geçişi (onUpgrade sonrası satır doldurma) durumu
+export interface DataMigrationInfo {
+  name: string;
+  lastId: number; // bu id'ye kadar işlendi
+  targetId: number; // geçiş bu id'ye kadar çalışır
+  done: boolean;
+}
+
+// Paydaş dizini kaydı (stakeholders.json); code tekil değildir (şube / merkez)
+export interface Stakeholder {
+  id: number;
+  code: number;
+  name: string;
+  type: number | null;
+  city: string | null;
+  district: string | null;
+  parentCode: number | null;
+}
+
+// Oturum içi kod satırı
+export interface ScanSessionItem {
+  id: number;
+  code: string;
+  scanned_at: string;
+  gtin: string | null;
+}
+
+// Arka plan görevi seçenekleri: taskId verilirse cancelTask ve "taskProgress"
+// event'leri bu id ile eşleşir (verilmezse Capacitor callbackId kullanılır).
+// Sırada veya çalışan bir görevin taskId'si tekrar verilirse çağrı DUPLICATE_TASK_ID ile reddedilir.
+export interface TaskOptions {
+  taskId?: string;
+}
+
+// "taskProgress" event'i (en sık 200 ms'de bir, son adım her zaman gelir)
+export interface TaskProgressEvent {
+  taskId: string;
+  method: string;
+  done: number;
+  total: number; // bilinmiyorsa -1
+}
+
+// getTaskStats: metod bazında süreler (ms)
+export interface TaskMethodStats {
+  method: string;
+  count: number;
+  failed: number;
+  cancelled: number; // iptal edilen çağrılar "CANCELLED" koduyla reject edilir
+  avgRunMs: number;
+  maxRunMs: number;
+  lastRunMs: number;
+  avgWaitMs: number; // şeritte sıra bekleme süresi
+}
+
+// { columnar: true }: items satır dizisi yerine kolon bazlı gelir; ColumnarTable ile okunur.
+// packInts: sayı kolonları base64 paketli (daha küçük cevap). Sayfalı / stream çağrılarda yok sayılır.
+export interface ColumnarOptions {
+  columnar: true;
+  packInts?: boolean;
+}
+
+// Keyset sayfalama seçenekleri.
+// limit/afterId verilirse tek sayfa döner; stream: true ise sayfalar
+// "streamPage" event'iyle gelir ve promise en sonda özetle çözülür.
+export interface PageOptions extends TaskOptions {
+  afterId?: number;
+  limit?: number; // varsayılan 500, en fazla 5000
+  stream?: boolean;
+  // streamPage event'lerini ayırt etmek için; verilmezse taskId kullanılır.
+  // Aynı anda birden fazla stream açılıyorsa taskId veya streamId verilmelidir.
+  streamId?: string;
+}
+
+// Tek sayfa sonucu (stream: false)
+export interface PageInfo {
+  lastId: number | null; // sonraki sayfa için afterId
+  hasMore: boolean;
+}
+
+// stream: true çağrılarının son sonucu
+export interface StreamResult {
+  streamId: string;
+  count: number;
+  lastId: number | null;
+}
+
+// "streamPage" event'i: listeye ait alan (sessions / items / codes) sayfayı taşır
+export interface StreamPageEvent {
+  streamId: string;
+  lastId: number | null;
+  done: boolean;
+  sessions?: ScanSession[];
+  items?: ScanSessionItem[] | SessionDiffItem[];
+  codes?: string[];
+}
+
+// diffSessions: a (önceki) ile b (sonraki) sayımın karşılaştırması
+export interface DiffSessionsOptions extends PageOptions {
+  a: number;
+  b: number;
+  // Verilirse özet yerine kod listesi döner (keyset sayfalı)
+  // added: b'de olup a'da olmayan, removed: a'da olup b'de olmayan, common: ikisinde de olan
+  list?: "added" | "removed" | "common";
+}
+
+// GTIN bazında tekil kutu farkı (sadece değişen GTIN'ler)
+export interface GtinDelta {
+  gtin: string | null;
+  brand_name: string | null;
+  countA: number;
+  countB: number;
+  delta: number; // countB - countA
+}
+
+export interface DiffSessionsSummary {
+  a: number;
+  b: number;
+  distinctA: number;
+  distinctB: number;
+  addedCount: number;
+  removedCount: number;
+  commonCount: number;
+  gtins: GtinDelta[]; // farkın büyüklüğüne göre azalan
+}
+
+// getSessionArchives liste satırı (saklama politikasının yazdığı arşivler)
+export interface SessionArchiveInfo {
+  id: number;
+  created_at: string;
+  session_count: number;
+  item_count: number;
+  first_session_at: string | null;
+  last_session_at: string | null;
+  bytes: number;
+}
+
+// diffSessions liste satırı
+export interface SessionDiffItem {
+  id: number;
+  code: string;
+  gtin: string | null;
+}
+
+// Native export (gzip CSV / NDJSON, cache/exports altında)
+export interface ExportDataOptions extends TaskOptions {
+  kind: "scan_items" | "stock_report" | "easy_sales";
+  format?: "csv" | "ndjson"; // varsayılan csv
+  sessionIds?: number[];
+  from?: string; // dahil, ISO 8601
+  to?: string; // hariç, ISO 8601
+  deviceId?: string;
+}
+
+export interface ExportDataResult {
+  uri: string; // FileProvider content:// URI (paylaşım için)
+  path: string;
+  fileName: string;
+  rows: number;
+  bytes: number;
+}
+
+// Tarama başlatma süreleri (ms, startMultiScan çağrısından itibaren; olmayan -1)
+export interface ScannerStartStats {
+  count: number;
+  avgCameraReadyMs: number;
+  avgFirstDecodeMs: number;
+}
+
+// getScannerStats cevabı
+export interface ScannerStats {
+  ready: boolean; // motor (ML Kit + CameraX) hazır mı
+  warmUpMs: number; // model yükleme süresi
+  releases: number; // bellek baskısıyla bırakılma sayısı
+  warmStarts: ScannerStartStats;
+  coldStarts: ScannerStartStats;
+  lastSession?: {
+    warm: boolean;
+    cameraReadyMs: number;
+    firstFrameMs: number;
+    firstDecodeMs: number;
+  };
 }
 
 // Plugin interface
@@ -54,23 +283,170 @@ export interface FastStockScannerPlugin {
     skipNote?: boolean;
   }): Promise<StartMultiScanResult>;
 
-  getScanSessions(): Promise<{ sessions: ScanSession[] }>;
+  // Tarama motorunu önceden hazırlar (ilk okuma gecikmesini düşürür)
+  prewarmScanner(): Promise<void>;
+
+  getScannerStats(): Promise<ScannerStats>;
+
+  getScanSessions(
+    options?: PageOptions
+  ): Promise<{ sessions: ScanSession[] } & Partial<PageInfo>>;
+
+  getScanSessionItems(
+    options: { sessionId: number } & TaskOptions & ColumnarOptions
+  ): Promise<{ items: ColumnarData }>;
+  getScanSessionItems(
+    options: { sessionId: number } & PageOptions
+  ): Promise<{ items: ScanSessionItem[] } & Partial<PageInfo>>;
+
+  getAllScanItems(
+    options?: PageOptions
+  ): Promise<{ codes: string[] } & Partial<PageInfo>>;
+
+  exportData(options: ExportDataOptions): Promise<ExportDataResult>;
+
+  // Cihazlar arası oturum taşıma: sıkıştırılmış, sağlama toplamlı .fssx dosyası
+  exportSessions(
+    options: Omit<GetStockReportOptions, "taskId"> & TaskOptions
+  ): Promise<{
+    uri: string;
+    path: string;
+    fileName: string;
+    sessions: number;
+    rows: number;
+    bytes: number;
+  }>;
+
+  // Tek transaction; aynı cihazın (device_id) oturumlarında zaten olan kodlar atlanır
+  importSessions(
+    options: ({ uri: string } | { path: string } | { data: string }) & TaskOptions
+  ): Promise<{
+    sourceSessions: number;
+    sessions: number; // oluşturulan oturum (yeni kodu kalmayanlar oluşturulmaz)
+    rows: number;
+    skipped: number;
+  }>;
+
+  // list verilmezse özet; verilirse sayfalı kod listesi (stream: true → "streamPage" event'leri)
+  diffSessions(
+    options: DiffSessionsOptions
+  ): Promise<
+    DiffSessionsSummary | ({ items: SessionDiffItem[] } & Partial<PageInfo>)
+  >;
+
+  addListener(
+    eventName: "streamPage",
+    listenerFunc: (page: StreamPageEvent) => void
+  ): Promise<PluginListenerHandle>;
+
+  addListener(
+    eventName: "taskProgress",
+    listenerFunc: (event: TaskProgressEvent) => void
+  ): Promise<PluginListenerHandle>;
+
+  // Arka plan veri geçişinin her parçasından sonra
+  addListener(
+    eventName: "dataMigrationProgress",
+    listenerFunc: (event: DataMigrationInfo) => void
+  ): Promise<PluginListenerHandle>;
+
+  getDataMigrations(): Promise<{ migrations: DataMigrationInfo[] }>;
+
+  // Sıradaki / çalışan görevi iptal eder; görev bulunamadıysa cancelled: false
+  cancelTask(options: { taskId: string }): Promise<{ cancelled: boolean }>;
+
+  getTaskStats(): Promise<{ methods: TaskMethodStats[]; running: number; queued: number }>;
 
   // Java: { deleted: number }
   deleteScanSession(options: { id: number }): Promise<{ deleted: number }>;
 
+  // Tek transaction; boşalan sayfalar arka planda dosyadan atılır (incremental vacuum)
+  deleteSessions(options: { sessionIds: number[] }): Promise<{ deleted: number }>;
+
+  // Saklama politikası: eski oturumlar sıkıştırılmış arşivlere yazılıp silinir.
+  // maxItems: kalan toplam kod satırı üst sınırı (en eski oturumlardan başlanır)
+  applyRetention(options: { maxAgeDays?: number; maxItems?: number }): Promise<{
+    archives: number; // yazılan arşiv sayısı (seçim boşsa 0)
+    sessions: number;
+    rows: number;
+    bytes: number;
+    skipped: number; // arşiv okuma sınırını tek başına aşan, yerinde bırakılan oturumlar
+  }>;
+
+  getSessionArchives(): Promise<{ archives: SessionArchiveInfo[] }>;
+
+  // importSessions ile aynı kurallar; arşiv silinmez
+  restoreSessionArchive(options: { id: number }): Promise<{
+    sourceSessions: number;
+    sessions: number;
+    rows: number;
+    skipped: number;
+  }>;
+
+  deleteSessionArchive(options: { id: number }): Promise<{ deleted: number }>;
+
+  // Oturumları tek oturumda birleştirir (kodlar tekilleşir, tek transaction).
+  // retireSources: true ise kaynak oturumlar silinir.
+  mergeSessions(options: {
+    sessionIds: number[];
+    note?: string;
+    retireSources?: boolean;
+  }): Promise<{
+    sessionId: number;
+    totalCount: number;
+    sourceCount: number;
+    retired: boolean;
+  }>;
+
   // initial ürün import metodu
-  importInitialProducts(options: {
-    items: ProductRow[];
-  }): Promise<ImportInitialProductsResult>;
+  importInitialProducts(
+    options: { items: ProductRow[] } & TaskOptions
+  ): Promise<ImportInitialProductsResult>;
 
   // SYNC (UPSERT)
-  syncProducts(options: { items: ProductRow[] }): Promise<SyncProductsResult>;
+  syncProducts(
+    options: { items: ProductRow[] } & TaskOptions
+  ): Promise<SyncProductsResult>;
+
+  // Ürün adı araması (önek, büyük/küçük harf ve Türkçe/Kiril karakter duyarsız), sıralı
+  searchProducts(
+    options: { query: string; limit?: number } & TaskOptions
+  ): Promise<{ items: ProductRow[] }>;
+
+  // Paydaş dizinini native tabloya yükler; parametresiz: uygulamayla gelen public/stakeholders.json.
+  // ifChanged: dizin bu uygulama sürümüyle zaten yüklendiyse atlanır (skipped: true).
+  // path: uygulamanın Data / Cache klasörü altında olmalı; diğer dosyalar uri ile verilir
+  importStakeholders(
+    options?: ({ uri: string } | { path: string } | { ifChanged?: boolean }) & TaskOptions
+  ): Promise<{ rows: number; skipped: boolean }>;
+
+  lookupStakeholders(
+    options: { codes: number[] } & TaskOptions
+  ): Promise<{ items: Stakeholder[] }>;
+
+  // Ad araması (kelime öneki, büyük/küçük harf ve ı/i duyarsız), en iyi eşleşme önce
+  searchStakeholders(
+    options: { query: string; limit?: number; type?: number } & TaskOptions
+  ): Promise<{ items: Stakeholder[] }>;
+
+  // id ASC keyset sayfası
+  getStakeholders(
+    options?: { type?: number; parentCode?: number } & PageOptions
+  ): Promise<{ items: Stakeholder[] } & Partial<PageInfo>>;
 
   // stok raporu metodu
-  getStockReport(options: {
-    sessionIds: number[];
-  }): Promise<GetStockReportResult>;
+  getStockReport(
+    options: GetStockReportOptions & ColumnarOptions
+  ): Promise<Omit<GetStockReportResult, "items"> & { items: ColumnarData }>;
+  getStockReport(options: GetStockReportOptions): Promise<GetStockReportResult>;
+
+  // SKT'si bugünden withinDays gün içinde dolan / dolmuş kutular
+  getExpiryReport(options: GetExpiryReportOptions): Promise<GetExpiryReportResult>;
+
+  // Tüm sayımlarda GTIN + lot araması
+  findRecall(
+    options: { gtin: string; lot: string } & TaskOptions
+  ): Promise<{ sessions: RecallSession[]; sessionCount: number; totalCount: number }>;
 }
 
 // DİKKAT: Java tarafındaki plugin adıyla birebir aynı olmalı
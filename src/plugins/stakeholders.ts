@@ -0,0 +1,84 @@
+// src/plugins/stakeholders.ts
+// Paydaş dizini native tabloda (FastStockScanner.importStakeholders) tutulur; stakeholders.json
+// WebView'e yüklenmez. Uygulamayla gelen dizin ilk kullanımda içe alınır; uygulama güncellenene kadar
+// (native tarafta saklanan paket sürümü değişene kadar) yeniden yüklenmez.
+// Web'de (yalnız web'de açılan /admin sayfaları) native tablo olmadığı için dosya sayfa başına
+// bir kez okunur ve code → ad eşlemesi paylaşılır.
+
+import { Capacitor } from "@capacitor/core";
+import { FastStockScanner } from "./fastStockScanner";
+
+let directoryReady: Promise<void> | null = null;
+let webNames: Promise<Record<string, string>> | null = null;
+
+// NDB / stakeholders.json cevabındaki kayıt dizisi: kök dizi, result, data veya
+// actionResult.stakeholders (StakeholderDirectory.java ile aynı sarmalayıcılar)
+export function stakeholderArray(data: any): any[] {
+  return Array.isArray(data)
+    ? data
+    : Array.isArray(data?.result)
+    ? data.result
+    : Array.isArray(data?.data)
+    ? data.data
+    : Array.isArray(data?.actionResult?.stakeholders)
+    ? data.actionResult.stakeholders
+    : [];
+}
+
+// Dizin yüklü değilse veya uygulama sürümü değiştiyse yükler; aynı anda gelen çağrılar tek
+// yüklemeyi bekler. Hata olursa bir sonraki çağrı yeniden dener.
+export function ensureStakeholderDirectory(): Promise<void> {
+  if (!directoryReady) {
+    directoryReady = (async () => {
+      await FastStockScanner.importStakeholders({ ifChanged: true });
+    })().catch((e) => {
+      directoryReady = null;
+      throw e;
+    });
+  }
+  return directoryReady;
+}
+
+function loadWebNames(): Promise<Record<string, string>> {
+  if (!webNames) {
+    webNames = (async () => {
+      const res = await fetch("/stakeholders.json");
+      if (!res.ok) throw new Error("stakeholders.json HTTP " + res.status);
+      const map: Record<string, string> = {};
+      for (const it of stakeholderArray(await res.json())) {
+        const key = String(it.code ?? it.id ?? "");
+        if (key && !(key in map)) map[key] = String(it.name ?? it.title ?? "").trim() || key;
+      }
+      return map;
+    })().catch((e) => {
+      webNames = null;
+      throw e;
+    });
+  }
+  return webNames;
+}
+
+// code → ad (bulunamayan code dönmez). Aynı code'lu şube / merkez kayıtlarından ilki alınır.
+export async function lookupStakeholderNames(
+  codes: number[]
+): Promise<Record<string, string>> {
+  const names: Record<string, string> = {};
+  if (codes.length === 0) return names;
+
+  if (!Capacitor.isNativePlatform()) {
+    const all = await loadWebNames();
+    for (const code of codes) {
+      const key = String(code);
+      if (key in all) names[key] = all[key];
+    }
+    return names;
+  }
+
+  await ensureStakeholderDirectory();
+  const { items } = await FastStockScanner.lookupStakeholders({ codes });
+  for (const it of items) {
+    const key = String(it.code);
+    if (!(key in names)) names[key] = it.name || key;
+  }
+  return names;
+}